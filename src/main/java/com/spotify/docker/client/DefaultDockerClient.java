@@ -60,6 +60,7 @@ import org.slf4j.LoggerFactory;
 
 import java.io.Closeable;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
@@ -725,6 +726,20 @@ public class DefaultDockerClient implements DockerClient, Closeable {
   public String build(final Path directory, final String name, final ProgressHandler handler,
                       final BuildParameter... params)
       throws DockerException, InterruptedException, IOException {
+    final File compressedDirectory = CompressedDirectory.create(directory);
+
+    try (InputStream archive = new FileInputStream(compressedDirectory)) {
+      return build(archive, name, handler, params);
+    } finally {
+      delete(compressedDirectory);
+    }
+  }
+
+  @Override
+  public String build(final InputStream archive, final String name, final ProgressHandler handler,
+                      final BuildParameter... params)
+      throws DockerException, InterruptedException, IOException {
+    checkNotNull(archive, "archive");
     checkNotNull(handler, "handler");
 
     WebTarget resource = resource().path("build");
@@ -736,11 +751,9 @@ public class DefaultDockerClient implements DockerClient, Closeable {
      resource = resource.queryParam("t", name);
     }
 
-    final File compressedDirectory = CompressedDirectory.create(directory);
-
     try (ProgressStream build = request(POST, ProgressStream.class, resource,
                                         resource.request(APPLICATION_JSON_TYPE),
-                                        Entity.entity(compressedDirectory, "application/tar"))) {
+                                        Entity.entity(archive, "application/tar"))) {
       String imageId = null;
       while (build.hasNextMessage(POST, resource.getUri())) {
         final ProgressMessage message = build.nextMessage(POST, resource.getUri());
@@ -751,8 +764,6 @@ public class DefaultDockerClient implements DockerClient, Closeable {
         handler.progress(message);
       }
       return imageId;
-    } finally {
-      delete(compressedDirectory);
     }
   }
 
@@ -223,6 +223,19 @@ public interface DockerClient extends Closeable {
                final BuildParameter... params)
       throws DockerException, InterruptedException, IOException;
 
+  /**
+   * Build a docker image from a tarball of its build context. The tarball may be gzipped.
+   *
+   * @param archive The tarball of the build context, containing the dockerfile.
+   * @param name The repository name and optional tag to apply to the built image.
+   * @param handler The handler to use for processing each progress message received from Docker.
+   * @param params Additional flags to use during build.
+   * @return The id of the built image if successful, otherwise null.
+   */
+  String build(final InputStream archive, final String name, final ProgressHandler handler,
+               final BuildParameter... params)
+      throws DockerException, InterruptedException, IOException;
+
   /**
    * Flags which can be passed to the <code>build</code> method.
    */
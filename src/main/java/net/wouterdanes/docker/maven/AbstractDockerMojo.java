@@ -38,6 +38,7 @@ import net.wouterdanes.docker.provider.DockerProviderSupplier;
 import net.wouterdanes.docker.provider.model.BuiltImageInfo;
 import net.wouterdanes.docker.provider.model.ImageBuildConfiguration;
 import net.wouterdanes.docker.provider.model.PushableImage;
+import net.wouterdanes.docker.provider.model.WaitPolicy;
 import net.wouterdanes.docker.remoteapi.exception.DockerException;
 import net.wouterdanes.docker.remoteapi.model.ContainerInspectionResult;
 import net.wouterdanes.docker.remoteapi.model.Credentials;
@@ -51,6 +52,7 @@ public abstract class AbstractDockerMojo extends AbstractMojo {
     private static final String BUILT_IMAGES_KEY = "builtImages";
     private static final String PUSHABLE_IMAGES_KEY = "pushableImages";
     private static final String ERRORS_KEY = "errors";
+    private static final String CONTAINER_STATES_KEY = "containerStates";
 
     @Parameter(defaultValue = "remote", property = "docker.provider", required = true)
     private String providerName;
@@ -67,6 +69,12 @@ public abstract class AbstractDockerMojo extends AbstractMojo {
     @Parameter(defaultValue = "", property = "docker.password", required = false)
     private String password;
 
+    /**
+     * How the plugin polls while it waits for something, like a readiness probe or the build lock of an image
+     */
+    @Parameter(required = false)
+    private WaitPolicy waitPolicy = new WaitPolicy();
+
     public void setProviderName(final String providerName) {
         this.providerName = providerName;
     }
@@ -75,6 +83,10 @@ public abstract class AbstractDockerMojo extends AbstractMojo {
         this.skip = skip;
     }
 
+    public void setWaitPolicy(final WaitPolicy waitPolicy) {
+        this.waitPolicy = waitPolicy;
+    }
+
     @Override
     public final void execute() throws MojoExecutionException, MojoFailureException {
         if (skip) {
@@ -94,6 +106,11 @@ public abstract class AbstractDockerMojo extends AbstractMojo {
         startedContainers.put(containerId, info);
     }
 
+    protected void unregisterStartedContainer(String containerId) {
+        Map<String, StartedContainerInfo> startedContainers = obtainMapFromPluginContext(STARTED_CONTAINERS_KEY);
+        startedContainers.remove(containerId);
+    }
+
     protected Collection<StartedContainerInfo> getStartedContainers() {
         Map<String, StartedContainerInfo> map = obtainMapFromPluginContext(STARTED_CONTAINERS_KEY);
         return map.values();
@@ -115,6 +132,35 @@ public abstract class AbstractDockerMojo extends AbstractMojo {
         }
     }
 
+    /**
+     * Returns the state table of the containers started by this plugin, which starts following the events of the
+     * docker daemon when it's first used. It keeps following them until {@link #closeContainerStateTable()}.
+     */
+    protected ContainerStateTable obtainContainerStateTable() {
+        Optional<ContainerStateTable> table = getContainerStateTable();
+        if (table.isPresent()) {
+            return table.get();
+        }
+        ContainerStateTable newTable = ContainerStateTable.follow(getDockerProvider());
+        if (!newTable.isFollowing()) {
+            getLog().debug("Cannot follow the events of the docker daemon, containers are inspected instead");
+        }
+        putInPluginContext(CONTAINER_STATES_KEY, newTable);
+        return newTable;
+    }
+
+    protected Optional<ContainerStateTable> getContainerStateTable() {
+        return Optional.fromNullable((ContainerStateTable) getPluginContext().get(CONTAINER_STATES_KEY));
+    }
+
+    protected void closeContainerStateTable() {
+        Optional<ContainerStateTable> table = getContainerStateTable();
+        if (table.isPresent()) {
+            table.get().close();
+            getPluginContext().remove(CONTAINER_STATES_KEY);
+        }
+    }
+
     protected Collection<BuiltImageInfo> getBuiltImages() {
         Map<String, BuiltImageInfo> builtImagesMap = obtainMapFromPluginContext(BUILT_IMAGES_KEY);
         return Collections.unmodifiableCollection(builtImagesMap.values());
@@ -127,6 +173,10 @@ public abstract class AbstractDockerMojo extends AbstractMojo {
         return provider;
     }
 
+    protected WaitPolicy getWaitPolicy() {
+        return waitPolicy != null ? waitPolicy : new WaitPolicy();
+    }
+
     protected Credentials getCredentials() {
         if (Strings.isNullOrEmpty(userName)) {
             getLog().debug("No user name provided");
@@ -222,6 +272,11 @@ public abstract class AbstractDockerMojo extends AbstractMojo {
         throw new MojoFailureException(exceptionMessage, e);
     }
 
+    @SuppressWarnings("unchecked")
+    private void putInPluginContext(String name, Object value) {
+        getPluginContext().put(name, value);
+    }
+
     @SuppressWarnings("unchecked")
     private <T> List<T> obtainListFromPluginContext(String name) {
         Object obj = getPluginContext().get(name);
@@ -17,8 +17,22 @@
 
 package net.wouterdanes.docker.maven;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Charsets;
+import com.google.common.base.Joiner;
+import com.google.common.base.Optional;
+import com.google.common.hash.Hashing;
+import net.wouterdanes.docker.provider.DockerProvider;
+import net.wouterdanes.docker.provider.context.BuildContext;
+import net.wouterdanes.docker.provider.context.ContextArchiveCache;
+import net.wouterdanes.docker.provider.context.ContextCompression;
 import net.wouterdanes.docker.provider.model.ImageBuildConfiguration;
+import net.wouterdanes.docker.provider.model.ImageBuildOptions;
+import net.wouterdanes.docker.provider.model.ImageBuildReport;
+import net.wouterdanes.docker.provider.model.ImageBuildResult;
 import net.wouterdanes.docker.remoteapi.exception.DockerException;
+import net.wouterdanes.docker.remoteapi.util.ByteSizes;
+import org.apache.maven.execution.MavenSession;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
 import org.apache.maven.plugins.annotations.InstantiationStrategy;
@@ -26,9 +40,25 @@ import org.apache.maven.plugins.annotations.LifecyclePhase;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * This class is responsible for building docker images specified in the POM file. It runs by default during the
@@ -38,13 +68,142 @@ import java.util.Set;
         instantiationStrategy = InstantiationStrategy.PER_LOOKUP)
 public class BuildImageMojo extends AbstractPreVerifyDockerMojo {
 
+    /**
+     * The label that holds the digest of the build context an image was built from.
+     */
+    public static final String CONTEXT_DIGEST_LABEL = "net.wouterdanes.docker.context-digest";
+
     @Parameter(required = true)
     private List<ImageBuildConfiguration> images;
 
+    @Parameter(defaultValue = "${session}", readonly = true)
+    private MavenSession session;
+
+    /**
+     * The maximum number of images that are built at the same time. Images that are based on another image of the same
+     * execution are always built after that image.
+     */
+    @Parameter(defaultValue = "1", property = "docker.buildConcurrency")
+    private int buildConcurrency = 1;
+
+    /**
+     * When enabled, an image is only built when its build context (the Dockerfile and all artifacts) changed since the
+     * last build. Otherwise the previously built image is used, as long as the docker daemon still has it. Built images
+     * are labelled with the digest of their build context, so an image built from the same context by another checkout
+     * using the same docker daemon is used as well.
+     */
+    @Parameter(defaultValue = "false", property = "docker.buildCache")
+    private boolean buildCache;
+
+    /**
+     * The file in which the digests of the build contexts and the resulting image ids are stored.
+     */
+    @Parameter(defaultValue = "${project.build.directory}/docker-build-cache.properties",
+            property = "docker.buildCacheFile")
+    private File buildCacheFile;
+
+    /**
+     * How build contexts are compressed before they are sent to the docker daemon: "none", "gzip", or "auto" to only
+     * compress them for a daemon on another machine, when they compress well.
+     */
+    @Parameter(defaultValue = "auto", property = "docker.buildCompression")
+    private String buildCompression = "auto";
+
+    /**
+     * The gzip level used to compress build contexts, from 1 (fastest) to 9 (smallest).
+     */
+    @Parameter(defaultValue = "6", property = "docker.buildCompressionLevel")
+    private int buildCompressionLevel = ContextCompression.DEFAULT_LEVEL;
+
+    /**
+     * When enabled, the tar archive of the build context of every image is kept in
+     * <code>buildContextCacheDirectory</code> and only the files that changed since the last build are written again.
+     */
+    @Parameter(defaultValue = "false", property = "docker.buildContextCache")
+    private boolean buildContextCache;
+
+    /**
+     * The directory in which the archives of the build contexts are kept.
+     */
+    @Parameter(defaultValue = "${project.build.directory}/docker-context",
+            property = "docker.buildContextCacheDirectory")
+    private File buildContextCacheDirectory;
+
+    /**
+     * The file to which the size of the build context and the build timings of every built image are written, as JSON.
+     */
+    @Parameter(defaultValue = "${project.build.directory}/docker-build-report.json",
+            property = "docker.buildReportFile")
+    private File buildReportFile;
+
+    /**
+     * The directory in which builds with the build cache enabled lock the digests of the build contexts they build. A
+     * maven process that wants to build an image from a context that another process is building waits for it and then
+     * uses its image. Processes on different machines that share a docker daemon need a shared directory.
+     */
+    @Parameter(defaultValue = "${java.io.tmpdir}/docker-maven-plugin/locks", property = "docker.buildLockDirectory")
+    private File buildLockDirectory;
+
+    /**
+     * The maximum time to wait for another maven process that builds the same build context (seconds), 0 means no
+     * limit. When it passes, the image is built anyway.
+     */
+    @Parameter(defaultValue = "1800", property = "docker.buildLockTimeout")
+    private int buildLockTimeout = 1800;
+
+    private ContextCompression contextCompression = ContextCompression.defaults();
+    private Optional<ContextArchiveCache> contextArchiveCache = Optional.absent();
+    private final List<ImageBuildReport> buildReports = Collections.synchronizedList(
+            new ArrayList<ImageBuildReport>());
+
     public void setImages(final List<ImageBuildConfiguration> images) {
         this.images = images;
     }
 
+    public void setSession(final MavenSession session) {
+        this.session = session;
+    }
+
+    public void setBuildConcurrency(final int buildConcurrency) {
+        this.buildConcurrency = buildConcurrency;
+    }
+
+    public void setBuildCache(final boolean buildCache) {
+        this.buildCache = buildCache;
+    }
+
+    public void setBuildCacheFile(final File buildCacheFile) {
+        this.buildCacheFile = buildCacheFile;
+    }
+
+    public void setBuildCompression(final String buildCompression) {
+        this.buildCompression = buildCompression;
+    }
+
+    public void setBuildCompressionLevel(final int buildCompressionLevel) {
+        this.buildCompressionLevel = buildCompressionLevel;
+    }
+
+    public void setBuildContextCache(final boolean buildContextCache) {
+        this.buildContextCache = buildContextCache;
+    }
+
+    public void setBuildContextCacheDirectory(final File buildContextCacheDirectory) {
+        this.buildContextCacheDirectory = buildContextCacheDirectory;
+    }
+
+    public void setBuildReportFile(final File buildReportFile) {
+        this.buildReportFile = buildReportFile;
+    }
+
+    public void setBuildLockDirectory(final File buildLockDirectory) {
+        this.buildLockDirectory = buildLockDirectory;
+    }
+
+    public void setBuildLockTimeout(final int buildLockTimeout) {
+        this.buildLockTimeout = buildLockTimeout;
+    }
+
     @Override
     protected void doExecute() throws MojoExecutionException, MojoFailureException {
         if (images == null || images.isEmpty()) {
@@ -53,17 +212,337 @@ public class BuildImageMojo extends AbstractPreVerifyDockerMojo {
         }
 
         validateAllImages();
+        contextCompression = parseBuildCompression();
+        if (buildContextCache && buildContextCacheDirectory != null) {
+            contextArchiveCache = Optional.of(new ContextArchiveCache(buildContextCacheDirectory));
+        }
+        ImageBuildGraph graph = new ImageBuildGraph(images);
+        Optional<ImageBuildCache> cache = loadBuildCache();
 
-        for (ImageBuildConfiguration image : images) {
+        int threads = Math.max(1, Math.min(buildConcurrency, images.size()));
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            buildImages(graph, cache, new ExecutorCompletionService<String>(executor));
+        } finally {
+            executor.shutdownNow();
+            saveBuildCache(cache);
+            saveBuildReports();
+        }
+    }
+
+    private void buildImages(final ImageBuildGraph graph, final Optional<ImageBuildCache> cache,
+                             final CompletionService<String> completionService)
+            throws MojoExecutionException, MojoFailureException {
+        Map<String, Integer> unbuiltParents = new HashMap<>();
+        Map<String, String> builtImageIds = new HashMap<>();
+        Map<Future<String>, ImageBuildConfiguration> builds = new HashMap<>();
+        for (ImageBuildConfiguration image : graph.getImages()) {
+            int parentCount = graph.getParents(image).size();
+            unbuiltParents.put(image.getId(), parentCount);
+            if (parentCount == 0) {
+                builds.put(submitBuild(completionService, cache, image, Collections.<String>emptyList()), image);
+            }
+        }
+
+        while (!builds.isEmpty()) {
+            Future<String> build = takeCompletedBuild(completionService);
+            ImageBuildConfiguration image = builds.remove(build);
             try {
-                logImageConfig(image);
-                String imageId = getDockerProvider().buildImage(image);
+                String imageId = getImageId(build);
                 getLog().info(String.format("Image '%s' has Id '%s'", image.getId(), imageId));
                 registerBuiltImage(imageId, image);
+                builtImageIds.put(image.getId(), imageId);
             } catch (DockerException e) {
                 String errorMessage = String.format("Cannot build image '%s'", image.getId());
                 handleDockerException(errorMessage, e);
+                skipDependents(graph, image);
+                continue;
+            }
+            for (ImageBuildConfiguration dependent : graph.getDependents(image)) {
+                int remaining = unbuiltParents.get(dependent.getId()) - 1;
+                unbuiltParents.put(dependent.getId(), remaining);
+                if (remaining == 0) {
+                    List<String> parentImageIds = new ArrayList<>();
+                    for (ImageBuildConfiguration parent : graph.getParents(dependent)) {
+                        parentImageIds.add(builtImageIds.get(parent.getId()));
+                    }
+                    builds.put(submitBuild(completionService, cache, dependent, parentImageIds), dependent);
+                }
+            }
+        }
+    }
+
+    private Future<String> submitBuild(final CompletionService<String> completionService,
+                                       final Optional<ImageBuildCache> cache, final ImageBuildConfiguration image,
+                                       final List<String> parentImageIds) {
+        logImageConfig(image);
+        return completionService.submit(new Callable<String>() {
+            @Override
+            public String call() throws InterruptedException {
+                return buildImage(image, cache, parentImageIds);
+            }
+        });
+    }
+
+    private String buildImage(final ImageBuildConfiguration image, final Optional<ImageBuildCache> cache,
+                              final List<String> parentImageIds) throws InterruptedException {
+        if (!image.isShared() || session == null) {
+            return buildUnsharedImage(image, cache, parentImageIds);
+        }
+        final AtomicBoolean built = new AtomicBoolean();
+        String imageId = SharedImageRegistry.forSession(session).getOrBuild(image.getId(), new Callable<String>() {
+            @Override
+            public String call() {
+                built.set(true);
+                return buildUnsharedImage(image, cache, parentImageIds);
+            }
+        });
+        if (!built.get()) {
+            getLog().info(String.format("Shared image '%s' was already built in this reactor, using image '%s'",
+                    image.getId(), imageId));
+        }
+        return imageId;
+    }
+
+    private String buildUnsharedImage(final ImageBuildConfiguration image, final Optional<ImageBuildCache> cache,
+                                      final List<String> parentImageIds) {
+        DockerProvider provider = getDockerProvider();
+        if (!cache.isPresent()) {
+            return buildImage(provider, image, newBuildOptions());
+        }
+        // the context is scanned once, for its digest and for the build
+        BuildContext context;
+        String digest;
+        try {
+            context = BuildContext.forImage(image);
+            digest = getContextDigest(context, parentImageIds);
+        } catch (IOException e) {
+            getLog().debug(String.format("Cannot calculate the build context digest of image '%s'", image.getId()), e);
+            return buildImage(provider, image, newBuildOptions());
+        }
+        Optional<String> cachedImageId = cache.get().getImageId(digest);
+        if (cachedImageId.isPresent()) {
+            if (canReuseImage(provider, image, cachedImageId.get())) {
+                getLog().info(String.format("Build context of image '%s' is unchanged, reusing image '%s'",
+                        image.getId(), cachedImageId.get()));
+                return cachedImageId.get();
+            }
+            cache.get().remove(digest);
+        }
+        String imageId = buildOrReuseLabelledImage(provider, image, context, digest);
+        cache.get().putImageId(digest, imageId);
+        return imageId;
+    }
+
+    private String buildOrReuseLabelledImage(final DockerProvider provider, final ImageBuildConfiguration image,
+                                             final BuildContext context, final String digest) {
+        Optional<String> labelledImageId = findLabelledImage(provider, image, digest);
+        if (labelledImageId.isPresent()) {
+            return labelledImageId.get();
+        }
+        if (buildLockDirectory == null) {
+            return buildLabelledImage(provider, image, context, digest);
+        }
+        ImageBuildLocks.Lock lock;
+        try {
+            lock = acquireBuildLock(image, digest);
+        } catch (IOException e) {
+            getLog().warn(String.format("Cannot lock the build context of image '%s' in %s, building it anyway",
+                    image.getId(), buildLockDirectory), e);
+            return buildLabelledImage(provider, image, context, digest);
+        }
+        try {
+            // the build we waited for may have built the image
+            labelledImageId = findLabelledImage(provider, image, digest);
+            if (labelledImageId.isPresent()) {
+                return labelledImageId.get();
             }
+            return buildLabelledImage(provider, image, context, digest);
+        } finally {
+            lock.release();
+        }
+    }
+
+    private ImageBuildLocks.Lock acquireBuildLock(final ImageBuildConfiguration image, final String digest)
+            throws IOException {
+        ImageBuildLocks locks = new ImageBuildLocks(buildLockDirectory);
+        Optional<ImageBuildLocks.Lock> lock = locks.tryAcquire(digest);
+        if (lock.isPresent()) {
+            return lock.get();
+        }
+        getLog().info(String.format("Another build is building the build context of image '%s', waiting for it",
+                image.getId()));
+        try {
+            ImageBuildLocks.Lock acquired = locks.acquire(digest, getWaitPolicy(),
+                    TimeUnit.SECONDS.toMillis(buildLockTimeout));
+            getLog().info(String.format("Acquired the build lock of image '%s' after %s", image.getId(),
+                    acquired.getBackoff().get().describe()));
+            return acquired;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DockerException(String.format("Interrupted while waiting for another build of image '%s'",
+                    image.getId()), e);
+        }
+    }
+
+    private String buildLabelledImage(final DockerProvider provider, final ImageBuildConfiguration image,
+                                      final BuildContext context, final String digest) {
+        return buildImage(provider, image, newBuildOptions()
+                .withContext(context)
+                .withLabels(Collections.singletonMap(CONTEXT_DIGEST_LABEL, digest)));
+    }
+
+    private ImageBuildOptions newBuildOptions() {
+        return new ImageBuildOptions()
+                .withCompression(contextCompression)
+                .withContextCache(contextArchiveCache);
+    }
+
+    private String buildImage(final DockerProvider provider, final ImageBuildConfiguration image,
+                              final ImageBuildOptions options) {
+        ImageBuildResult result = provider.buildImage(image, options);
+        Optional<ImageBuildReport> report = result.getReport();
+        if (report.isPresent()) {
+            logBuildReport(report.get());
+            buildReports.add(report.get());
+        }
+        return result.getImageId();
+    }
+
+    private void logBuildReport(final ImageBuildReport report) {
+        getLog().info(String.format("Build context of image '%s': %s files, %s, %s sent; walk %s ms, archive %s ms, "
+                + "upload %s ms, build %s ms", report.getImageId(), report.getEntries(),
+                ByteSizes.format(report.getUncompressedBytes()), ByteSizes.format(report.getCompressedBytes()),
+                report.getWalkMillis(), report.getArchiveMillis(), report.getUploadMillis(), report.getBuildMillis()));
+        if (getLog().isDebugEnabled()) {
+            for (ImageBuildReport.ContextFile file : report.getLargestFiles()) {
+                getLog().debug(String.format("  %s: %s", file.getName(), ByteSizes.format(file.getSize())));
+            }
+        }
+    }
+
+    private void saveBuildReports() {
+        if (buildReportFile == null || buildReports.isEmpty()) {
+            return;
+        }
+        try {
+            Files.createDirectories(buildReportFile.getAbsoluteFile().getParentFile().toPath());
+            synchronized (buildReports) {
+                new ObjectMapper().writerWithDefaultPrettyPrinter().writeValue(buildReportFile, buildReports);
+            }
+        } catch (IOException e) {
+            getLog().warn(String.format("Cannot write the build report %s", buildReportFile), e);
+        }
+    }
+
+    /**
+     * The digest of an image built from other images of this execution also covers the ids those images got, so a
+     * rebuilt parent image makes its dependents miss the cache.
+     */
+    private static String getContextDigest(final BuildContext context, final List<String> parentImageIds)
+            throws IOException {
+        String contextDigest = context.getDigest();
+        if (parentImageIds.isEmpty()) {
+            return contextDigest;
+        }
+        String parents = Joiner.on('\n').join(parentImageIds);
+        return Hashing.sha256().hashString(contextDigest + "\n" + parents, Charsets.UTF_8).toString();
+    }
+
+    private boolean canReuseImage(final DockerProvider provider, final ImageBuildConfiguration image,
+                                  final String imageId) {
+        try {
+            if (!provider.hasImage(imageId)) {
+                getLog().debug(String.format("Cached image '%s' no longer exists", imageId));
+                return false;
+            }
+            if (image.getNameAndTag() != null) {
+                provider.tagImage(imageId, image.getNameAndTag());
+            }
+            return true;
+        } catch (DockerException e) {
+            getLog().debug(String.format("Cannot reuse cached image '%s'", imageId), e);
+            return false;
+        }
+    }
+
+    private Optional<String> findLabelledImage(final DockerProvider provider, final ImageBuildConfiguration image,
+                                               final String digest) {
+        try {
+            Optional<String> imageId = provider.findImageByLabel(CONTEXT_DIGEST_LABEL, digest);
+            if (!imageId.isPresent()) {
+                return imageId;
+            }
+            if (image.getNameAndTag() != null) {
+                provider.tagImage(imageId.get(), image.getNameAndTag());
+            }
+            getLog().info(String.format("The docker daemon has an image with the build context of image '%s', "
+                    + "reusing image '%s'", image.getId(), imageId.get()));
+            return imageId;
+        } catch (DockerException e) {
+            getLog().debug(String.format("Cannot look for an image with the build context of image '%s'",
+                    image.getId()), e);
+            return Optional.absent();
+        }
+    }
+
+    private Optional<ImageBuildCache> loadBuildCache() {
+        if (!buildCache || buildCacheFile == null) {
+            return Optional.absent();
+        }
+        try {
+            return Optional.of(ImageBuildCache.load(buildCacheFile));
+        } catch (IOException e) {
+            getLog().warn(String.format("Cannot read the build cache %s, building all images", buildCacheFile), e);
+            return Optional.absent();
+        }
+    }
+
+    private void saveBuildCache(final Optional<ImageBuildCache> cache) {
+        if (!cache.isPresent()) {
+            return;
+        }
+        try {
+            cache.get().save();
+        } catch (IOException e) {
+            getLog().warn(String.format("Cannot write the build cache %s", buildCacheFile), e);
+        }
+    }
+
+    private static Future<String> takeCompletedBuild(final CompletionService<String> completionService)
+            throws MojoExecutionException {
+        try {
+            return completionService.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException("Interrupted while waiting for images to be built", e);
+        }
+    }
+
+    private static String getImageId(final Future<String> build) throws MojoExecutionException {
+        try {
+            return build.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException("Interrupted while waiting for images to be built", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new MojoExecutionException("Unexpected error while building an image", cause);
+        }
+    }
+
+    private void skipDependents(final ImageBuildGraph graph, final ImageBuildConfiguration image) {
+        for (ImageBuildConfiguration dependent : graph.getAllDependents(image)) {
+            String message = String.format("Image '%s' is not built, because it is based on image '%s' that failed "
+                    + "to build", dependent.getId(), image.getId());
+            getLog().error(message);
+            registerPluginError(new DockerPluginError(getMojoGoalName(), message));
         }
     }
 
@@ -76,6 +555,14 @@ public class BuildImageMojo extends AbstractPreVerifyDockerMojo {
         getLog().info(builder.toString());
     }
 
+    private ContextCompression parseBuildCompression() throws MojoExecutionException {
+        try {
+            return ContextCompression.parse(buildCompression, buildCompressionLevel);
+        } catch (IllegalArgumentException e) {
+            throw new MojoExecutionException(e.getMessage(), e);
+        }
+    }
+
     private void validateAllImages() throws MojoExecutionException {
         Set<String> ids = new HashSet<>(images.size());
         for (ImageBuildConfiguration image : images) {
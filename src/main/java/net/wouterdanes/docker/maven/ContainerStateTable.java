@@ -0,0 +1,181 @@
+/*
+    Copyright 2014 Wouter Danes
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+*/
+
+package net.wouterdanes.docker.maven;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.ws.rs.ProcessingException;
+
+import com.google.common.base.Optional;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.Sets;
+
+import net.wouterdanes.docker.provider.DockerProvider;
+import net.wouterdanes.docker.remoteapi.DockerEventListener;
+import net.wouterdanes.docker.remoteapi.exception.DockerException;
+import net.wouterdanes.docker.remoteapi.model.DockerEvent;
+
+/**
+ * This class is responsible for knowing the state of the containers started by the build without asking the docker
+ * daemon about every container over and over again. It follows the events of the daemon and remembers the last event of
+ * every container the build started. When the events can't be followed, it falls back to inspecting the containers.
+ */
+public class ContainerStateTable implements DockerEventListener, Closeable {
+
+    private static final long MAX_UNTRACKED_CONTAINERS = 1000;
+
+    private final Set<String> tracked = Sets.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    private final Map<String, String> statuses = new ConcurrentHashMap<>();
+    // a container can die before the build knows its id, so recent events of other containers are kept for a while
+    private final Cache<String, String> untrackedStatuses = CacheBuilder.newBuilder()
+            .maximumSize(MAX_UNTRACKED_CONTAINERS)
+            .build();
+    private volatile boolean following;
+    private Optional<Closeable> subscription = Optional.absent();
+
+    /**
+     * Creates a state table that follows the events of a docker daemon.
+     *
+     * @param provider the provider to follow the events of
+     * @return the state table
+     */
+    public static ContainerStateTable follow(final DockerProvider provider) {
+        ContainerStateTable table = new ContainerStateTable();
+        table.following = true;
+        try {
+            table.subscription = provider.followEvents(table);
+        } catch (DockerException | ProcessingException e) {
+            // the containers are inspected instead
+            table.subscription = Optional.absent();
+        }
+        // the stream may have broken off already
+        table.following = table.subscription.isPresent() && table.following;
+        return table;
+    }
+
+    /**
+     * Starts keeping the state of a container.
+     *
+     * @param containerId the id of the container
+     */
+    public void track(final String containerId) {
+        if (containerId == null) {
+            return;
+        }
+        tracked.add(containerId);
+        String status = untrackedStatuses.getIfPresent(containerId);
+        if (status != null) {
+            statuses.put(containerId, status);
+            untrackedStatuses.invalidate(containerId);
+        }
+    }
+
+    /**
+     * @return true when the state of the containers comes from the events of the docker daemon
+     */
+    public boolean isFollowing() {
+        return following;
+    }
+
+    /**
+     * Tells whether a container has stopped. The docker daemon is only asked when its events are not followed.
+     *
+     * @param containerId the id of the container
+     * @param provider    the provider to inspect the container with
+     * @return true if the container has stopped
+     */
+    public boolean hasExited(final String containerId, final DockerProvider provider) {
+        if (following) {
+            return isExited(statuses.get(containerId));
+        }
+        return provider.getExitCode(containerId).isPresent();
+    }
+
+    /**
+     * Tells whether a container is known to have stopped, without asking the docker daemon.
+     *
+     * @param containerId the id of the container
+     * @return true if the events of the daemon showed that the container stopped
+     */
+    public boolean isKnownToBeStopped(final String containerId) {
+        return following && isExited(statuses.get(containerId));
+    }
+
+    /**
+     * Tells whether a container is known to be removed, without asking the docker daemon.
+     *
+     * @param containerId the id of the container
+     * @return true if the events of the daemon showed that the container was removed
+     */
+    public boolean isKnownToBeRemoved(final String containerId) {
+        return following && "destroy".equals(statuses.get(containerId));
+    }
+
+    /**
+     * Returns the exit code of a container that has stopped. The docker daemon is only asked for the exit code of a
+     * container that is known to have stopped, or when its events are not followed.
+     *
+     * @param containerId the id of the container
+     * @param provider    the provider to inspect the container with
+     * @return the exit code, or absent if the container is still running
+     */
+    public Optional<Integer> getExitCode(final String containerId, final DockerProvider provider) {
+        if (following && !isExited(statuses.get(containerId))) {
+            return Optional.absent();
+        }
+        return provider.getExitCode(containerId);
+    }
+
+    @Override
+    public void onEvent(final DockerEvent event) {
+        if (event.getId() == null || event.getStatus() == null) {
+            return;
+        }
+        if (tracked.contains(event.getId())) {
+            statuses.put(event.getId(), event.getStatus());
+        } else {
+            untrackedStatuses.put(event.getId(), event.getStatus());
+        }
+    }
+
+    @Override
+    public void onClose() {
+        following = false;
+    }
+
+    @Override
+    public void close() {
+        following = false;
+        if (subscription.isPresent()) {
+            try {
+                subscription.get().close();
+            } catch (IOException ignored) {
+                // the stream is gone either way
+            }
+        }
+    }
+
+    private static boolean isExited(final String status) {
+        return "die".equals(status) || "destroy".equals(status);
+    }
+}
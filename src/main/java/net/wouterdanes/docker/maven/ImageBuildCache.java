@@ -0,0 +1,85 @@
+/*
+    Copyright 2014 Wouter Danes
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+*/
+
+package net.wouterdanes.docker.maven;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Properties;
+
+import com.google.common.base.Optional;
+
+/**
+ * This class is responsible for remembering which image was built from which build context. It maps the digest of a
+ * build context to the id of the image that was built from it and is stored as a properties file, so it survives
+ * between builds.
+ */
+public class ImageBuildCache {
+
+    private static final String COMMENT = "Docker images built by the docker-maven-plugin, by build context digest";
+
+    private final File file;
+    private final Properties images;
+
+    private ImageBuildCache(final File file, final Properties images) {
+        this.file = file;
+        this.images = images;
+    }
+
+    /**
+     * Loads the cache from a file. A missing file results in an empty cache.
+     *
+     * @param file the file to load the cache from and to save it to
+     * @return the cache
+     * @throws IOException when the file exists but can't be read
+     */
+    public static ImageBuildCache load(final File file) throws IOException {
+        Properties images = new Properties();
+        if (file.isFile()) {
+            try (InputStream input = new FileInputStream(file)) {
+                images.load(input);
+            }
+        }
+        return new ImageBuildCache(file, images);
+    }
+
+    public synchronized Optional<String> getImageId(final String contextDigest) {
+        return Optional.fromNullable(images.getProperty(contextDigest));
+    }
+
+    public synchronized void putImageId(final String contextDigest, final String imageId) {
+        images.setProperty(contextDigest, imageId);
+    }
+
+    public synchronized void remove(final String contextDigest) {
+        images.remove(contextDigest);
+    }
+
+    public synchronized void save() throws IOException {
+        File directory = file.getAbsoluteFile().getParentFile();
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException(String.format("Cannot create directory %s", directory));
+        }
+        try (OutputStream output = new FileOutputStream(file)) {
+            images.store(output, COMMENT);
+        }
+    }
+}
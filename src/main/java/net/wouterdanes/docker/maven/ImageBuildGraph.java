@@ -0,0 +1,184 @@
+/*
+    Copyright 2014 Wouter Danes
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+*/
+
+package net.wouterdanes.docker.maven;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.maven.plugin.MojoExecutionException;
+
+import net.wouterdanes.docker.provider.model.ImageBuildConfiguration;
+
+/**
+ * This class is responsible for working out which images of a single build-images execution depend on each other. An
+ * image depends on another image when a FROM instruction in its Dockerfile refers to the id or the name and tag of that
+ * other image. Images without such a relation can be built at the same time.
+ */
+public class ImageBuildGraph {
+
+    private static final Pattern FROM_INSTRUCTION = Pattern.compile("^\\s*FROM\\s+(\\S+)", Pattern.CASE_INSENSITIVE);
+    private static final String DEFAULT_TAG = ":latest";
+
+    private final List<ImageBuildConfiguration> images;
+    private final Map<String, Set<ImageBuildConfiguration>> parents = new LinkedHashMap<>();
+    private final Map<String, Set<ImageBuildConfiguration>> dependents = new LinkedHashMap<>();
+
+    /**
+     * Creates the dependency graph for a list of images with unique ids.
+     *
+     * @param images the images to build
+     * @throws MojoExecutionException when images depend on each other in a cycle
+     */
+    public ImageBuildGraph(final List<ImageBuildConfiguration> images) throws MojoExecutionException {
+        this.images = Collections.unmodifiableList(new ArrayList<>(images));
+        for (ImageBuildConfiguration image : images) {
+            parents.put(image.getId(), new LinkedHashSet<ImageBuildConfiguration>());
+            dependents.put(image.getId(), new LinkedHashSet<ImageBuildConfiguration>());
+        }
+        for (ImageBuildConfiguration image : images) {
+            for (String baseImage : readBaseImages(image.getDockerFile())) {
+                for (ImageBuildConfiguration candidate : images) {
+                    if (candidate != image && refersTo(baseImage, candidate)) {
+                        parents.get(image.getId()).add(candidate);
+                        dependents.get(candidate.getId()).add(image);
+                    }
+                }
+            }
+        }
+        checkForCycles();
+    }
+
+    public List<ImageBuildConfiguration> getImages() {
+        return images;
+    }
+
+    /**
+     * @param image an image in this graph
+     * @return the images of this graph that the passed image is based on
+     */
+    public Set<ImageBuildConfiguration> getParents(final ImageBuildConfiguration image) {
+        return Collections.unmodifiableSet(parents.get(image.getId()));
+    }
+
+    /**
+     * @param image an image in this graph
+     * @return the images of this graph that are directly based on the passed image
+     */
+    public Set<ImageBuildConfiguration> getDependents(final ImageBuildConfiguration image) {
+        return Collections.unmodifiableSet(dependents.get(image.getId()));
+    }
+
+    /**
+     * @param image an image in this graph
+     * @return all images that are directly or indirectly based on the passed image
+     */
+    public Set<ImageBuildConfiguration> getAllDependents(final ImageBuildConfiguration image) {
+        Set<ImageBuildConfiguration> result = new LinkedHashSet<>();
+        collectDependents(image, result);
+        return result;
+    }
+
+    /**
+     * Reads the base images from the FROM instructions of a Dockerfile. A missing Dockerfile has no base images, the
+     * build itself will report that it is missing.
+     *
+     * @param dockerFile the Dockerfile
+     * @return the images referred to by the FROM instructions, in order of appearance
+     */
+    static List<String> readBaseImages(final File dockerFile) {
+        if (dockerFile == null || !dockerFile.isFile()) {
+            return Collections.emptyList();
+        }
+        List<String> lines;
+        try {
+            lines = Files.readAllLines(dockerFile.toPath(), Charset.forName("UTF-8"));
+        } catch (IOException e) {
+            return Collections.emptyList();
+        }
+        List<String> baseImages = new ArrayList<>();
+        for (String line : lines) {
+            Matcher matcher = FROM_INSTRUCTION.matcher(line);
+            if (matcher.find()) {
+                baseImages.add(matcher.group(1));
+            }
+        }
+        return baseImages;
+    }
+
+    private static boolean refersTo(final String baseImage, final ImageBuildConfiguration candidate) {
+        if (baseImage.equals(candidate.getId())) {
+            return true;
+        }
+        String nameAndTag = candidate.getNameAndTag();
+        if (nameAndTag == null) {
+            return false;
+        }
+        if (withDefaultTag(baseImage).equals(withDefaultTag(nameAndTag))) {
+            return true;
+        }
+        String registry = candidate.getRegistry();
+        return registry != null && withDefaultTag(baseImage).equals(withDefaultTag(registry + "/" + nameAndTag));
+    }
+
+    private static String withDefaultTag(final String name) {
+        return name.lastIndexOf(':') > name.lastIndexOf('/') ? name : name + DEFAULT_TAG;
+    }
+
+    private void collectDependents(final ImageBuildConfiguration image, final Set<ImageBuildConfiguration> result) {
+        for (ImageBuildConfiguration dependent : dependents.get(image.getId())) {
+            if (result.add(dependent)) {
+                collectDependents(dependent, result);
+            }
+        }
+    }
+
+    private void checkForCycles() throws MojoExecutionException {
+        Set<String> visited = new HashSet<>();
+        for (ImageBuildConfiguration image : images) {
+            checkForCycles(image, visited, new LinkedHashSet<String>());
+        }
+    }
+
+    private void checkForCycles(final ImageBuildConfiguration image, final Set<String> visited,
+                                final LinkedHashSet<String> path) throws MojoExecutionException {
+        if (path.contains(image.getId())) {
+            throw new MojoExecutionException(String.format("Images depend on each other in a cycle: %s -> %s",
+                    path, image.getId()));
+        }
+        if (!visited.add(image.getId())) {
+            return;
+        }
+        path.add(image.getId());
+        for (ImageBuildConfiguration parent : parents.get(image.getId())) {
+            checkForCycles(parent, visited, path);
+        }
+        path.remove(image.getId());
+    }
+}
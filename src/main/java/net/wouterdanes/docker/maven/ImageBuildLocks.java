@@ -0,0 +1,185 @@
+/*
+    Copyright 2014 Wouter Danes
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+*/
+
+package net.wouterdanes.docker.maven;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+
+import com.google.common.base.Optional;
+
+import net.wouterdanes.docker.provider.model.WaitPolicy;
+
+/**
+ * This class is responsible for making sure that only one maven process at a time builds an image from a build
+ * context. Every build context digest has a lock file in a directory that all processes share. The lock is held by the
+ * operating system, so it is released when a process dies. Lock files are never removed, removing them would let two
+ * processes lock different files for the same digest.
+ * <br>
+ * Closing any channel on a file releases all locks the JVM holds on it, so builds in the same JVM first take an
+ * in-memory lock of the lock file. Only the build that holds it opens a channel on the file.
+ */
+public class ImageBuildLocks {
+
+    // not reentrant and not owned by a thread, a second lock of the same file in the same thread has to fail as well
+    private static final ConcurrentMap<String, Semaphore> JVM_LOCKS = new ConcurrentHashMap<>();
+
+    private final File directory;
+
+    /**
+     * @param directory the directory to keep the lock files in
+     */
+    public ImageBuildLocks(final File directory) {
+        this.directory = directory;
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Locks a build context digest if no other build holds its lock.
+     *
+     * @param digest the digest of the build context
+     * @return the lock, or absent when another build holds it
+     * @throws IOException when the lock file can't be created
+     */
+    public Optional<Lock> tryAcquire(final String digest) throws IOException {
+        File lockFile = getLockFile(digest);
+        Semaphore jvmLock = getJvmLock(lockFile);
+        if (!jvmLock.tryAcquire()) {
+            // another build in this JVM holds the lock
+            return Optional.absent();
+        }
+        FileChannel channel = null;
+        try {
+            Files.createDirectories(directory.toPath());
+            channel = FileChannel.open(lockFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            FileLock lock = channel.tryLock();
+            if (lock != null) {
+                return Optional.of(new Lock(channel, jvmLock));
+            }
+        } catch (OverlappingFileLockException e) {
+            // can't happen while this JVM holds the in-memory lock, the file lock is simply not taken
+        } catch (IOException | RuntimeException e) {
+            closeQuietly(channel);
+            jvmLock.release();
+            throw e;
+        }
+        // this JVM holds no other channel on the file, so closing this one releases nothing else
+        closeQuietly(channel);
+        jvmLock.release();
+        return Optional.absent();
+    }
+
+    /**
+     * Locks a build context digest, waiting for other builds that hold its lock.
+     *
+     * @param digest        the digest of the build context
+     * @param waitPolicy    how to poll for the lock
+     * @param timeoutMillis the maximum time to wait for the lock (milliseconds), 0 means no limit
+     * @return the lock
+     * @throws IOException          when the lock file can't be created, or the lock is not released in time
+     * @throws InterruptedException when interrupted while waiting for the lock
+     */
+    public Lock acquire(final String digest, final WaitPolicy waitPolicy, final long timeoutMillis)
+            throws IOException, InterruptedException {
+        WaitPolicy.Backoff backoff = timeoutMillis > 0 ? waitPolicy.start(timeoutMillis) : waitPolicy.start();
+        Optional<Lock> lock = tryAcquire(digest);
+        while (!lock.isPresent()) {
+            // polling instead of blocking also works for a lock held by another build in this JVM
+            if (!backoff.await()) {
+                throw new IOException(String.format("The lock file %s was not released within %s ms (%s)",
+                        getLockFile(digest), timeoutMillis, backoff.describe()));
+            }
+            lock = tryAcquire(digest);
+        }
+        return lock.get().waitedWith(backoff);
+    }
+
+    private File getLockFile(final String digest) {
+        return new File(directory, digest + ".lock");
+    }
+
+    private static Semaphore getJvmLock(final File lockFile) {
+        String key = lockFile.getAbsoluteFile().toPath().normalize().toString();
+        Semaphore lock = JVM_LOCKS.get(key);
+        if (lock == null) {
+            Semaphore newLock = new Semaphore(1);
+            lock = JVM_LOCKS.putIfAbsent(key, newLock);
+            if (lock == null) {
+                lock = newLock;
+            }
+        }
+        return lock;
+    }
+
+    private static void closeQuietly(final FileChannel channel) {
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+            // the lock is released when the process ends
+        }
+    }
+
+    /**
+     * The lock of a build context digest, held until it is released.
+     */
+    public static final class Lock {
+        private final FileChannel channel;
+        private final Semaphore jvmLock;
+        private Optional<WaitPolicy.Backoff> backoff = Optional.absent();
+        private boolean released;
+
+        private Lock(final FileChannel channel, final Semaphore jvmLock) {
+            this.channel = channel;
+            this.jvmLock = jvmLock;
+        }
+
+        private Lock waitedWith(final WaitPolicy.Backoff backoff) {
+            this.backoff = Optional.of(backoff);
+            return this;
+        }
+
+        /**
+         * @return the backoff that was used to wait for this lock, absent when it was acquired with {@link ImageBuildLocks#tryAcquire(String)}
+         */
+        public Optional<WaitPolicy.Backoff> getBackoff() {
+            return backoff;
+        }
+
+        public synchronized void release() {
+            if (released) {
+                return;
+            }
+            released = true;
+            closeQuietly(channel);
+            jvmLock.release();
+        }
+    }
+}
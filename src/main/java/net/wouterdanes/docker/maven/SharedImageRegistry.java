@@ -0,0 +1,94 @@
+/*
+    Copyright 2014 Wouter Danes
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+*/
+
+package net.wouterdanes.docker.maven;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import org.apache.maven.execution.MavenSession;
+import org.eclipse.aether.SessionData;
+
+/**
+ * This class is responsible for building shared images only once per reactor build. It lives in the data of the
+ * repository session of the {@link MavenSession}, which all modules of a build share, also when they are built in
+ * parallel. The first module that needs a shared image builds it, other modules that need it at the same time wait
+ * for that build and then use its result.
+ */
+public class SharedImageRegistry {
+
+    private final ConcurrentMap<String, FutureTask<String>> images = new ConcurrentHashMap<>();
+
+    SharedImageRegistry() {
+    }
+
+    /**
+     * Returns the registry of a reactor build, creating it for the first module that asks for it.
+     *
+     * @param session the maven session of the build
+     * @return the registry of the build
+     */
+    public static SharedImageRegistry forSession(final MavenSession session) {
+        SessionData data = session.getRepositorySession().getData();
+        // the class is the key, so plugin versions with their own class realm don't share a registry
+        Object registry = data.get(SharedImageRegistry.class);
+        while (registry == null) {
+            SharedImageRegistry created = new SharedImageRegistry();
+            if (data.set(SharedImageRegistry.class, null, created)) {
+                registry = created;
+            } else {
+                registry = data.get(SharedImageRegistry.class);
+            }
+        }
+        return (SharedImageRegistry) registry;
+    }
+
+    /**
+     * Returns the image built for an id in this reactor, or builds it. When another module is building the image, this
+     * method waits for it. A failed build is not remembered, so the next module tries again.
+     *
+     * @param id    the id of the image in the plugin configuration
+     * @param build builds the image and returns the image id
+     * @return the image id
+     * @throws InterruptedException when interrupted while waiting for another module to build the image
+     */
+    public String getOrBuild(final String id, final Callable<String> build) throws InterruptedException {
+        FutureTask<String> task = new FutureTask<>(build);
+        FutureTask<String> existing = images.putIfAbsent(id, task);
+        if (existing == null) {
+            task.run();
+        } else {
+            task = existing;
+        }
+        try {
+            return task.get();
+        } catch (ExecutionException e) {
+            images.remove(id, task);
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(String.format("Cannot build shared image '%s'", id), cause);
+        }
+    }
+}
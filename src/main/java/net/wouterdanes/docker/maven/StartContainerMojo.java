@@ -18,17 +18,37 @@
 package net.wouterdanes.docker.maven;
 
 import java.util.ArrayList;
-import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Pattern;
 
 import javax.inject.Inject;
+import javax.ws.rs.ProcessingException;
 
+import com.google.common.base.Joiner;
 import com.google.common.base.Optional;
 import com.google.common.base.Predicate;
+import com.google.common.base.Splitter;
 import com.google.common.collect.Collections2;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 
 import org.apache.maven.plugin.MojoExecution;
 import org.apache.maven.plugin.MojoExecutionException;
@@ -43,9 +63,16 @@ import net.wouterdanes.docker.provider.DockerProvider;
 import net.wouterdanes.docker.provider.model.BuiltImageInfo;
 import net.wouterdanes.docker.provider.model.ContainerStartConfiguration;
 import net.wouterdanes.docker.provider.model.ExposedPort;
+import net.wouterdanes.docker.provider.model.ReadinessProbeConfiguration;
+import net.wouterdanes.docker.provider.model.WaitPolicy;
+import net.wouterdanes.docker.provider.readiness.ProbeContext;
+import net.wouterdanes.docker.provider.readiness.ReadinessProbe;
+import net.wouterdanes.docker.provider.readiness.ReadinessProbeSupplier;
 import net.wouterdanes.docker.remoteapi.exception.DockerException;
 import net.wouterdanes.docker.remoteapi.model.ContainerInspectionResult;
 import net.wouterdanes.docker.remoteapi.model.ContainerLink;
+import net.wouterdanes.docker.remoteapi.model.ImageInventory;
+import net.wouterdanes.docker.remoteapi.util.WaitHandles;
 
 /**
  * This class is responsible for starting docking containers in the pre-integration phase of the maven build. The goal
@@ -55,6 +82,9 @@ import net.wouterdanes.docker.remoteapi.model.ContainerLink;
         threadSafe = true, instantiationStrategy = InstantiationStrategy.PER_LOOKUP)
 public class StartContainerMojo extends AbstractPreVerifyDockerMojo {
 
+    private static final int LOG_TAIL_LINES = 20;
+    private static final int ABORT_WAITS_SECONDS = 10;
+
     @Parameter(required = true)
     private List<ContainerStartConfiguration> containers;
 
@@ -69,93 +99,544 @@ public class StartContainerMojo extends AbstractPreVerifyDockerMojo {
     @Parameter(defaultValue = "${mojoExecution}", readonly = true)
     private MojoExecution mojoExecution;
 
+    /**
+     * The maximum number of containers that are started at the same time. A container is always started after the
+     * containers it links to have finished starting up. Containers that are starting up are all waited for at the same
+     * time, regardless of this setting.
+     */
+    @Parameter(defaultValue = "1", property = "docker.startConcurrency")
+    private int startConcurrency = 1;
+
+    /**
+     * The maximum number of images that are pulled at the same time, before the containers are started.
+     */
+    @Parameter(defaultValue = "4", property = "docker.pullConcurrency")
+    private int pullConcurrency = 4;
+
+    /**
+     * The maximum time to start all containers and wait for them to finish starting up (seconds), 0 means no limit.
+     * When it passes, the containers that were started are stopped and removed again.
+     */
+    @Parameter(defaultValue = "0", property = "docker.startupDeadline")
+    private int startupDeadline;
+
+    /**
+     * Whether to stop at the first container that fails to start or to finish starting up. The containers that were
+     * started are stopped and removed again.
+     */
+    @Parameter(defaultValue = "false", property = "docker.failFast")
+    private boolean failFast;
+
+    private ContainerStateTable containerStates;
+    private long deadline = Long.MAX_VALUE;
+    private volatile boolean startupAborted;
+    private WaitHandles waitHandles;
+
     @Override
     public void doExecute() throws MojoExecutionException, MojoFailureException {
-        if (hasDuplicateIds() || hasInvalidLinks()) {
+        if (hasDuplicateIds() || hasInvalidLinks() || hasInvalidReadinessProbes()) {
             return;
         }
-        DockerProvider provider = getDockerProvider();
+        containerStates = obtainContainerStateTable();
+        if (startupDeadline > 0) {
+            deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(startupDeadline);
+        }
+        pullMissingImages();
+        int threads = Math.max(1, Math.min(startConcurrency, containers.size()));
+        ExecutorService startExecutor = Executors.newFixedThreadPool(threads, daemonThreads("docker-start-%d"));
+        ExecutorService waitExecutor = Executors.newCachedThreadPool(daemonThreads("docker-wait-%d"));
+        BlockingQueue<Future<StartupStep>> completedSteps = new LinkedBlockingQueue<>();
+        waitHandles = new WaitHandles();
+        try {
+            startContainers(startExecutor, waitExecutor,
+                    new ExecutorCompletionService<StartupStep>(startExecutor, completedSteps),
+                    new ExecutorCompletionService<StartupStep>(waitExecutor, completedSteps), completedSteps);
+        } finally {
+            waitHandles.close();
+            startExecutor.shutdownNow();
+            waitExecutor.shutdownNow();
+        }
+        getLog().debug("Properties after exposing ports: " + project.getProperties());
+    }
+
+    /**
+     * Pulls the images of the containers that the docker daemon doesn't have, several at a time, before any container
+     * is created. The images of the daemon are listed once for all containers. An image that can't be pulled is
+     * reported like a container that can't be started.
+     */
+    private void pullMissingImages() throws MojoExecutionException {
+        Set<String> images = new LinkedHashSet<>();
+        for (ContainerStartConfiguration configuration : containers) {
+            String image = configuration.getImage();
+            if (image != null && !getBuiltImageForStartId(image).isPresent()) {
+                images.add(image);
+            }
+        }
+        if (images.isEmpty()) {
+            return;
+        }
+        ImageInventory inventory;
+        try {
+            inventory = getDockerProvider().listImages();
+        } catch (DockerException | ProcessingException e) {
+            getLog().warn("Cannot list the images of the docker daemon, images are pulled when they are needed", e);
+            return;
+        }
+        List<String> missingImages = new ArrayList<>();
+        for (String image : images) {
+            if (!inventory.contains(image)) {
+                missingImages.add(image);
+            }
+        }
+        if (missingImages.isEmpty()) {
+            return;
+        }
+        int threads = Math.max(1, Math.min(pullConcurrency, missingImages.size()));
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            Map<String, Future<?>> pulls = new LinkedHashMap<>();
+            for (final String image : missingImages) {
+                pulls.put(image, executor.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        pullImage(image);
+                    }
+                }));
+            }
+            for (Map.Entry<String, Future<?>> pull : pulls.entrySet()) {
+                awaitPull(pull.getKey(), pull.getValue());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private void pullImage(final String image) {
+        getLog().info(String.format("Pulling image %s..", image));
+        long started = System.currentTimeMillis();
+        getDockerProvider().pullImage(image);
+        getLog().info(String.format("Pulled image %s in %s ms", image, System.currentTimeMillis() - started));
+    }
+
+    private void awaitPull(final String image, final Future<?> pull) throws MojoExecutionException {
+        try {
+            pull.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException("Interrupted while waiting for images to be pulled", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            DockerException failure = cause instanceof DockerException
+                    ? (DockerException) cause
+                    : new DockerException(String.valueOf(cause.getMessage()), cause);
+            handleDockerException(String.format("Failed to pull image %s", image), failure);
+        }
+    }
+
+    /**
+     * Starts every container as soon as the containers it links to are ready: started and, when they have a
+     * <code>waitForStartup</code> pattern, finished starting up. Starting a container and waiting for it are separate
+     * steps, so other containers can be started while a container is starting up. Waits don't take a start slot, so
+     * all starting containers are watched at once and each one is ready as soon as its own conditions hold. The results
+     * of both kinds of steps end up in one queue and are handled on this thread only. When the startup deadline passes,
+     * or a container fails in fail fast mode, the containers that were started are torn down again.
+     */
+    private void startContainers(final ExecutorService startExecutor, final ExecutorService waitExecutor,
+                                 final CompletionService<StartupStep> startService,
+                                 final CompletionService<StartupStep> waitService,
+                                 final BlockingQueue<Future<StartupStep>> completedSteps)
+            throws MojoExecutionException, MojoFailureException {
+        Map<String, Integer> unreadyLinks = new HashMap<>();
+        Map<String, List<ContainerStartConfiguration>> dependents = new HashMap<>();
+        for (ContainerStartConfiguration configuration : containers) {
+            unreadyLinks.put(configuration.getId(), configuration.getLinks().size());
+            dependents.put(configuration.getId(), new ArrayList<ContainerStartConfiguration>());
+        }
+        Map<String, String> startedContainerIds = new HashMap<>();
+        int pendingSteps = 0;
         for (ContainerStartConfiguration configuration : containers) {
             for (ContainerLink link : configuration.getLinks()) {
-                String linkedContainerId = link.getContainerId();
-                ContainerStartConfiguration startConfiguration = getContainerStartConfiguration(linkedContainerId);
-                if (startConfiguration.getWaitForStartup() != null) {
-                    waitForContainerToFinishStartup(startConfiguration);
+                dependents.get(link.getContainerId()).add(configuration);
+            }
+            if (configuration.getLinks().isEmpty()) {
+                submitStart(startService, configuration);
+                pendingSteps++;
+            }
+        }
+
+        while (pendingSteps > 0) {
+            Optional<Future<StartupStep>> completedStep = pollCompletedStep(completedSteps);
+            if (!completedStep.isPresent()) {
+                String message = String.format("The containers did not start within the startup deadline of %s sec.",
+                        startupDeadline);
+                getLog().error(message);
+                registerPluginError(new DockerPluginError(getMojoGoalName(), message));
+                tearDownStartedContainers(startedContainerIds, startExecutor, waitExecutor, completedSteps);
+                return;
+            }
+            StartupStep step = getStep(completedStep.get());
+            pendingSteps--;
+            ContainerStartConfiguration configuration = step.configuration;
+            if (step.failure != null) {
+                String message = String.format("Failed to start container '%s'", configuration.getId());
+                handleDockerException(message, step.failure);
+                if (failFast) {
+                    tearDownStartedContainers(startedContainerIds, startExecutor, waitExecutor, completedSteps);
+                    return;
+                }
+                skipDependents(dependents, configuration, new HashSet<String>());
+                continue;
+            }
+            if (step.container != null) {
+                exposePortsToProject(configuration, step.exposedPorts);
+                getLog().info(String.format("Started container with id '%s'", step.container.getId()));
+                registerStartedContainer(configuration.getId(), step.container);
+                startedContainerIds.put(configuration.getId(), step.container.getId());
+                containerStates.track(step.container.getId());
+                if (configuration.getWaitForStartup() != null || !configuration.getReadinessProbes().isEmpty()) {
+                    submitWait(waitService, configuration, step.container.getId(), step.exposedPorts);
+                    pendingSteps++;
+                    continue;
+                }
+            } else if (!step.ready) {
+                registerPluginError(new DockerPluginError(getMojoGoalName(), step.reason));
+                getLog().error(step.reason);
+                if (failFast) {
+                    tearDownStartedContainers(startedContainerIds, startExecutor, waitExecutor, completedSteps);
+                    return;
+                }
+                if (step.exited) {
+                    skipDependents(dependents, configuration, new HashSet<String>());
+                    continue;
+                }
+            }
+            for (ContainerStartConfiguration dependent : dependents.get(configuration.getId())) {
+                int remaining = unreadyLinks.get(dependent.getId()) - 1;
+                unreadyLinks.put(dependent.getId(), remaining);
+                if (remaining == 0) {
+                    submitStart(startService, dependent);
+                    pendingSteps++;
+                }
+            }
+        }
+    }
+
+    private void submitStart(final CompletionService<StartupStep> completionService,
+                             final ContainerStartConfiguration configuration) {
+        replaceImageWithBuiltImageIdIfInternalId(configuration);
+        replaceLinkedContainerIdsWithStartedNames(configuration);
+        completionService.submit(new Callable<StartupStep>() {
+            @Override
+            public StartupStep call() {
+                if (startupAborted) {
+                    return StartupStep.failed(configuration, new DockerException("Startup was aborted"));
+                }
+                try {
+                    getLog().info(String.format("Starting container '%s'..", configuration.getId()));
+                    DockerProvider provider = getDockerProvider();
+                    ContainerInspectionResult container = provider.startContainer(configuration);
+                    if (startupAborted) {
+                        // nobody will tear this container down after the goal has given up
+                        removeContainer(configuration.getId(), container.getId());
+                        return StartupStep.failed(configuration, new DockerException("Startup was aborted"));
+                    }
+                    List<ExposedPort> exposedPorts = provider.getExposedPorts(container.getId());
+                    return StartupStep.started(configuration, container, exposedPorts);
+                } catch (DockerException e) {
+                    return StartupStep.failed(configuration, e);
                 }
             }
-            replaceImageWithBuiltImageIdIfInternalId(configuration);
-            replaceLinkedContainerIdsWithStartedNames(configuration);
+        });
+    }
+
+    private void submitWait(final CompletionService<StartupStep> completionService,
+                            final ContainerStartConfiguration configuration, final String containerId,
+                            final List<ExposedPort> exposedPorts) {
+        completionService.submit(new Callable<StartupStep>() {
+            @Override
+            public StartupStep call() {
+                if (waitUntilReady(configuration, containerId, exposedPorts)) {
+                    return StartupStep.ready(configuration);
+                }
+                if (startupAborted) {
+                    return StartupStep.notReady(configuration, false, "Startup was aborted");
+                }
+                return notReady(configuration, containerId);
+            }
+        });
+    }
+
+    /**
+     * Stops and removes the containers that were started, all at the same time. Starts that are still running are
+     * finished first, so the containers they started are removed as well, even when their results were not handled yet.
+     * Waits that are still running are aborted by closing the streams and sockets they block on, they are done before
+     * the containers are removed.
+     *
+     * @param startedContainerIds the ids of the started containers, by the id in the configuration
+     * @param startExecutor the executor that runs the starts
+     * @param waitExecutor the executor that runs the waits for started containers
+     * @param completedSteps the steps that finished but were not handled yet
+     */
+    private void tearDownStartedContainers(final Map<String, String> startedContainerIds,
+                                           final ExecutorService startExecutor, final ExecutorService waitExecutor,
+                                           final BlockingQueue<Future<StartupStep>> completedSteps) {
+        startupAborted = true;
+        awaitRunningStarts(startExecutor);
+        abortRunningWaits(waitExecutor);
+        Map<String, String> containerIds = new HashMap<>(startedContainerIds);
+        List<Future<StartupStep>> unhandledSteps = new ArrayList<>();
+        completedSteps.drainTo(unhandledSteps);
+        for (Future<StartupStep> unhandledStep : unhandledSteps) {
+            StartupStep step;
             try {
-                getLog().info(String.format("Starting container '%s'..", configuration.getId()));
-                ContainerInspectionResult container = provider.startContainer(configuration);
-                String containerId = container.getId();
-                List<ExposedPort> exposedPorts = provider.getExposedPorts(containerId);
-                exposePortsToProject(configuration, exposedPorts);
-                getLog().info(String.format("Started container with id '%s'", containerId));
-                registerStartedContainer(configuration.getId(), container);
-            } catch (DockerException e) {
-                String message = String.format("Failed to start container '%s'", configuration.getId());
-                handleDockerException(message, e);
+                step = Futures.getUnchecked(unhandledStep);
+            } catch (UncheckedExecutionException e) {
+                // a step that failed didn't start a container
+                getLog().debug("A container start failed while the startup was aborted", e.getCause());
+                continue;
+            }
+            if (step.container != null && !containerIds.containsKey(step.configuration.getId())) {
+                getLog().debug(String.format("Container '%s' was started while the startup was aborted",
+                        step.configuration.getId()));
+                containerIds.put(step.configuration.getId(), step.container.getId());
             }
         }
-        getLog().debug("Properties after exposing ports: " + project.getProperties());
-        waitForContainersToFinishStartup();
+        removeContainers(containerIds);
+        for (String startId : startedContainerIds.keySet()) {
+            unregisterStartedContainer(startId);
+        }
     }
 
-    private ContainerStartConfiguration getContainerStartConfiguration(String id) {
-        for (ContainerStartConfiguration configuration : containers) {
-            if (configuration.getId().equals(id)) {
-                return configuration;
+    private void awaitRunningStarts(final ExecutorService startExecutor) {
+        startExecutor.shutdown();
+        try {
+            while (!startExecutor.awaitTermination(1, TimeUnit.SECONDS)) {
+                getLog().debug("Waiting for running container starts to finish..");
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            getLog().warn("Interrupted while waiting for running container starts to finish");
         }
-        throw new IllegalArgumentException(String.format("No container with ID '%s'", id));
     }
 
-    private void waitForContainersToFinishStartup() {
-        Collection<ContainerStartConfiguration> waiters =
-                Collections2.filter(containers, new Predicate<ContainerStartConfiguration>() {
+    private void abortRunningWaits(final ExecutorService waitExecutor) {
+        waitHandles.close();
+        waitExecutor.shutdownNow();
+        try {
+            if (!waitExecutor.awaitTermination(ABORT_WAITS_SECONDS, TimeUnit.SECONDS)) {
+                getLog().warn("Some waits for container startup did not stop, removing the containers anyway");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            getLog().warn("Interrupted while aborting the waits for container startup");
+        }
+    }
+
+    private static ThreadFactory daemonThreads(final String nameFormat) {
+        return new ThreadFactoryBuilder().setDaemon(true).setNameFormat(nameFormat).build();
+    }
+
+    private void removeContainers(final Map<String, String> startedContainerIds) {
+        if (startedContainerIds.isEmpty()) {
+            return;
+        }
+        getLog().info(String.format("Stopping and removing %s started container(s)..", startedContainerIds.size()));
+        ExecutorService executor = Executors.newFixedThreadPool(startedContainerIds.size());
+        try {
+            List<Future<?>> removals = new ArrayList<>(startedContainerIds.size());
+            for (final Map.Entry<String, String> container : startedContainerIds.entrySet()) {
+                removals.add(executor.submit(new Runnable() {
                     @Override
-                    public boolean apply(final ContainerStartConfiguration input) {
-                        return input.getWaitForStartup() != null;
+                    public void run() {
+                        removeContainer(container.getKey(), container.getValue());
                     }
-                });
-        for (ContainerStartConfiguration container : waiters) {
-            waitForContainerToFinishStartup(container);
+                }));
+            }
+            for (Future<?> removal : removals) {
+                Futures.getUnchecked(removal);
+            }
+        } finally {
+            executor.shutdown();
         }
     }
 
-    private void waitForContainerToFinishStartup(final ContainerStartConfiguration container) {
-        Pattern pattern = Pattern.compile(container.getWaitForStartup());
-        Optional<StartedContainerInfo> startedContainerInfo = getInfoForContainerStartId(container.getId());
-        if (!startedContainerInfo.isPresent()) {
-            return;
+    private void removeContainer(final String startId, final String containerId) {
+        DockerProvider provider = getDockerProvider();
+        try {
+            provider.stopContainer(containerId);
+            provider.deleteContainer(containerId);
+            getLog().info(String.format("Removed container '%s'", startId));
+        } catch (DockerException e) {
+            getLog().error(String.format("Failed to remove container '%s'", startId), e);
         }
-        StartedContainerInfo containerInfo = startedContainerInfo.get();
-        String containerId = containerInfo.getContainerInfo().getId();
-        long maxWait = System.currentTimeMillis() + 1000 * container.getStartupTimeout();
-        boolean finished = false;
-        while (System.currentTimeMillis() <= maxWait) {
-            String logs = getDockerProvider().getLogs(containerId);
-            if (logs != null && pattern.matcher(logs).find()) {
-                getLog().info(String.format("Container '%s' has completed startup", container.getId()));
-                finished = true;
-                break;
+    }
+
+    /**
+     * @return the given timeout, or the time left until the startup deadline when that is sooner
+     */
+    private long capToStartupDeadline(final long timeoutMillis) {
+        return Math.max(0, Math.min(timeoutMillis, deadline - System.currentTimeMillis()));
+    }
+
+    private boolean waitUntilReady(final ContainerStartConfiguration configuration, final String containerId,
+                                   final List<ExposedPort> exposedPorts) {
+        if (configuration.getWaitForStartup() != null
+                && !waitForContainerToFinishStartup(configuration, containerId)) {
+            return false;
+        }
+        ProbeContext context = new ProbeContext(containerId, exposedPorts, getDockerProvider(), waitHandles);
+        for (ReadinessProbeConfiguration probe : configuration.getReadinessProbes()) {
+            if (!waitForReadinessProbe(configuration, probe, context)) {
+                return false;
             }
-            try {
-                getLog().info(String.format("Waiting for container '%s' to finish startup (max %s sec.)",
-                        container.getId(), container.getStartupTimeout()));
-                Thread.sleep(1000);
-            } catch (InterruptedException ignored) {
-                break;
+        }
+        return true;
+    }
+
+    /**
+     * Tells a container that exited while it was starting up from one that is just slow. An exited container is
+     * reported with its exit code and the last lines of its logs.
+     */
+    private StartupStep notReady(final ContainerStartConfiguration configuration, final String containerId) {
+        Optional<Integer> exitCode;
+        try {
+            exitCode = containerStates.getExitCode(containerId, getDockerProvider());
+        } catch (DockerException e) {
+            getLog().debug(String.format("Cannot inspect container '%s'", configuration.getId()), e);
+            exitCode = Optional.absent();
+        }
+        if (!exitCode.isPresent()) {
+            return StartupStep.notReady(configuration, false,
+                    String.format("Container %s did not finish startup in time", configuration.getId()));
+        }
+        return StartupStep.notReady(configuration, true, String.format(
+                "Container %s exited with code %s while starting up, the last lines of its logs are:%n%s",
+                configuration.getId(), exitCode.get(), getLogTail(containerId)));
+    }
+
+    private String getLogTail(final String containerId) {
+        String logs;
+        try {
+            logs = getDockerProvider().getLogs(containerId);
+        } catch (DockerException e) {
+            return "(the logs are not available: " + e.getMessage() + ")";
+        }
+        if (logs == null) {
+            return "(the logs are not available)";
+        }
+        List<String> lines = Splitter.on('\n').omitEmptyStrings().splitToList(logs);
+        return Joiner.on(String.format("%n")).join(lines.subList(Math.max(0, lines.size() - LOG_TAIL_LINES),
+                lines.size()));
+    }
+
+    private boolean waitForReadinessProbe(final ContainerStartConfiguration container,
+                                          final ReadinessProbeConfiguration configuration,
+                                          final ProbeContext context) {
+        ReadinessProbe probe = new ReadinessProbeSupplier(configuration.getType()).get();
+        int timeout = configuration.getTimeout() != 0 ? configuration.getTimeout() : container.getStartupTimeout();
+        WaitPolicy waitPolicy = configuration.getInterval() > 0
+                ? WaitPolicy.fixed(configuration.getInterval())
+                : getWaitPolicy();
+        WaitPolicy.Backoff backoff = waitPolicy.start(capToStartupDeadline(TimeUnit.SECONDS.toMillis(timeout)));
+        getLog().info(String.format("Waiting for the %s readiness probe of container '%s' (max %s sec.)",
+                configuration.getType(), container.getId(), timeout));
+        try {
+            while (!probe.isReady(configuration, context)) {
+                if (startupAborted) {
+                    return false;
+                }
+                if (containerStates.hasExited(context.getContainerId(), context.getProvider())) {
+                    // no point in waiting for a container that has stopped
+                    return false;
+                }
+                if (!backoff.await()) {
+                    getLog().error(String.format("The %s readiness probe of container '%s' did not succeed after %s",
+                            configuration.getType(), container.getId(), backoff.describe()));
+                    return false;
+                }
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (DockerException | IllegalArgumentException e) {
+            getLog().error(String.format("The %s readiness probe of container '%s' failed", configuration.getType(),
+                    container.getId()), e);
+            return false;
         }
-        if (!finished) {
-            String message = String.format("Container %s did not finish startup in time", container.getId());
-            registerPluginError(new DockerPluginError(getMojoGoalName(), message));
+        getLog().info(String.format("Container '%s' passed the %s readiness probe after %s", container.getId(),
+                configuration.getType(), backoff.describe()));
+        return true;
+    }
+
+    private void skipDependents(final Map<String, List<ContainerStartConfiguration>> dependents,
+                                final ContainerStartConfiguration configuration, final Set<String> skipped) {
+        for (ContainerStartConfiguration dependent : dependents.get(configuration.getId())) {
+            if (!skipped.add(dependent.getId())) {
+                continue;
+            }
+            String message = String.format("Container '%s' is not started, because it links to container '%s' "
+                    + "that failed to start", dependent.getId(), configuration.getId());
             getLog().error(message);
+            registerPluginError(new DockerPluginError(getMojoGoalName(), message));
+            skipDependents(dependents, dependent, skipped);
         }
     }
 
+    /**
+     * @return the next completed step, or absent when the startup deadline passes first
+     */
+    private Optional<Future<StartupStep>> pollCompletedStep(final BlockingQueue<Future<StartupStep>> completedSteps)
+            throws MojoExecutionException {
+        try {
+            if (deadline == Long.MAX_VALUE) {
+                return Optional.of(completedSteps.take());
+            }
+            long remaining = deadline - System.currentTimeMillis();
+            return Optional.fromNullable(completedSteps.poll(Math.max(0, remaining), TimeUnit.MILLISECONDS));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException("Interrupted while waiting for containers to start", e);
+        }
+    }
+
+    private static StartupStep getStep(final Future<StartupStep> step) throws MojoExecutionException {
+        try {
+            return step.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException("Interrupted while waiting for containers to start", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new MojoExecutionException("Unexpected error while starting a container", cause);
+        }
+    }
+
+    private boolean waitForContainerToFinishStartup(final ContainerStartConfiguration container,
+                                                    final String containerId) {
+        Pattern pattern = Pattern.compile(container.getWaitForStartup());
+        getLog().info(String.format("Waiting for container '%s' to finish startup (max %s sec.)",
+                container.getId(), container.getStartupTimeout()));
+        try {
+            if (getDockerProvider().waitForLogs(containerId, pattern,
+                    capToStartupDeadline(TimeUnit.SECONDS.toMillis(container.getStartupTimeout())), waitHandles)) {
+                getLog().info(String.format("Container '%s' has completed startup", container.getId()));
+                return true;
+            }
+        } catch (DockerException e) {
+            getLog().error(String.format("Cannot follow the logs of container '%s'", container.getId()), e);
+        }
+        return false;
+    }
+
     private boolean hasInvalidLinks() {
         List<String> containerIds = new ArrayList<>();
         boolean hasInvalidLinks = false;
@@ -175,6 +656,24 @@ public class StartContainerMojo extends AbstractPreVerifyDockerMojo {
         return hasInvalidLinks;
     }
 
+    private boolean hasInvalidReadinessProbes() {
+        boolean hasInvalidProbes = false;
+        for (ContainerStartConfiguration configuration : containers) {
+            for (ReadinessProbeConfiguration probe : configuration.getReadinessProbes()) {
+                try {
+                    new ReadinessProbeSupplier(probe.getType()).get();
+                } catch (IllegalStateException e) {
+                    String message = String.format("Container '%s' has an invalid readiness probe: %s",
+                            configuration.getId(), e.getMessage());
+                    getLog().error(message);
+                    registerPluginError(new DockerPluginError(mojoExecution.getGoal(), message));
+                    hasInvalidProbes = true;
+                }
+            }
+        }
+        return hasInvalidProbes;
+    }
+
     private boolean hasDuplicateIds() {
         Set<String> ids = new HashSet<>(containers.size());
         for (ContainerStartConfiguration configuration : containers) {
@@ -227,6 +726,22 @@ public class StartContainerMojo extends AbstractPreVerifyDockerMojo {
         this.mojoExecution = mojoExecution;
     }
 
+    public void setStartConcurrency(final int startConcurrency) {
+        this.startConcurrency = startConcurrency;
+    }
+
+    public void setPullConcurrency(final int pullConcurrency) {
+        this.pullConcurrency = pullConcurrency;
+    }
+
+    public void setStartupDeadline(final int startupDeadline) {
+        this.startupDeadline = startupDeadline;
+    }
+
+    public void setFailFast(final boolean failFast) {
+        this.failFast = failFast;
+    }
+
     private void addPropertyToProject(String key, String value) {
         getLog().info(String.format("Setting property '%s' to '%s'", key, value));
         project.getProperties().setProperty(key, value);
@@ -236,4 +751,49 @@ public class StartContainerMojo extends AbstractPreVerifyDockerMojo {
     protected String getMojoGoalName() {
         return "start-containers";
     }
-}
\ No newline at end of file
+
+    /**
+     * The result of starting a container, or of waiting for it to finish starting up.
+     */
+    private static final class StartupStep {
+        private final ContainerStartConfiguration configuration;
+        private final ContainerInspectionResult container;
+        private final List<ExposedPort> exposedPorts;
+        private final boolean ready;
+        private final boolean exited;
+        private final String reason;
+        private final DockerException failure;
+
+        private StartupStep(final ContainerStartConfiguration configuration, final ContainerInspectionResult container,
+                            final List<ExposedPort> exposedPorts, final boolean ready, final boolean exited,
+                            final String reason, final DockerException failure) {
+            this.configuration = configuration;
+            this.container = container;
+            this.exposedPorts = exposedPorts;
+            this.ready = ready;
+            this.exited = exited;
+            this.reason = reason;
+            this.failure = failure;
+        }
+
+        private static StartupStep started(final ContainerStartConfiguration configuration,
+                                           final ContainerInspectionResult container,
+                                           final List<ExposedPort> exposedPorts) {
+            return new StartupStep(configuration, container, exposedPorts, false, false, null, null);
+        }
+
+        private static StartupStep ready(final ContainerStartConfiguration configuration) {
+            return new StartupStep(configuration, null, null, true, false, null, null);
+        }
+
+        private static StartupStep notReady(final ContainerStartConfiguration configuration, final boolean exited,
+                                            final String reason) {
+            return new StartupStep(configuration, null, null, false, exited, reason, null);
+        }
+
+        private static StartupStep failed(final ContainerStartConfiguration configuration,
+                                          final DockerException failure) {
+            return new StartupStep(configuration, null, null, false, false, null, failure);
+        }
+    }
+}
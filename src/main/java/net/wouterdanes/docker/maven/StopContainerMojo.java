@@ -17,6 +17,8 @@
 
 package net.wouterdanes.docker.maven;
 
+import com.google.common.base.Optional;
+
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
 import org.apache.maven.plugins.annotations.LifecyclePhase;
@@ -34,8 +36,13 @@ public class StopContainerMojo extends AbstractPreVerifyDockerMojo {
 
     @Override
     public void doExecute() throws MojoExecutionException, MojoFailureException {
+        Optional<ContainerStateTable> containerStates = getContainerStateTable();
         for (StartedContainerInfo container : getStartedContainers()) {
             String containerId = container.getContainerInfo().getId();
+            if (containerStates.isPresent() && containerStates.get().isKnownToBeStopped(containerId)) {
+                getLog().info(String.format("Container '%s' has already stopped", containerId));
+                continue;
+            }
             getLog().info(String.format("Stopping container '%s'..", containerId));
             try {
                 getDockerProvider().stopContainer(containerId);
@@ -45,6 +52,10 @@ public class StopContainerMojo extends AbstractPreVerifyDockerMojo {
         }
         for (StartedContainerInfo container : getStartedContainers()) {
             String containerId = container.getContainerInfo().getId();
+            if (containerStates.isPresent() && containerStates.get().isKnownToBeRemoved(containerId)) {
+                getLog().info(String.format("Container '%s' has already been removed", containerId));
+                continue;
+            }
             getLog().info(String.format("Deleting container '%s'..", containerId));
             try {
                 getDockerProvider().deleteContainer(containerId);
@@ -52,6 +63,7 @@ public class StopContainerMojo extends AbstractPreVerifyDockerMojo {
                 getLog().error("Failed to delete container", e);
             }
         }
+        closeContainerStateTable();
         for (BuiltImageInfo image : getBuiltImages()) {
             if (image.shouldKeepAfterStopping()) {
                 getLog().info(String.format("Keeping image %s", image.getImageId()));
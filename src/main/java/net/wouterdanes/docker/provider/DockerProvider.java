@@ -17,15 +17,24 @@
 
 package net.wouterdanes.docker.provider;
 
+import java.io.Closeable;
 import java.util.List;
+import java.util.regex.Pattern;
+
+import com.google.common.base.Optional;
 
 import org.apache.maven.plugin.logging.Log;
 
 import net.wouterdanes.docker.provider.model.ContainerStartConfiguration;
 import net.wouterdanes.docker.provider.model.ExposedPort;
 import net.wouterdanes.docker.provider.model.ImageBuildConfiguration;
+import net.wouterdanes.docker.provider.model.ImageBuildOptions;
+import net.wouterdanes.docker.provider.model.ImageBuildResult;
+import net.wouterdanes.docker.remoteapi.DockerEventListener;
 import net.wouterdanes.docker.remoteapi.model.ContainerInspectionResult;
 import net.wouterdanes.docker.remoteapi.model.Credentials;
+import net.wouterdanes.docker.remoteapi.model.ImageInventory;
+import net.wouterdanes.docker.remoteapi.util.WaitHandles;
 
 /**
  * This interface represents an implementation that provides Docker functionality. Examples are:
@@ -73,9 +82,29 @@ public interface DockerProvider {
     /**
      * Builds a new Docker Image based on the passed configuration and returns the id of the newly created image.
      * @param image the image configuration to use
-     * @return the id of the new Docker Image
+     * @param options the labels, compression and context cache to build the image with
+     * @return the id of the new Docker Image, and the report of the build if the provider measures builds
+     */
+    ImageBuildResult buildImage(ImageBuildConfiguration image, ImageBuildOptions options);
+
+    /**
+     * Checks whether the docker daemon knows an image
+     * @param imageId the Id, or the name and tag, of the image
+     * @return true if the image exists on the docker daemon
+     */
+    boolean hasImage(String imageId);
+
+    /**
+     * Lists the images the docker daemon has with a single call
+     * @return the names and ids of the images
      */
-    String buildImage(ImageBuildConfiguration image);
+    ImageInventory listImages();
+
+    /**
+     * Pulls an image from its registry
+     * @param image the name and optional tag of the image
+     */
+    void pullImage(String image);
 
     /**
      * Removes an image from docker
@@ -103,9 +132,51 @@ public interface DockerProvider {
      */
     String getLogs(String containerId);
 
+    /**
+     * Follows the logs of the specified container until a pattern appears in them
+     * @param containerId the Id of the container
+     * @param pattern the pattern to look for
+     * @param timeoutMillis how long to wait for the pattern, in milliseconds
+     * @param handles the handles to register the log stream with, closing them aborts the wait
+     * @return true if the pattern appeared, false if the container stopped, the timeout passed or the wait was aborted
+     * first
+     */
+    boolean waitForLogs(String containerId, Pattern pattern, long timeoutMillis, WaitHandles handles);
+
+    /**
+     * Runs a command in the specified container and waits for it to finish
+     * @param containerId the Id of the container
+     * @param command the command and its arguments
+     * @param handles the handles to register the output of the command with, closing them aborts the wait
+     * @return the exit code of the command
+     */
+    int execInContainer(String containerId, List<String> command, WaitHandles handles);
+
+    /**
+     * Returns the exit code of a container that has stopped
+     * @param containerId the Id of the container
+     * @return the exit code, or absent if the container is still running
+     */
+    Optional<Integer> getExitCode(String containerId);
+
+    /**
+     * Follows the events of the Docker host on a background thread until the returned subscription is closed
+     * @param listener the listener to pass the events to
+     * @return the subscription, or absent if the provider can't follow events
+     */
+    Optional<Closeable> followEvents(DockerEventListener listener);
+
     /**
      * Sets the logger to use.
      * @param logger the Maven logger to use
      */
     void setLogger(Log logger);
+
+    /**
+     * Looks for an image on the Docker host that has a label with a specific value
+     * @param label the name of the label
+     * @param value the value of the label
+     * @return the Id of a matching image, or absent if the Docker host has none
+     */
+    Optional<String> findImageByLabel(String label, String value);
 }
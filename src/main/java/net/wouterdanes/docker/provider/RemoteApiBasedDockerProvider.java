@@ -17,40 +17,53 @@
 
 package net.wouterdanes.docker.provider;
 
-import java.io.ByteArrayOutputStream;
-import java.io.File;
-import java.io.FileNotFoundException;
+import java.io.Closeable;
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import javax.ws.rs.core.StreamingOutput;
 
 import com.google.common.base.Optional;
 
-import org.apache.commons.compress.archivers.ArchiveEntry;
-import org.apache.commons.compress.archivers.ArchiveException;
-import org.apache.commons.compress.archivers.ArchiveOutputStream;
-import org.apache.commons.compress.archivers.ArchiveStreamFactory;
 import org.apache.maven.plugin.logging.Log;
 
-import net.wouterdanes.docker.provider.model.Artifact;
+import net.wouterdanes.docker.provider.context.BuildContext;
+import net.wouterdanes.docker.provider.context.ContextArchiveCache;
+import net.wouterdanes.docker.provider.context.ContextCompression;
+import net.wouterdanes.docker.provider.context.ContextScanner;
+import net.wouterdanes.docker.provider.context.MeasuredOutput;
 import net.wouterdanes.docker.provider.model.ContainerStartConfiguration;
 import net.wouterdanes.docker.provider.model.ImageBuildConfiguration;
+import net.wouterdanes.docker.provider.model.ImageBuildOptions;
+import net.wouterdanes.docker.provider.model.ImageBuildReport;
+import net.wouterdanes.docker.provider.model.ImageBuildResult;
 import net.wouterdanes.docker.remoteapi.BaseService;
 import net.wouterdanes.docker.remoteapi.ContainersService;
+import net.wouterdanes.docker.remoteapi.DockerEventListener;
+import net.wouterdanes.docker.remoteapi.EventsService;
+import net.wouterdanes.docker.remoteapi.ExecService;
 import net.wouterdanes.docker.remoteapi.ImagesService;
 import net.wouterdanes.docker.remoteapi.MiscService;
+import net.wouterdanes.docker.remoteapi.ProgressListener;
 import net.wouterdanes.docker.remoteapi.exception.ImageNotFoundException;
 import net.wouterdanes.docker.remoteapi.model.ContainerCreateRequest;
 import net.wouterdanes.docker.remoteapi.model.ContainerInspectionResult;
 import net.wouterdanes.docker.remoteapi.model.ContainerStartRequest;
 import net.wouterdanes.docker.remoteapi.model.Credentials;
+import net.wouterdanes.docker.remoteapi.model.ImageInventory;
+import net.wouterdanes.docker.remoteapi.util.ByteSizes;
 import net.wouterdanes.docker.remoteapi.util.DockerHostFromEnvironmentSupplier;
 import net.wouterdanes.docker.remoteapi.util.DockerHostFromPropertySupplier;
 import net.wouterdanes.docker.remoteapi.util.DockerPortFromEnvironmentSupplier;
 import net.wouterdanes.docker.remoteapi.util.DockerPortFromPropertySupplier;
+import net.wouterdanes.docker.remoteapi.util.WaitHandles;
 
 public abstract class RemoteApiBasedDockerProvider implements DockerProvider {
 
@@ -60,11 +73,14 @@ public abstract class RemoteApiBasedDockerProvider implements DockerProvider {
     private final ContainersService containersService;
     private final ImagesService imagesService;
     private final MiscService miscService;
+    private final ExecService execService;
+    private final EventsService eventsService;
 
     private final Set<BaseService> services;
 
     private Log log;
 
+    private static final int REPORTED_LARGEST_FILES = 10;
     private static final int DEFAULT_DOCKER_PORT = 2375;
     private static final String DEFAULT_DOCKER_HOST = "127.0.0.1";
     public static final String DOCKER_HOST_SYSTEM_ENV = "DOCKER_HOST";
@@ -95,9 +111,92 @@ public abstract class RemoteApiBasedDockerProvider implements DockerProvider {
     }
 
     @Override
-    public String buildImage(final ImageBuildConfiguration image) {
-        byte[] bytes = getTgzArchiveForFiles(image);
-        return miscService.buildImage(bytes, Optional.fromNullable(image.getNameAndTag()));
+    public ImageBuildResult buildImage(final ImageBuildConfiguration image, final ImageBuildOptions options) {
+        ImageBuildReport report = new ImageBuildReport(image.getId());
+        BuildContext context;
+        StreamingOutput archive;
+        int compressionLevel;
+        try {
+            long start = System.nanoTime();
+            context = options.getContext().isPresent() ? options.getContext().get() : BuildContext.forImage(image);
+            List<ContextScanner.Entry> entries = context.getEntries();
+            report.setWalkMillis(toMillis(System.nanoTime() - start));
+            report.setEntries(entries.size());
+            report.setLargestFiles(getLargestFiles(entries));
+
+            start = System.nanoTime();
+            archive = getArchive(image, context, options.getContextCache());
+            report.setArchiveMillis(toMillis(System.nanoTime() - start));
+            compressionLevel = options.getCompression().chooseLevel(ContextCompression.isLocalHost(host), context);
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to create output archive", e);
+        }
+        log.debug(String.format("Sending the build context of image '%s' with gzip level %s", image.getId(),
+                compressionLevel));
+        MeasuredOutput uncompressed = new MeasuredOutput(archive);
+        MeasuredOutput sent = new MeasuredOutput(ContextCompression.compress(uncompressed, compressionLevel));
+        long start = System.nanoTime();
+        String imageId = miscService.buildImage(sent, Optional.fromNullable(image.getNameAndTag()),
+                options.getLabels());
+        long requestNanos = System.nanoTime() - start;
+
+        report.setUncompressedBytes(uncompressed.getBytes());
+        report.setCompressedBytes(sent.getBytes());
+        report.setArchiveMillis(report.getArchiveMillis() + toMillis(sent.getWriteNanos() - sent.getWaitNanos()));
+        report.setUploadMillis(toMillis(sent.getWaitNanos()));
+        report.setBuildMillis(toMillis(requestNanos - sent.getWriteNanos()));
+        return new ImageBuildResult(imageId, Optional.of(report));
+    }
+
+    private StreamingOutput getArchive(final ImageBuildConfiguration image, final BuildContext context,
+                                       final Optional<ContextArchiveCache> cache) throws IOException {
+        if (!cache.isPresent()) {
+            return context;
+        }
+        ContextArchiveCache.CachedArchive archive = cache.get().update(image.getId(), context);
+        log.debug(String.format("Rewrote %s of %s entries of the cached build context %s",
+                archive.getRewrittenEntries(), archive.getEntries(), archive.getFile()));
+        return archive;
+    }
+
+    private static List<ImageBuildReport.ContextFile> getLargestFiles(final List<ContextScanner.Entry> entries) {
+        List<ContextScanner.Entry> bySize = new ArrayList<>(entries);
+        Collections.sort(bySize, new Comparator<ContextScanner.Entry>() {
+            @Override
+            public int compare(final ContextScanner.Entry first, final ContextScanner.Entry second) {
+                return Long.compare(second.getSize(), first.getSize());
+            }
+        });
+        List<ImageBuildReport.ContextFile> largestFiles = new ArrayList<>();
+        for (ContextScanner.Entry entry : bySize.subList(0, Math.min(REPORTED_LARGEST_FILES, bySize.size()))) {
+            largestFiles.add(new ImageBuildReport.ContextFile(entry.getName(), entry.getSize()));
+        }
+        return largestFiles;
+    }
+
+    private static long toMillis(final long nanos) {
+        return TimeUnit.NANOSECONDS.toMillis(Math.max(0, nanos));
+    }
+
+    @Override
+    public Optional<String> findImageByLabel(final String label, final String value) {
+        List<String> imageIds = getImagesService().findImagesByLabel(label, value);
+        return imageIds.isEmpty() ? Optional.<String>absent() : Optional.of(imageIds.get(0));
+    }
+
+    @Override
+    public boolean hasImage(final String imageId) {
+        return getImagesService().hasImage(imageId);
+    }
+
+    @Override
+    public ImageInventory listImages() {
+        return getImagesService().listImages();
+    }
+
+    @Override
+    public void pullImage(final String image) {
+        getImagesService().pullImage(image, new LoggingProgressListener("Pulling"));
     }
 
     @Override
@@ -107,7 +206,7 @@ public abstract class RemoteApiBasedDockerProvider implements DockerProvider {
 
     @Override
     public void pushImage(final String nameAndTag) {
-        getImagesService().pushImage(nameAndTag);
+        getImagesService().pushImage(nameAndTag, new LoggingProgressListener("Pushing"));
     }
 
     @Override
@@ -128,6 +227,31 @@ public abstract class RemoteApiBasedDockerProvider implements DockerProvider {
         return containersService.getLogs(containerId);
     }
 
+    @Override
+    public boolean waitForLogs(final String containerId, final Pattern pattern, final long timeoutMillis,
+                               final WaitHandles handles) {
+        return containersService.waitForLogs(containerId, pattern, timeoutMillis, handles);
+    }
+
+    @Override
+    public int execInContainer(final String containerId, final List<String> command, final WaitHandles handles) {
+        return execService.execute(containerId, command, handles);
+    }
+
+    @Override
+    public Optional<Integer> getExitCode(final String containerId) {
+        ContainerInspectionResult.State state = containersService.inspectContainer(containerId).getState();
+        if (state == null || state.isRunning()) {
+            return Optional.absent();
+        }
+        return Optional.of(state.getExitCode());
+    }
+
+    @Override
+    public Optional<Closeable> followEvents(final DockerEventListener listener) {
+        return Optional.of(eventsService.follow(listener));
+    }
+
     @Override
     public void setLogger(final Log logger) {
         this.log = logger;
@@ -140,8 +264,10 @@ public abstract class RemoteApiBasedDockerProvider implements DockerProvider {
         containersService = new ContainersService(dockerApiRoot);
         imagesService = new ImagesService(dockerApiRoot);
         miscService = new MiscService(dockerApiRoot);
+        execService = new ExecService(dockerApiRoot);
+        eventsService = new EventsService(dockerApiRoot);
         services = new HashSet<>();
-        register(containersService, imagesService, miscService);
+        register(containersService, imagesService, miscService, execService, eventsService);
     }
 
     protected ContainerInspectionResult startContainer(ContainerStartConfiguration configuration,
@@ -157,7 +283,7 @@ public abstract class RemoteApiBasedDockerProvider implements DockerProvider {
             containerId = containersService.createContainer(createRequest);
         } catch (ImageNotFoundException e) {
             log.info(String.format("Pulling image %s...", imageId));
-            imagesService.pullImage(imageId);
+            imagesService.pullImage(imageId, new LoggingProgressListener("Pulling"));
             containerId = containersService.createContainer(createRequest);
         }
 
@@ -186,50 +312,6 @@ public abstract class RemoteApiBasedDockerProvider implements DockerProvider {
         return port;
     }
 
-    private static byte[] getTgzArchiveForFiles(final ImageBuildConfiguration image) {
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        try (
-                ArchiveOutputStream tar = new ArchiveStreamFactory().createArchiveOutputStream("tar", baos)
-        ) {
-            addToTar(tar, image.getDockerFile(), "Dockerfile");
-
-            if (image.getArtifacts() != null) {
-                for (Artifact artifact : image.getArtifacts()) {
-                    File file = artifact.getFile();
-                    String pathinTar = artifact.getDest().or(file.getName());
-                    addToTar(tar, file, pathinTar);
-                }
-            }
-
-            tar.flush();
-            baos.flush();
-        } catch (ArchiveException | IOException e) {
-            throw new IllegalStateException("Unable to create output archive", e);
-        }
-        return baos.toByteArray();
-    }
-
-    private static void addToTar(ArchiveOutputStream tar, File file, String fileNameAndPath) throws IOException {
-        if (!file.exists() || !file.canRead()) {
-            throw new FileNotFoundException(String.format("Cannot read file %s. Are you sure it exists?",
-                    file.getAbsolutePath()));
-        }
-        if (file.isDirectory()) {
-            for (File fileInDirectory : file.listFiles()) {
-                if (!fileNameAndPath.endsWith("/")) {
-                    fileNameAndPath = fileNameAndPath + "/";
-                }
-                addToTar(tar, fileInDirectory, fileNameAndPath + fileInDirectory.getName());
-            }
-        } else {
-            ArchiveEntry entry = tar.createArchiveEntry(file, fileNameAndPath);
-            tar.putArchiveEntry(entry);
-            byte[] contents = Files.readAllBytes(Paths.get(file.getAbsolutePath()));
-            tar.write(contents);
-            tar.closeArchiveEntry();
-        }
-    }
-
     private static Integer getDockerPortFromEnvironment() {
         return DockerPortFromPropertySupplier.INSTANCE.get()
                 .or(DockerPortFromEnvironmentSupplier.INSTANCE.get())
@@ -241,4 +323,22 @@ public abstract class RemoteApiBasedDockerProvider implements DockerProvider {
                 .or(DockerHostFromEnvironmentSupplier.INSTANCE.get())
                 .or(DEFAULT_DOCKER_HOST);
     }
+
+    /**
+     * Reports the progress of a pull or push to the Maven log.
+     */
+    private final class LoggingProgressListener implements ProgressListener {
+        private final String action;
+
+        private LoggingProgressListener(final String action) {
+            this.action = action;
+        }
+
+        @Override
+        public void onProgress(final String image, final long transferredBytes, final long totalBytes,
+                               final long bytesPerSecond) {
+            log.info(String.format("%s image %s: %s of %s (%s/s)", action, image, ByteSizes.format(transferredBytes),
+                    ByteSizes.format(totalBytes), ByteSizes.format(bytesPerSecond)));
+        }
+    }
 }
@@ -3,20 +3,36 @@ package net.wouterdanes.docker.provider;
 import com.google.common.base.Optional;
 import com.spotify.docker.client.*;
 import com.spotify.docker.client.messages.*;
+import net.wouterdanes.docker.provider.context.ContextCompression;
+import net.wouterdanes.docker.provider.context.ContextFilter;
+import net.wouterdanes.docker.provider.context.DirectoryArchive;
 import net.wouterdanes.docker.provider.model.ContainerStartConfiguration;
 import net.wouterdanes.docker.provider.model.ExposedPort;
 import net.wouterdanes.docker.provider.model.ImageBuildConfiguration;
+import net.wouterdanes.docker.provider.model.ImageBuildOptions;
+import net.wouterdanes.docker.provider.model.ImageBuildResult;
+import net.wouterdanes.docker.remoteapi.DockerEventListener;
 import net.wouterdanes.docker.remoteapi.model.ContainerInspectionResult;
 import net.wouterdanes.docker.remoteapi.model.Credentials;
+import net.wouterdanes.docker.remoteapi.model.ImageInventory;
 import net.wouterdanes.docker.remoteapi.util.DockerHostFromEnvironmentSupplier;
 import net.wouterdanes.docker.remoteapi.util.DockerHostFromPropertySupplier;
 import net.wouterdanes.docker.remoteapi.util.DockerPortFromEnvironmentSupplier;
 import net.wouterdanes.docker.remoteapi.util.DockerPortFromPropertySupplier;
+import net.wouterdanes.docker.remoteapi.util.LogStreamMatcher;
+import net.wouterdanes.docker.remoteapi.util.WaitHandles;
 import org.apache.maven.plugin.logging.Log;
 import org.codehaus.plexus.util.StringUtils;
 
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
+import java.util.regex.Pattern;
 
 public class SpotifyDockerProvider implements DockerProvider {
 
@@ -26,6 +42,9 @@ public class SpotifyDockerProvider implements DockerProvider {
 
     private Credentials credentials;
 
+
+    private boolean localDaemon;
+
     private static final int DEFAULT_DOCKER_PORT = 2375;
 
     @Override
@@ -42,6 +61,7 @@ public class SpotifyDockerProvider implements DockerProvider {
                 builder = builder.uri("http://" + getDockerHostFromEnvironment().get() + ":" + getDockerPortFromEnvironment());
             }
 
+            localDaemon = ContextCompression.isLocalDaemon(builder.uri());
             docker = builder.build();
         } catch (DockerCertificateException e) {
             log.error(e);
@@ -130,7 +150,7 @@ public class SpotifyDockerProvider implements DockerProvider {
     }
 
     @Override
-    public String buildImage(ImageBuildConfiguration image) {
+    public ImageBuildResult buildImage(ImageBuildConfiguration image, ImageBuildOptions options) {
         try {
             String imageName = image.getNameAndTag();
             // NOTE: Docker fails with slashes; might also be related to Docker 1.4; other provider throw same exception
@@ -139,7 +159,13 @@ public class SpotifyDockerProvider implements DockerProvider {
             if(pos!=-1) {
                 imageName = imageName.replaceAll("/", "_");
             }
-            return docker.build(Paths.get(image.getDockerFile().getParent()), imageName, new ProgressHandler() {
+            Path directory = Paths.get(image.getDockerFile().getParent());
+            ContextFilter contextFilter = ContextFilter.forImage(image);
+            DirectoryStream.Filter<Path> filter = contextFilter.forDirectory(directory);
+            // the labels and the context cache are ignored: the docker client can't label the images it builds, and
+            // the directory of the Dockerfile is archived anew for every build
+            int compressionLevel = options.getCompression().chooseLevel(localDaemon, directory, filter);
+            ProgressHandler handler = new ProgressHandler() {
                 @Override
                 public void progress(ProgressMessage message) throws DockerException {
                     if(!StringUtils.isEmpty(message.error())) {
@@ -149,12 +175,62 @@ public class SpotifyDockerProvider implements DockerProvider {
                         log.info(message.stream());
                     }
                 }
-            });
+            };
+            // the context filter matches the names relative to the directory, so it can skip entries without a stat
+            File archive = DirectoryArchive.create(directory, contextFilter, compressionLevel, image.isReproducible());
+            try (InputStream in = new FileInputStream(archive)) {
+                // the docker client doesn't expose the size of the archives it sends
+                return new ImageBuildResult(docker.build(in, imageName, handler));
+            } finally {
+                if (!archive.delete()) {
+                    log.warn("Cannot delete the build context " + archive);
+                }
+            }
         } catch (Exception e) {
             log.error(e);
         }
 
-        return null;
+        return new ImageBuildResult(null);
+    }
+
+    @Override
+    public boolean hasImage(String imageId) {
+        try {
+            docker.inspectImage(imageId);
+            return true;
+        } catch (ImageNotFoundException e) {
+            return false;
+        } catch (Exception e) {
+            log.error(e);
+        }
+        return false;
+    }
+
+    @Override
+    public ImageInventory listImages() {
+        try {
+            List<String> repoTags = new ArrayList<>();
+            List<String> ids = new ArrayList<>();
+            for (Image image : docker.listImages()) {
+                ids.add(image.id());
+                if (image.repoTags() != null) {
+                    repoTags.addAll(image.repoTags());
+                }
+            }
+            return new ImageInventory(repoTags, ids);
+        } catch (Exception e) {
+            throw new net.wouterdanes.docker.remoteapi.exception.DockerException("Cannot list the images", e);
+        }
+    }
+
+    @Override
+    public void pullImage(String image) {
+        try {
+            docker.pull(image);
+        } catch (Exception e) {
+            throw new net.wouterdanes.docker.remoteapi.exception.DockerException(
+                    String.format("Cannot pull image '%s'", image), e);
+        }
     }
 
     @Override
@@ -196,11 +272,86 @@ public class SpotifyDockerProvider implements DockerProvider {
         return null;
     }
 
+    @Override
+    public boolean waitForLogs(String containerId, Pattern pattern, long timeoutMillis, WaitHandles handles) {
+        final LogStream stream;
+        try {
+            stream = docker.logs(containerId, DockerClient.LogsParameter.FOLLOW, DockerClient.LogsParameter.STDOUT,
+                    DockerClient.LogsParameter.STDERR);
+        } catch (Exception e) {
+            log.error(e);
+            return false;
+        }
+        Closeable handle = new Closeable() {
+            @Override
+            public void close() {
+                stream.close();
+            }
+        };
+        if (!handles.register(handle)) {
+            return false;
+        }
+        Timer timer = new Timer("docker-logs-" + containerId, true);
+        timer.schedule(new TimerTask() {
+            @Override
+            public void run() {
+                stream.close();
+            }
+        }, Math.max(0, timeoutMillis));
+        LogStreamMatcher matcher = new LogStreamMatcher(pattern);
+        try {
+            while (stream.hasNext()) {
+                if (matcher.matches(stream.next().content())) {
+                    return true;
+                }
+            }
+        } catch (RuntimeException e) {
+            // closing the stream when the timeout passes ends up here as well
+            log.debug(e);
+        } finally {
+            timer.cancel();
+            handles.unregister(handle);
+            stream.close();
+        }
+        return false;
+    }
+
+    @Override
+    public int execInContainer(String containerId, List<String> command, WaitHandles handles) {
+        throw new net.wouterdanes.docker.remoteapi.exception.DockerException(
+                "The spotify provider can't execute commands in containers");
+    }
+
+    @Override
+    public Optional<Integer> getExitCode(String containerId) {
+        try {
+            ContainerState state = docker.inspectContainer(containerId).state();
+            if (state != null && !Boolean.TRUE.equals(state.running())) {
+                return Optional.fromNullable(state.exitCode());
+            }
+        } catch (Exception e) {
+            log.error(e);
+        }
+        return Optional.absent();
+    }
+
+    @Override
+    public Optional<Closeable> followEvents(DockerEventListener listener) {
+        // NOOP, the spotify client can't follow events, container states are inspected instead
+        return Optional.absent();
+    }
+
     @Override
     public void setLogger(Log logger) {
         this.log = logger;
     }
 
+    @Override
+    public Optional<String> findImageByLabel(String label, String value) {
+        // without labels there is nothing to find
+        return Optional.absent();
+    }
+
     private static Integer getDockerPortFromEnvironment() {
         return DockerPortFromPropertySupplier.INSTANCE.get()
                 .or(DockerPortFromEnvironmentSupplier.INSTANCE.get())
@@ -0,0 +1,296 @@
+/*
+    Copyright 2014 Wouter Danes
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+*/
+
+package net.wouterdanes.docker.provider.context;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.ws.rs.core.StreamingOutput;
+
+import com.google.common.hash.Funnels;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+import net.wouterdanes.docker.provider.model.Artifact;
+import net.wouterdanes.docker.provider.model.ImageBuildConfiguration;
+
+/**
+ * This class is responsible for producing the tar archive that is sent to the docker daemon as the context of an image
+ * build. The archive is never held in memory: entries are written on the fly to the stream that is handed to
+ * {@link #write(OutputStream)}, so the heap usage is the same for a context of a few kilobytes or of a gigabyte. The
+ * entries are written by a {@link TarWriter}.
+ * <br>
+ * A reproducible context is sorted by path and written by a reproducible {@link TarWriter}, so it doesn't depend on
+ * the checkout it is created from. The docker daemon then finds the layers of <code>ADD</code> and <code>COPY</code>
+ * instructions in its cache as long as the contents of the files stay the same.
+ * <br>
+ * In a deduplicating context, a file with the same contents as a file before it is written as a hard link to that
+ * file. Only files of the same size are compared, by their SHA-256 hash.
+ */
+public class BuildContext implements StreamingOutput {
+
+    private static final String DOCKERFILE_NAME = "Dockerfile";
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private static final Comparator<ContextScanner.Entry> BY_NAME = new Comparator<ContextScanner.Entry>() {
+        @Override
+        public int compare(final ContextScanner.Entry first, final ContextScanner.Entry second) {
+            return first.getName().compareTo(second.getName());
+        }
+    };
+
+    private final List<Source> sources;
+    private final ContextFilter filter;
+    private final boolean reproducible;
+    private final boolean deduplicate;
+    private List<ContextScanner.Entry> entries;
+    private Map<ContextScanner.Entry, String> linkTargets;
+
+    private BuildContext(final List<Source> sources, final ContextFilter filter, final boolean reproducible,
+                         final boolean deduplicate) {
+        this.sources = sources;
+        this.filter = filter;
+        this.reproducible = reproducible;
+        this.deduplicate = deduplicate;
+    }
+
+    /**
+     * Creates the build context for an image, consisting of the Dockerfile and all configured artifacts, minus the
+     * files left out by the {@link ContextFilter} of the image. All files are checked for existence up front, so a
+     * missing artifact fails the build before anything is sent to the daemon.
+     *
+     * @param image the image configuration
+     * @return the build context
+     * @throws FileNotFoundException when the Dockerfile or one of the artifacts can't be read
+     * @throws IOException when the .dockerignore file of the image can't be read
+     */
+    public static BuildContext forImage(final ImageBuildConfiguration image) throws IOException {
+        List<Source> sources = new ArrayList<>();
+        sources.add(new Source(image.getDockerFile(), DOCKERFILE_NAME));
+        if (image.getArtifacts() != null) {
+            for (Artifact artifact : image.getArtifacts()) {
+                File file = artifact.getFile();
+                sources.add(new Source(file, artifact.getDest().or(file.getName())));
+            }
+        }
+        for (Source source : sources) {
+            checkReadable(source.file);
+        }
+        return new BuildContext(Collections.unmodifiableList(sources), ContextFilter.forImage(image),
+                image.isReproducible(), image.isDeduplicate());
+    }
+
+    @Override
+    public void write(final OutputStream output) throws IOException {
+        TarWriter tar = createTarWriter(Channels.newChannel(output));
+        for (ContextScanner.Entry entry : getEntries()) {
+            writeEntry(tar, entry);
+        }
+        // finish() writes the tar trailer without closing the underlying (request) stream
+        tar.finish();
+        output.flush();
+    }
+
+    /**
+     * Calculates a SHA-256 digest over the path, mode and contents of every file in this context. Two contexts with the same
+     * digest result in the same image, as long as the image the Dockerfile is based on stays the same.
+     *
+     * @return the digest as a hexadecimal string
+     * @throws IOException when a file can't be read
+     */
+    public String getDigest() throws IOException {
+        Hasher hasher = Hashing.sha256().newHasher();
+        for (ContextScanner.Entry entry : getEntries()) {
+            hasher.putString(entry.getName(), UTF8)
+                    .putByte((byte) 0)
+                    .putInt(TarWriter.normalizeMode(getMode(entry)))
+                    .putLong(entry.getSize());
+            Files.copy(entry.getPath(), Funnels.asOutputStream(hasher));
+        }
+        return hasher.hash().toString();
+    }
+
+    /**
+     * Reads the contents of the first files of this context, for example to find out how well the context compresses.
+     *
+     * @param maxBytes the maximum size of the sample
+     * @return the concatenated contents of the first files, at most <code>maxBytes</code> long
+     * @throws IOException when a file can't be read
+     */
+    public byte[] readSample(final int maxBytes) throws IOException {
+        byte[] sample = new byte[maxBytes];
+        int length = 0;
+        for (ContextScanner.Entry entry : getEntries()) {
+            if (length == sample.length) {
+                break;
+            }
+            try (InputStream input = Files.newInputStream(entry.getPath())) {
+                length += ContextCompression.read(input, sample, length);
+            }
+        }
+        return Arrays.copyOf(sample, length);
+    }
+
+    /**
+     * Lists the files of this context, in the order in which they are written to the archive: the Dockerfile and the
+     * artifacts in the order of the configuration, or sorted by path for a reproducible context. The directories of
+     * the artifacts are scanned in parallel, once per context.
+     *
+     * @return the files in this context
+     * @throws IOException when a directory can't be scanned
+     */
+    public synchronized List<ContextScanner.Entry> getEntries() throws IOException {
+        if (entries == null) {
+            List<ContextScanner.Entry> scanned = new ArrayList<>();
+            // the Dockerfile is always part of the context
+            Source dockerFile = sources.get(0);
+            scanned.add(ContextScanner.scanFile(dockerFile.file.toPath(), dockerFile.pathInTar));
+            for (Source source : sources.subList(1, sources.size())) {
+                scanned.addAll(scan(source));
+            }
+            if (reproducible) {
+                // a stable sort, so the first of two artifacts with the same path stays first
+                Collections.sort(scanned, BY_NAME);
+            }
+            entries = Collections.unmodifiableList(scanned);
+        }
+        return entries;
+    }
+
+    /**
+     * Finds the files of a deduplicating context that have the same contents as a file that is written before them.
+     * The Dockerfile is never replaced by a link.
+     *
+     * @return the name of the first file with the same contents, for every file that is written as a hard link
+     * @throws IOException when a file can't be read
+     */
+    synchronized Map<ContextScanner.Entry, String> getLinkTargets() throws IOException {
+        if (linkTargets == null) {
+            Map<ContextScanner.Entry, String> targets = new IdentityHashMap<>();
+            if (deduplicate) {
+                Map<Long, List<ContextScanner.Entry>> bySize = new HashMap<>();
+                for (ContextScanner.Entry entry : getEntries()) {
+                    if (entry.getSize() == 0) {
+                        continue;
+                    }
+                    List<ContextScanner.Entry> sameSize = bySize.get(entry.getSize());
+                    if (sameSize == null) {
+                        sameSize = new ArrayList<>();
+                        bySize.put(entry.getSize(), sameSize);
+                    }
+                    sameSize.add(entry);
+                }
+                for (List<ContextScanner.Entry> sameSize : bySize.values()) {
+                    if (sameSize.size() > 1) {
+                        findDuplicates(sameSize, targets);
+                    }
+                }
+            }
+            linkTargets = targets;
+        }
+        return linkTargets;
+    }
+
+    private static void findDuplicates(final List<ContextScanner.Entry> sameSize,
+                                       final Map<ContextScanner.Entry, String> targets) throws IOException {
+        Map<HashCode, String> firstByHash = new HashMap<>();
+        for (ContextScanner.Entry entry : sameSize) {
+            HashCode hash = com.google.common.io.Files.asByteSource(entry.getPath().toFile()).hash(Hashing.sha256());
+            String first = firstByHash.get(hash);
+            if (first == null) {
+                firstByHash.put(hash, entry.getName());
+            } else if (!DOCKERFILE_NAME.equals(entry.getName())) {
+                targets.put(entry, first);
+            }
+        }
+    }
+
+    private List<ContextScanner.Entry> scan(final Source source) throws IOException {
+        checkReadable(source.file);
+        if (!source.file.isDirectory()) {
+            return filter.acceptFile(source.pathInTar)
+                    ? Collections.singletonList(ContextScanner.scanFile(source.file.toPath(), source.pathInTar))
+                    : Collections.<ContextScanner.Entry>emptyList();
+        }
+        if (!filter.acceptDirectory(source.pathInTar)) {
+            return Collections.emptyList();
+        }
+        String directoryPath = source.pathInTar.endsWith("/") ? source.pathInTar : source.pathInTar + "/";
+        return ContextScanner.scan(source.file.toPath(), directoryPath, filter);
+    }
+
+    /**
+     * @return whether the entries of this context are written with normalized modes and timestamps
+     */
+    public boolean isReproducible() {
+        return reproducible;
+    }
+
+    TarWriter createTarWriter(final WritableByteChannel channel) {
+        TarWriter tar = new TarWriter(channel);
+        tar.setReproducible(reproducible);
+        return tar;
+    }
+
+    void writeEntry(final TarWriter tar, final ContextScanner.Entry entry) throws IOException {
+        String linkTarget = getLinkTargets().get(entry);
+        if (linkTarget != null) {
+            tar.writeHardLink(entry.getName(), linkTarget, getMode(entry), entry.getModificationTime());
+        } else {
+            tar.writeFile(entry.getPath(), entry.getName(), getMode(entry), entry.getModificationTime());
+        }
+    }
+
+    private int getMode(final ContextScanner.Entry entry) {
+        // the permissions of the files only end up in a reproducible context, where they are normalized
+        return reproducible ? entry.getMode() : TarWriter.DEFAULT_FILE_MODE;
+    }
+
+    private static void checkReadable(final File file) throws FileNotFoundException {
+        if (file == null || !file.exists() || !file.canRead()) {
+            throw new FileNotFoundException(String.format("Cannot read file %s. Are you sure it exists?",
+                    file == null ? null : file.getAbsolutePath()));
+        }
+    }
+
+    private static final class Source {
+        private final File file;
+        private final String pathInTar;
+
+        private Source(final File file, final String pathInTar) {
+            this.file = file;
+            this.pathInTar = pathInTar;
+        }
+    }
+}
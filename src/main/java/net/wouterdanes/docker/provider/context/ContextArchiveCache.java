@@ -0,0 +1,274 @@
+/*
+    Copyright 2014 Wouter Danes
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+*/
+
+package net.wouterdanes.docker.provider.context;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.ws.rs.core.StreamingOutput;
+
+/**
+ * This class is responsible for keeping the tar archive of the last build context of every image on disk, together
+ * with an index of its entries. When an image is built again, only the entries of files that changed are rewritten:
+ * <ul>
+ * <li>an entry for a file that still has the same size is overwritten in place;</li>
+ * <li>from the first entry that was added, removed or changed size, the rest of the archive is written again.</li>
+ * </ul>
+ * Unchanged files are recognized by their path, size, modification time and mode, like make does. An entry that becomes
+ * a hard link, or stops being one, counts as a resized entry. The cached archive
+ * is then sent to the docker daemon as is.
+ * <br>
+ * The index is removed before an archive is modified and written again afterwards, so an interrupted update results in
+ * a full rewrite the next time.
+ */
+public class ContextArchiveCache {
+
+    private static final int INDEX_VERSION = 2;
+    private static final String ARCHIVE_EXTENSION = ".tar";
+    private static final String INDEX_EXTENSION = ".index";
+
+    private final File directory;
+
+    /**
+     * @param directory the directory to keep the archives in, for example <code>target/docker-context</code>
+     */
+    public ContextArchiveCache(final File directory) {
+        this.directory = directory;
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Brings the cached archive of an image up to date with its build context.
+     *
+     * @param imageId the id of the image in the plugin configuration
+     * @param context the build context of the image
+     * @return the up to date archive
+     * @throws IOException when the context or the cached archive can't be read or written
+     */
+    public CachedArchive update(final String imageId, final BuildContext context) throws IOException {
+        Files.createDirectories(directory.toPath());
+        String baseName = imageId.replaceAll("[^A-Za-z0-9._-]", "_");
+        Path archive = directory.toPath().resolve(baseName + ARCHIVE_EXTENSION);
+        Path index = directory.toPath().resolve(baseName + INDEX_EXTENSION);
+
+        List<ContextScanner.Entry> entries = context.getEntries();
+        List<IndexRecord> previous = readIndex(index, archive, context.isReproducible());
+        Files.deleteIfExists(index);
+
+        List<IndexRecord> records = new ArrayList<>(entries.size());
+        int rewritten = 0;
+        try (FileChannel channel = FileChannel.open(archive, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            TarWriter tar = context.createTarWriter(channel);
+            long position = 0;
+            int i = 0;
+            boolean inPlace = true;
+            for (; i < entries.size() && i < previous.size(); i++) {
+                ContextScanner.Entry entry = entries.get(i);
+                IndexRecord record = previous.get(i);
+                if (!record.name.equals(entry.getName())) {
+                    break;
+                }
+                String link = getLink(context, entry);
+                if (!record.isUnchanged(entry, link)) {
+                    if (record.size != entry.getSize() || !record.link.equals(link)) {
+                        break;
+                    }
+                    // the same name and size result in an entry of the same length
+                    channel.position(position);
+                    context.writeEntry(tar, entry);
+                    rewritten++;
+                    if (channel.position() != record.end) {
+                        // the file changed while it was being written, nothing after it can be kept
+                        records.add(new IndexRecord(entry, link, channel.position()));
+                        position = channel.position();
+                        i++;
+                        inPlace = false;
+                        break;
+                    }
+                }
+                records.add(new IndexRecord(entry, link, record.end));
+                position = record.end;
+            }
+            if (!inPlace || i < entries.size() || i < previous.size() || previous.isEmpty()) {
+                channel.truncate(position);
+                channel.position(position);
+                for (; i < entries.size(); i++) {
+                    ContextScanner.Entry entry = entries.get(i);
+                    context.writeEntry(tar, entry);
+                    rewritten++;
+                    records.add(new IndexRecord(entry, getLink(context, entry), channel.position()));
+                }
+                tar.finish();
+            }
+            channel.force(false);
+        }
+        writeIndex(index, records, Files.size(archive), context.isReproducible());
+        return new CachedArchive(archive, entries.size(), rewritten);
+    }
+
+    private static String getLink(final BuildContext context, final ContextScanner.Entry entry) throws IOException {
+        String target = context.getLinkTargets().get(entry);
+        return target == null ? "" : target;
+    }
+
+    private static List<IndexRecord> readIndex(final Path index, final Path archive, final boolean reproducible) {
+        if (!Files.exists(index) || !Files.exists(archive)) {
+            return Collections.emptyList();
+        }
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(index)))) {
+            if (input.readInt() != INDEX_VERSION || input.readBoolean() != reproducible
+                    || input.readLong() != Files.size(archive)) {
+                return Collections.emptyList();
+            }
+            int count = input.readInt();
+            List<IndexRecord> records = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                records.add(new IndexRecord(input.readUTF(), input.readUTF(), input.readUTF(), input.readLong(),
+                        input.readLong(), input.readInt(), input.readLong()));
+            }
+            return records;
+        } catch (IOException e) {
+            // a damaged index results in a full rewrite
+            return Collections.emptyList();
+        }
+    }
+
+    private static void writeIndex(final Path index, final List<IndexRecord> records, final long archiveSize,
+                                   final boolean reproducible) throws IOException {
+        Path temporary = index.resolveSibling(index.getFileName() + ".tmp");
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(temporary)))) {
+            output.writeInt(INDEX_VERSION);
+            output.writeBoolean(reproducible);
+            output.writeLong(archiveSize);
+            output.writeInt(records.size());
+            for (IndexRecord record : records) {
+                output.writeUTF(record.name);
+                output.writeUTF(record.path);
+                output.writeUTF(record.link);
+                output.writeLong(record.size);
+                output.writeLong(record.modificationTime);
+                output.writeInt(record.mode);
+                output.writeLong(record.end);
+            }
+        }
+        Files.move(temporary, index, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * A cached archive that is up to date with the build context of an image.
+     */
+    public static final class CachedArchive implements StreamingOutput {
+        private final Path file;
+        private final int entries;
+        private final int rewrittenEntries;
+
+        private CachedArchive(final Path file, final int entries, final int rewrittenEntries) {
+            this.file = file;
+            this.entries = entries;
+            this.rewrittenEntries = rewrittenEntries;
+        }
+
+        public Path getFile() {
+            return file;
+        }
+
+        public int getEntries() {
+            return entries;
+        }
+
+        /**
+         * @return the number of entries that were written during the last update
+         */
+        public int getRewrittenEntries() {
+            return rewrittenEntries;
+        }
+
+        @Override
+        public void write(final OutputStream output) throws IOException {
+            WritableByteChannel target = Channels.newChannel(output);
+            try (FileChannel source = FileChannel.open(file, StandardOpenOption.READ)) {
+                long size = source.size();
+                long position = 0;
+                while (position < size) {
+                    long transferred = source.transferTo(position, size - position, target);
+                    if (transferred <= 0) {
+                        throw new IOException(String.format("The cached archive %s was truncated", file));
+                    }
+                    position += transferred;
+                }
+            }
+            output.flush();
+        }
+    }
+
+    private static final class IndexRecord {
+        private final String name;
+        private final String path;
+        // the target of a hard link, or an empty string for a file
+        private final String link;
+        private final long size;
+        private final long modificationTime;
+        private final int mode;
+        // the offset in the archive right after the entry
+        private final long end;
+
+        private IndexRecord(final ContextScanner.Entry entry, final String link, final long end) {
+            this(entry.getName(), entry.getPath().toString(), link, entry.getSize(), entry.getModificationTime(),
+                    entry.getMode(), end);
+        }
+
+        private IndexRecord(final String name, final String path, final String link, final long size,
+                            final long modificationTime, final int mode, final long end) {
+            this.name = name;
+            this.path = path;
+            this.link = link;
+            this.size = size;
+            this.modificationTime = modificationTime;
+            this.mode = mode;
+            this.end = end;
+        }
+
+        private boolean isUnchanged(final ContextScanner.Entry entry, final String entryLink) {
+            return path.equals(entry.getPath().toString())
+                    && link.equals(entryLink)
+                    && size == entry.getSize()
+                    && modificationTime == entry.getModificationTime()
+                    && mode == entry.getMode();
+        }
+    }
+}
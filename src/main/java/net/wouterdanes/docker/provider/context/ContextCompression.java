@@ -0,0 +1,264 @@
+/*
+    Copyright 2014 Wouter Danes
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+*/
+
+package net.wouterdanes.docker.provider.context;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.URI;
+import java.net.UnknownHostException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+
+import javax.ws.rs.core.StreamingOutput;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * This class is responsible for deciding whether a build context is gzip compressed before it is sent to the docker
+ * daemon. Compression costs CPU time and only pays off when the connection to the daemon is slower than gzip itself.
+ * <br>
+ * In {@link Mode#AUTO} a context sent to a daemon on the same machine (a unix socket or a loopback address) is never
+ * compressed. For other daemons a sample of the context is compressed first: the context is only compressed when the
+ * sample actually shrinks and gzip keeps up with the assumed throughput of the network, so the upload is never slowed
+ * down by the compression itself.
+ */
+public class ContextCompression {
+
+    public enum Mode {
+        NONE, GZIP, AUTO
+    }
+
+    /**
+     * The level returned by the <code>chooseLevel</code> methods when the context is sent as a plain tar archive.
+     */
+    public static final int NO_COMPRESSION = Deflater.NO_COMPRESSION;
+    public static final int DEFAULT_LEVEL = 6;
+
+    static final int SAMPLE_SIZE = 1024 * 1024;
+    static final int MIN_SAMPLE_SIZE = 16 * 1024;
+    // 100 Mbit/s, the throughput assumed for a connection to a daemon on another machine
+    static final long REMOTE_BYTES_PER_SECOND = 100L * 1000 * 1000 / 8;
+    static final double MAX_COMPRESSED_RATIO = 0.9;
+
+    private static final ContextCompression DEFAULT = new ContextCompression(Mode.AUTO, DEFAULT_LEVEL);
+    private static final String UNIX_SCHEME = "unix";
+
+    private final Mode mode;
+    private final int level;
+
+    public ContextCompression(final Mode mode, final int level) {
+        Preconditions.checkArgument(level >= Deflater.BEST_SPEED && level <= Deflater.BEST_COMPRESSION,
+                "The compression level must be between 1 and 9, but was %s", level);
+        this.mode = Preconditions.checkNotNull(mode);
+        this.level = level;
+    }
+
+    /**
+     * @return the compression that is used when nothing is configured: {@link Mode#AUTO} with the default gzip level
+     */
+    public static ContextCompression defaults() {
+        return DEFAULT;
+    }
+
+    /**
+     * Parses the mode case insensitively.
+     *
+     * @param mode  one of "none", "gzip" or "auto"
+     * @param level the gzip level, between 1 (fastest) and 9 (smallest)
+     * @return the compression
+     * @throws IllegalArgumentException when the mode or the level is invalid
+     */
+    public static ContextCompression parse(final String mode, final int level) {
+        String name = mode == null ? "" : mode.trim();
+        for (Mode candidate : Mode.values()) {
+            if (candidate.name().equalsIgnoreCase(name)) {
+                return new ContextCompression(candidate, level);
+            }
+        }
+        throw new IllegalArgumentException(String.format("Unknown compression mode '%s', must be one of %s",
+                mode, Arrays.toString(Mode.values())));
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public int getLevel() {
+        return level;
+    }
+
+    /**
+     * Chooses the gzip level for a build context sent by the remote API providers.
+     *
+     * @param localDaemon whether the docker daemon runs on this machine
+     * @param context     the build context, only read in {@link Mode#AUTO} for a daemon on another machine
+     * @return the gzip level, or {@link #NO_COMPRESSION}
+     * @throws IOException when the sample of the context can't be read
+     */
+    public int chooseLevel(final boolean localDaemon, final BuildContext context) throws IOException {
+        if (!needsProbe(localDaemon)) {
+            return levelWithoutProbe();
+        }
+        return compressionPaysOff(context.readSample(SAMPLE_SIZE)) ? level : NO_COMPRESSION;
+    }
+
+    /**
+     * Chooses the gzip level for a build context that consists of a whole directory.
+     *
+     * @param localDaemon whether the docker daemon runs on this machine
+     * @param directory   the directory that is sent as the build context
+     * @param filter      accepts the files and directories that are part of the context
+     * @return the gzip level, or {@link #NO_COMPRESSION}
+     * @throws IOException when the sample of the context can't be read
+     */
+    public int chooseLevel(final boolean localDaemon, final Path directory, final DirectoryStream.Filter<Path> filter)
+            throws IOException {
+        if (!needsProbe(localDaemon)) {
+            return levelWithoutProbe();
+        }
+        return compressionPaysOff(readSample(directory, filter, SAMPLE_SIZE)) ? level : NO_COMPRESSION;
+    }
+
+    /**
+     * Tells whether the daemon behind the passed URI runs on this machine.
+     *
+     * @param uri the URI of the docker daemon, for example <code>unix:///var/run/docker.sock</code>
+     * @return true for a unix socket or a loopback address
+     */
+    public static boolean isLocalDaemon(final URI uri) {
+        return UNIX_SCHEME.equals(uri.getScheme()) || (uri.getHost() != null && isLocalHost(uri.getHost()));
+    }
+
+    /**
+     * @param host the host name or address of the docker daemon
+     * @return true if the host is a loopback address
+     */
+    public static boolean isLocalHost(final String host) {
+        try {
+            return InetAddress.getByName(host).isLoopbackAddress();
+        } catch (UnknownHostException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Wraps a build context in gzip compression, which runs on all cores.
+     *
+     * @param context the build context
+     * @param level   the gzip level, {@link #NO_COMPRESSION} returns the context itself
+     * @return the compressed build context
+     */
+    public static StreamingOutput compress(final StreamingOutput context, final int level) {
+        if (level == NO_COMPRESSION) {
+            return context;
+        }
+        return new StreamingOutput() {
+            @Override
+            public void write(final OutputStream output) throws IOException {
+                ParallelGzipOutputStream gzip = new ParallelGzipOutputStream(output, level);
+                context.write(gzip);
+                // finish() writes the gzip trailer without closing the underlying (request) stream
+                gzip.finish();
+                gzip.flush();
+            }
+        };
+    }
+
+    /**
+     * Measures how well and how fast a sample of the context compresses at the configured level.
+     */
+    boolean compressionPaysOff(final byte[] sample) {
+        if (sample.length < MIN_SAMPLE_SIZE) {
+            // the context is so small that it doesn't matter
+            return false;
+        }
+        Deflater deflater = new Deflater(level, true);
+        try {
+            byte[] buffer = new byte[64 * 1024];
+            long compressedSize = 0;
+            long start = System.nanoTime();
+            deflater.setInput(sample);
+            deflater.finish();
+            while (!deflater.finished()) {
+                compressedSize += deflater.deflate(buffer);
+            }
+            long elapsedNanos = Math.max(1, System.nanoTime() - start);
+            double ratio = (double) compressedSize / sample.length;
+            double bytesPerSecond = sample.length * 1e9 / elapsedNanos;
+            return ratio <= MAX_COMPRESSED_RATIO && bytesPerSecond >= REMOTE_BYTES_PER_SECOND;
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private boolean needsProbe(final boolean localDaemon) {
+        return mode == Mode.AUTO && !localDaemon;
+    }
+
+    private int levelWithoutProbe() {
+        return mode == Mode.GZIP ? level : NO_COMPRESSION;
+    }
+
+    private static byte[] readSample(final Path directory, final DirectoryStream.Filter<Path> filter,
+                                     final int maxBytes) throws IOException {
+        final byte[] sample = new byte[maxBytes];
+        final int[] length = {0};
+        Files.walkFileTree(directory, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(final Path dir, final BasicFileAttributes attrs)
+                    throws IOException {
+                return dir.equals(directory) || filter.accept(dir)
+                        ? FileVisitResult.CONTINUE
+                        : FileVisitResult.SKIP_SUBTREE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs) throws IOException {
+                if (filter.accept(file)) {
+                    try (InputStream input = Files.newInputStream(file)) {
+                        length[0] += read(input, sample, length[0]);
+                    }
+                }
+                return length[0] < sample.length ? FileVisitResult.CONTINUE : FileVisitResult.TERMINATE;
+            }
+        });
+        return Arrays.copyOf(sample, length[0]);
+    }
+
+    /**
+     * Reads from the stream until the buffer is full or the stream ends.
+     *
+     * @return the number of bytes read
+     */
+    static int read(final InputStream input, final byte[] buffer, final int offset) throws IOException {
+        int position = offset;
+        int read;
+        while (position < buffer.length && (read = input.read(buffer, position, buffer.length - position)) != -1) {
+            position += read;
+        }
+        return position - offset;
+    }
+}
@@ -0,0 +1,328 @@
+/*
+    Copyright 2014 Wouter Danes
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+*/
+
+package net.wouterdanes.docker.provider.context;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import net.wouterdanes.docker.provider.model.ImageBuildConfiguration;
+
+/**
+ * This class is responsible for deciding which files end up in a build context. It combines the patterns in the
+ * <code>.dockerignore</code> file next to the Dockerfile with the excludes and includes configured for the image.
+ * <br>
+ * Exclude patterns follow the <code>.dockerignore</code> semantics: a pattern excludes a path when it matches the path
+ * or one of its parent directories, patterns starting with <code>!</code> re-include what an earlier pattern excluded
+ * and the last matching pattern wins. Patterns support <code>*</code>, <code>?</code>, <code>[...]</code> and
+ * <code>**</code> for any number of directories. When include patterns are configured, only files matching one of
+ * them are part of the context. The Dockerfile and the <code>.dockerignore</code> file in the root of the context are
+ * always part of it, like the docker client does.
+ */
+public class ContextFilter implements ContextScanner.EntryFilter {
+
+    public static final String DOCKERIGNORE_FILE = ".dockerignore";
+
+    private static final String DOCKERFILE_NAME = "Dockerfile";
+
+    private static final ContextFilter ACCEPT_ALL =
+            new ContextFilter(Collections.<String>emptyList(), Collections.<String>emptyList());
+
+    private static final DirectoryStream.Filter<Path> ACCEPT_ALL_PATHS = new DirectoryStream.Filter<Path>() {
+        @Override
+        public boolean accept(final Path entry) {
+            return true;
+        }
+    };
+
+    private final List<Rule> excludes;
+    private final List<Rule> includes;
+    private final boolean hasExceptions;
+
+    public ContextFilter(final List<String> excludePatterns, final List<String> includePatterns) {
+        excludes = parse(excludePatterns);
+        includes = parse(includePatterns);
+        boolean exceptions = false;
+        for (Rule rule : excludes) {
+            exceptions |= rule.negated;
+        }
+        hasExceptions = exceptions;
+    }
+
+    /**
+     * @return a filter that accepts every file
+     */
+    public static ContextFilter acceptAll() {
+        return ACCEPT_ALL;
+    }
+
+    /**
+     * Creates the filter for an image, based on the <code>.dockerignore</code> file in the directory of the Dockerfile
+     * (if there is one) followed by the excludes of the image configuration, and the includes of the image
+     * configuration.
+     *
+     * @param image the image configuration
+     * @return the filter
+     * @throws IOException when the <code>.dockerignore</code> file exists but can't be read
+     */
+    public static ContextFilter forImage(final ImageBuildConfiguration image) throws IOException {
+        List<String> excludePatterns = new ArrayList<>();
+        File dockerFile = image.getDockerFile();
+        if (dockerFile != null && dockerFile.getParentFile() != null) {
+            excludePatterns.addAll(readPatterns(new File(dockerFile.getParentFile(), DOCKERIGNORE_FILE)));
+        }
+        excludePatterns.addAll(image.getExcludes());
+        if (excludePatterns.isEmpty() && image.getIncludes().isEmpty()) {
+            return ACCEPT_ALL;
+        }
+        return new ContextFilter(excludePatterns, image.getIncludes());
+    }
+
+    /**
+     * @param path the path of a file in the context, using '/' as separator
+     * @return true if the file is part of the context
+     */
+    public boolean acceptFile(final String path) {
+        String normalized = normalize(path);
+        if (DOCKERFILE_NAME.equals(normalized) || DOCKERIGNORE_FILE.equals(normalized)) {
+            return true;
+        }
+        return !isExcluded(normalized) && (includes.isEmpty() || matchesAny(includes, normalized));
+    }
+
+    /**
+     * Tells whether a directory needs to be walked. A directory is skipped as a whole when it is excluded and no
+     * exception pattern can re-include anything below it, or when no include pattern can match anything below it.
+     *
+     * @param path the path of a directory in the context, using '/' as separator
+     * @return true if the directory may contain files that are part of the context
+     */
+    public boolean acceptDirectory(final String path) {
+        String normalized = normalize(path);
+        if (normalized.isEmpty()) {
+            return true;
+        }
+        if (isExcluded(normalized) && !(hasExceptions && anyExceptionBelow(normalized))) {
+            return false;
+        }
+        if (includes.isEmpty() || matchesAny(includes, normalized)) {
+            return true;
+        }
+        for (Rule include : includes) {
+            if (include.canMatchBelow(normalized)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public boolean mayAccept(final String name) {
+        return acceptFile(name) || acceptDirectory(name);
+    }
+
+    @Override
+    public boolean accept(final Path path, final String name, final boolean directory) {
+        return directory ? acceptDirectory(name) : acceptFile(name);
+    }
+
+    /**
+     * Adapts this filter for a walk through a directory on disk, for example with a {@link DirectoryStream}.
+     *
+     * @param root the directory that is the root of the build context
+     * @return a filter that accepts the absolute paths of the files and directories that need to be visited
+     */
+    public DirectoryStream.Filter<Path> forDirectory(final Path root) {
+        if (excludes.isEmpty() && includes.isEmpty()) {
+            // accepts everything, without having to find out whether a path is a directory
+            return ACCEPT_ALL_PATHS;
+        }
+        return new DirectoryStream.Filter<Path>() {
+            @Override
+            public boolean accept(final Path entry) {
+                String path = root.relativize(entry).toString().replace(File.separatorChar, '/');
+                return Files.isDirectory(entry) ? acceptDirectory(path) : acceptFile(path);
+            }
+        };
+    }
+
+    static List<String> readPatterns(final File dockerIgnore) throws IOException {
+        if (!dockerIgnore.isFile()) {
+            return Collections.emptyList();
+        }
+        return Files.readAllLines(dockerIgnore.toPath(), Charset.forName("UTF-8"));
+    }
+
+    private boolean isExcluded(final String path) {
+        boolean excluded = false;
+        for (Rule rule : excludes) {
+            if (rule.matches(path)) {
+                excluded = !rule.negated;
+            }
+        }
+        return excluded;
+    }
+
+    private boolean anyExceptionBelow(final String directory) {
+        for (Rule rule : excludes) {
+            if (rule.negated && rule.canMatchBelow(directory)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean matchesAny(final List<Rule> rules, final String path) {
+        for (Rule rule : rules) {
+            if (rule.matches(path)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static List<Rule> parse(final List<String> patterns) {
+        List<Rule> rules = new ArrayList<>(patterns.size());
+        for (String line : patterns) {
+            String pattern = line.trim();
+            if (pattern.isEmpty() || pattern.startsWith("#")) {
+                continue;
+            }
+            boolean negated = pattern.startsWith("!");
+            if (negated) {
+                pattern = pattern.substring(1).trim();
+            }
+            pattern = normalize(pattern);
+            if (!pattern.isEmpty()) {
+                rules.add(new Rule(pattern, negated));
+            }
+        }
+        return rules;
+    }
+
+    private static String normalize(final String path) {
+        String normalized = path;
+        while (normalized.startsWith("./") || normalized.startsWith("/")) {
+            normalized = normalized.substring(normalized.startsWith("/") ? 1 : 2);
+        }
+        while (normalized.endsWith("/")) {
+            normalized = normalized.substring(0, normalized.length() - 1);
+        }
+        return normalized;
+    }
+
+    private static final class Rule {
+
+        private final Pattern regex;
+        private final String literalPrefix;
+        private final boolean wildcard;
+        private final boolean negated;
+
+        private Rule(final String pattern, final boolean negated) {
+            this.negated = negated;
+            this.regex = Pattern.compile(toRegex(pattern));
+            int firstWildcard = indexOfWildcard(pattern);
+            this.wildcard = firstWildcard >= 0;
+            this.literalPrefix = wildcard ? pattern.substring(0, firstWildcard) : pattern;
+        }
+
+        /**
+         * A rule matches a path when it matches the path itself or one of its parent directories.
+         */
+        private boolean matches(final String path) {
+            if (regex.matcher(path).matches()) {
+                return true;
+            }
+            for (int i = path.indexOf('/'); i >= 0; i = path.indexOf('/', i + 1)) {
+                if (regex.matcher(path.substring(0, i)).matches()) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Conservatively tells whether this rule can match a path inside the passed directory.
+         */
+        private boolean canMatchBelow(final String directory) {
+            String prefix = directory + "/";
+            if (!wildcard) {
+                return literalPrefix.startsWith(prefix);
+            }
+            return literalPrefix.startsWith(prefix) || prefix.startsWith(literalPrefix);
+        }
+
+        private static int indexOfWildcard(final String pattern) {
+            for (int i = 0; i < pattern.length(); i++) {
+                char c = pattern.charAt(i);
+                if (c == '*' || c == '?' || c == '[' || c == '\\') {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private static String toRegex(final String pattern) {
+            StringBuilder regex = new StringBuilder();
+            int i = 0;
+            while (i < pattern.length()) {
+                char c = pattern.charAt(i);
+                if (c == '*') {
+                    if (pattern.startsWith("**/", i)) {
+                        regex.append("(?:.*/)?");
+                        i += 3;
+                        continue;
+                    } else if (pattern.startsWith("**", i)) {
+                        regex.append(".*");
+                        i += 2;
+                        continue;
+                    }
+                    regex.append("[^/]*");
+                } else if (c == '?') {
+                    regex.append("[^/]");
+                } else if (c == '[') {
+                    int end = pattern.indexOf(']', i + 1);
+                    if (end < 0) {
+                        regex.append(Pattern.quote("["));
+                    } else {
+                        String characterClass = pattern.substring(i + 1, end);
+                        if (characterClass.startsWith("!") || characterClass.startsWith("^")) {
+                            characterClass = "^" + characterClass.substring(1);
+                        }
+                        regex.append('[').append(characterClass.replace("\\", "\\\\")).append(']');
+                        i = end;
+                    }
+                } else if (c == '\\' && i + 1 < pattern.length()) {
+                    i++;
+                    regex.append(Pattern.quote(String.valueOf(pattern.charAt(i))));
+                } else {
+                    regex.append(Pattern.quote(String.valueOf(c)));
+                }
+                i++;
+            }
+            return regex.toString();
+        }
+    }
+}
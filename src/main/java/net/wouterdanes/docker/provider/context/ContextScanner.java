@@ -0,0 +1,366 @@
+/*
+    Copyright 2014 Wouter Danes
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+*/
+
+package net.wouterdanes.docker.provider.context;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystemLoopException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.PosixFileAttributes;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * This class is responsible for finding the files of a build context and reading their metadata. Directories are
+ * listed and files are stat'ed in parallel on a fork/join pool, which matters for contexts with tens of thousands of
+ * small files. The result is a list of entries sorted by name within every directory, so the order doesn't depend on
+ * the scheduling of the threads. Whether a file system supports POSIX attributes is only checked once per file system.
+ */
+public final class ContextScanner {
+
+    /**
+     * Decides which files and directories are part of the context.
+     */
+    public interface EntryFilter {
+        /**
+         * Tells from its name alone whether a file or directory may be part of the context. Only the entries that pass
+         * are stat'ed and passed to {@link #accept(Path, String, boolean)}.
+         *
+         * @param name the path of the file or directory in the context, using '/' as separator
+         * @return false if neither a file nor a directory with this name is part of the context
+         */
+        boolean mayAccept(String name);
+
+        /**
+         * @param path      the file or directory on disk
+         * @param name      the path of the file or directory in the context, using '/' as separator
+         * @param directory whether the path is a directory
+         * @return true if the file is part of the context or the directory needs to be scanned
+         */
+        boolean accept(Path path, String name, boolean directory);
+    }
+
+    private static final EntryFilter ACCEPT_ALL = new EntryFilter() {
+        @Override
+        public boolean mayAccept(final String name) {
+            return true;
+        }
+
+        @Override
+        public boolean accept(final Path path, final String name, final boolean directory) {
+            return true;
+        }
+    };
+
+    // the number of directory entries that is handled by a single task
+    private static final int BATCH_SIZE = 64;
+    private static final String POSIX_FILE_VIEW = "posix";
+
+    private static final ForkJoinPool POOL = new ForkJoinPool();
+    private static final ConcurrentMap<FileSystem, Boolean> POSIX_SUPPORT = new ConcurrentHashMap<>();
+
+    private static final Comparator<Path> BY_FILE_NAME = new Comparator<Path>() {
+        @Override
+        public int compare(final Path first, final Path second) {
+            return first.getFileName().toString().compareTo(second.getFileName().toString());
+        }
+    };
+
+    private ContextScanner() {
+    }
+
+    /**
+     * @return a filter that accepts every file and directory
+     */
+    public static EntryFilter acceptAll() {
+        return ACCEPT_ALL;
+    }
+
+    /**
+     * Adapts a filter on paths on disk.
+     *
+     * @param filter the filter
+     * @return a filter that passes the path on disk to the filter
+     */
+    public static EntryFilter filter(final DirectoryStream.Filter<Path> filter) {
+        return new EntryFilter() {
+            @Override
+            public boolean mayAccept(final String name) {
+                // the filter needs the path on disk
+                return true;
+            }
+
+            @Override
+            public boolean accept(final Path path, final String name, final boolean directory) {
+                try {
+                    return filter.accept(path);
+                } catch (IOException e) {
+                    throw new ScanException(e);
+                }
+            }
+        };
+    }
+
+    /**
+     * Scans a directory. Symbolic links are followed.
+     *
+     * @param directory  the directory to scan
+     * @param namePrefix the prefix of the names of the entries, for example "app/", or an empty string
+     * @param filter     decides which files and directories are part of the context
+     * @return the regular files in the directory and its accepted subdirectories
+     * @throws IOException when a directory can't be listed or a file can't be stat'ed
+     */
+    public static List<Entry> scan(final Path directory, final String namePrefix, final EntryFilter filter)
+            throws IOException {
+        try {
+            Object key = Files.readAttributes(directory, BasicFileAttributes.class).fileKey();
+            return POOL.invoke(new DirectoryScan(directory, key, namePrefix, filter, Collections.<Object>emptySet()));
+        } catch (RuntimeException e) {
+            throw unwrap(e);
+        }
+    }
+
+    /**
+     * Reads the metadata of a single file.
+     *
+     * @param file the file
+     * @param name the path of the file in the context
+     * @return the entry of the file
+     * @throws IOException when the file can't be stat'ed
+     */
+    public static Entry scanFile(final Path file, final String name) throws IOException {
+        return new Entry(file, name, readAttributes(file));
+    }
+
+    private static BasicFileAttributes readAttributes(final Path path) throws IOException {
+        if (supportsPosix(path.getFileSystem())) {
+            return Files.readAttributes(path, PosixFileAttributes.class);
+        }
+        return Files.readAttributes(path, BasicFileAttributes.class);
+    }
+
+    private static boolean supportsPosix(final FileSystem fileSystem) {
+        Boolean posix = POSIX_SUPPORT.get(fileSystem);
+        if (posix == null) {
+            posix = fileSystem.supportedFileAttributeViews().contains(POSIX_FILE_VIEW);
+            POSIX_SUPPORT.putIfAbsent(fileSystem, posix);
+        }
+        return posix;
+    }
+
+    private static IOException unwrap(final RuntimeException exception) {
+        // fork/join may rethrow a copy of the exception of a task, with the original as its cause
+        for (Throwable cause = exception; cause != null; cause = cause.getCause()) {
+            if (cause instanceof IOException) {
+                return (IOException) cause;
+            }
+        }
+        throw exception;
+    }
+
+    private static int getTarMode(final BasicFileAttributes attributes) {
+        if (!(attributes instanceof PosixFileAttributes)) {
+            return TarWriter.DEFAULT_FILE_MODE;
+        }
+        Set<PosixFilePermission> permissions = ((PosixFileAttributes) attributes).permissions();
+        int mode = 0100000;
+        int bit = 0400;
+        // PosixFilePermission is declared in the order of the bits, from OWNER_READ to OTHERS_EXECUTE
+        for (PosixFilePermission permission : PosixFilePermission.values()) {
+            if (permissions.contains(permission)) {
+                mode |= bit;
+            }
+            bit >>= 1;
+        }
+        return mode;
+    }
+
+    /**
+     * A regular file in the context.
+     */
+    public static final class Entry {
+        private final Path path;
+        private final String name;
+        private final long size;
+        private final int mode;
+        private final long modificationTime;
+
+        private Entry(final Path path, final String name, final BasicFileAttributes attributes) {
+            this.path = path;
+            this.name = name;
+            this.size = attributes.size();
+            this.mode = getTarMode(attributes);
+            this.modificationTime = attributes.lastModifiedTime().toMillis();
+        }
+
+        public Path getPath() {
+            return path;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        /**
+         * @return the tar mode of the file: its POSIX permissions, or {@link TarWriter#DEFAULT_FILE_MODE}
+         */
+        public int getMode() {
+            return mode;
+        }
+
+        public long getModificationTime() {
+            return modificationTime;
+        }
+    }
+
+    private static final class ScanException extends RuntimeException {
+        private ScanException(final IOException cause) {
+            super(cause);
+        }
+    }
+
+    private static final class DirectoryScan extends RecursiveTask<List<Entry>> {
+        private final Path directory;
+        private final Object key;
+        private final String namePrefix;
+        private final EntryFilter filter;
+        private final Set<Object> ancestors;
+
+        /**
+         * @param key the file key of the directory, used to detect loops through symbolic links, may be null
+         */
+        private DirectoryScan(final Path directory, final Object key, final String namePrefix,
+                              final EntryFilter filter, final Set<Object> ancestors) {
+            this.directory = directory;
+            this.key = key;
+            this.namePrefix = namePrefix;
+            this.filter = filter;
+            this.ancestors = ancestors;
+        }
+
+        @Override
+        protected List<Entry> compute() {
+            try {
+                if (key != null && ancestors.contains(key)) {
+                    throw new FileSystemLoopException(directory.toString());
+                }
+                Set<Object> keys = ancestors;
+                if (key != null) {
+                    keys = new HashSet<>(ancestors);
+                    keys.add(key);
+                }
+                List<Path> children = new ArrayList<>();
+                try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+                    for (Path child : stream) {
+                        children.add(child);
+                    }
+                }
+                // sorted, so the same directory always results in the same order of entries
+                Collections.sort(children, BY_FILE_NAME);
+                return new ChildrenScan(children, 0, children.size(), namePrefix, filter, keys).compute();
+            } catch (IOException e) {
+                throw new ScanException(e);
+            }
+        }
+    }
+
+    private static final class ChildrenScan extends RecursiveTask<List<Entry>> {
+        private final List<Path> children;
+        private final int from;
+        private final int to;
+        private final String namePrefix;
+        private final EntryFilter filter;
+        private final Set<Object> ancestors;
+
+        private ChildrenScan(final List<Path> children, final int from, final int to, final String namePrefix,
+                             final EntryFilter filter, final Set<Object> ancestors) {
+            this.children = children;
+            this.from = from;
+            this.to = to;
+            this.namePrefix = namePrefix;
+            this.filter = filter;
+            this.ancestors = ancestors;
+        }
+
+        @Override
+        protected List<Entry> compute() {
+            if (to - from > BATCH_SIZE) {
+                int middle = (from + to) >>> 1;
+                ChildrenScan second = new ChildrenScan(children, middle, to, namePrefix, filter, ancestors);
+                second.fork();
+                List<Entry> entries = new ChildrenScan(children, from, middle, namePrefix, filter, ancestors)
+                        .compute();
+                entries.addAll(second.join());
+                return entries;
+            }
+            try {
+                return scanChildren();
+            } catch (IOException e) {
+                throw new ScanException(e);
+            }
+        }
+
+        private List<Entry> scanChildren() throws IOException {
+            // entries and directory scans, in the order of the children
+            List<Object> results = new ArrayList<>(to - from);
+            for (Path child : children.subList(from, to)) {
+                String name = namePrefix + child.getFileName().toString();
+                if (!filter.mayAccept(name)) {
+                    // left out by its name, without stat'ing it
+                    continue;
+                }
+                BasicFileAttributes attributes = readAttributes(child);
+                if (attributes.isDirectory()) {
+                    if (filter.accept(child, name, true)) {
+                        DirectoryScan scan = new DirectoryScan(child, attributes.fileKey(), name + "/", filter,
+                                ancestors);
+                        scan.fork();
+                        results.add(scan);
+                    }
+                } else if (attributes.isRegularFile() && filter.accept(child, name, false)) {
+                    results.add(new Entry(child, name, attributes));
+                }
+            }
+            List<Entry> entries = new ArrayList<>();
+            for (Object result : results) {
+                if (result instanceof DirectoryScan) {
+                    entries.addAll(((DirectoryScan) result).join());
+                } else {
+                    entries.add((Entry) result);
+                }
+            }
+            return entries;
+        }
+    }
+}
@@ -0,0 +1,86 @@
+/*
+    Copyright 2014 Wouter Danes
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+*/
+
+package net.wouterdanes.docker.provider.context;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * This class is responsible for writing the files of a directory that pass a filter to a temporary tar ball, the way
+ * a build context of the directory of a Dockerfile is sent to the docker daemon. The directory is scanned in parallel
+ * and the tar ball is gzipped on all cores, unless it isn't compressed at all.
+ */
+public final class DirectoryArchive {
+
+    private static final Comparator<ContextScanner.Entry> BY_NAME = new Comparator<ContextScanner.Entry>() {
+        @Override
+        public int compare(final ContextScanner.Entry first, final ContextScanner.Entry second) {
+            return first.getName().compareTo(second.getName());
+        }
+    };
+
+    private DirectoryArchive() {
+    }
+
+    /**
+     * Creates a temporary tar ball of a directory. A reproducible tar ball is sorted by path and does not retain
+     * modification times and permissions, so the same files always result in the same tar ball. The caller deletes
+     * the file when it's done with it.
+     *
+     * @param directory        the directory to archive
+     * @param filter           accepts the files and directories to put in the tar ball by their path relative to the
+     *                         directory, directories that are not accepted are not walked
+     * @param compressionLevel the gzip level, or {@link ContextCompression#NO_COMPRESSION} for a plain tar ball
+     * @param reproducible     whether to create a reproducible tar ball
+     * @return the tar ball
+     * @throws IOException when the directory can't be read or the tar ball can't be written
+     */
+    public static File create(final Path directory, final ContextScanner.EntryFilter filter,
+                              final int compressionLevel, final boolean reproducible) throws IOException {
+        boolean compressed = compressionLevel != ContextCompression.NO_COMPRESSION;
+        File file = File.createTempFile("docker-context-", compressed ? ".tar.gz" : ".tar");
+        boolean written = false;
+        try (FileOutputStream fileOut = new FileOutputStream(file);
+             OutputStream out = compressed ? new ParallelGzipOutputStream(fileOut, compressionLevel) : fileOut) {
+            // an uncompressed tar ball is written through the file channel, so the operating system copies the files
+            TarWriter tar = TarWriter.forStream(out);
+            tar.setReproducible(reproducible);
+            List<ContextScanner.Entry> entries = new ArrayList<>(ContextScanner.scan(directory, "", filter));
+            if (reproducible) {
+                Collections.sort(entries, BY_NAME);
+            }
+            for (ContextScanner.Entry entry : entries) {
+                tar.writeFile(entry.getPath(), entry.getName(), entry.getMode(), entry.getModificationTime());
+            }
+            tar.finish();
+            written = true;
+        } finally {
+            if (!written && !file.delete()) {
+                file.deleteOnExit();
+            }
+        }
+        return file;
+    }
+}
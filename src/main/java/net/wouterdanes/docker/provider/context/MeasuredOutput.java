@@ -0,0 +1,114 @@
+/*
+    Copyright 2014 Wouter Danes
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+*/
+
+package net.wouterdanes.docker.provider.context;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import javax.ws.rs.core.StreamingOutput;
+
+/**
+ * This class is responsible for measuring a {@link StreamingOutput} while it is written: the number of bytes, the total
+ * time it takes and the part of that time that is spent waiting for the stream it is written to. For a build context
+ * that is written to a request, the difference is the time spent creating the archive and the waiting time is the time
+ * spent uploading it.
+ */
+public class MeasuredOutput implements StreamingOutput {
+
+    private final StreamingOutput delegate;
+    private volatile long bytes;
+    private volatile long writeNanos;
+    private volatile long waitNanos;
+
+    public MeasuredOutput(final StreamingOutput delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public void write(final OutputStream output) throws IOException {
+        long start = System.nanoTime();
+        MeasuringStream stream = new MeasuringStream(output);
+        try {
+            delegate.write(stream);
+        } finally {
+            bytes += stream.bytes;
+            waitNanos += stream.waitNanos;
+            writeNanos += System.nanoTime() - start;
+        }
+    }
+
+    /**
+     * @return the number of bytes written
+     */
+    public long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * @return the total time spent writing, in nanoseconds
+     */
+    public long getWriteNanos() {
+        return writeNanos;
+    }
+
+    /**
+     * @return the time spent in the stream that was written to, in nanoseconds
+     */
+    public long getWaitNanos() {
+        return waitNanos;
+    }
+
+    private static final class MeasuringStream extends FilterOutputStream {
+        private long bytes;
+        private long waitNanos;
+
+        private MeasuringStream(final OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(final int b) throws IOException {
+            long start = System.nanoTime();
+            out.write(b);
+            waitNanos += System.nanoTime() - start;
+            bytes++;
+        }
+
+        @Override
+        public void write(final byte[] b, final int off, final int len) throws IOException {
+            long start = System.nanoTime();
+            out.write(b, off, len);
+            waitNanos += System.nanoTime() - start;
+            bytes += len;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            long start = System.nanoTime();
+            out.flush();
+            waitNanos += System.nanoTime() - start;
+        }
+
+        @Override
+        public void close() throws IOException {
+            // the stream belongs to the caller
+            flush();
+        }
+    }
+}
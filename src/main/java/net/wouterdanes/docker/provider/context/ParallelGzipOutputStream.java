@@ -0,0 +1,245 @@
+/*
+    Copyright 2014 Wouter Danes
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+*/
+
+package net.wouterdanes.docker.provider.context;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * This class is responsible for gzip compressing a stream on multiple cores, the way pigz does it. The data is cut in
+ * blocks that are deflated independently on a thread pool, each block primed with the last 32 KiB of the block before
+ * it so the compression ratio hardly suffers. Every block but the last ends with a sync flush, so the compressed blocks
+ * can simply be concatenated into a single, standard gzip member.
+ * <br>
+ * The compressed blocks are written in order by the thread that writes to this stream, and only a limited number of
+ * blocks is in flight at any time, so memory usage doesn't depend on the size of the data.
+ */
+public class ParallelGzipOutputStream extends FilterOutputStream {
+
+    static final int DEFAULT_BLOCK_SIZE = 128 * 1024;
+
+    private static final int DICTIONARY_SIZE = 32 * 1024;
+    private static final int GZIP_MAGIC = 0x8b1f;
+    private static final int OS_UNKNOWN = 255;
+    private static final ExecutorService SHARED_EXECUTOR = createSharedExecutor();
+
+    private final int level;
+    private final int blockSize;
+    private final int maxBlocksInFlight;
+    private final ExecutorService executor;
+    private final Deque<Future<byte[]>> blocksInFlight = new ArrayDeque<>();
+    private final CRC32 crc = new CRC32();
+
+    private byte[] block;
+    private int blockLength;
+    private byte[] previousBlock;
+    private long uncompressedSize;
+    private boolean finished;
+
+    /**
+     * Creates a stream that compresses on a thread pool shared by all streams, with a thread per core.
+     *
+     * @param out   the stream to write the gzip data to
+     * @param level the deflate level, between 1 and 9, or {@link Deflater#DEFAULT_COMPRESSION}
+     * @throws IOException when the gzip header can't be written
+     */
+    public ParallelGzipOutputStream(final OutputStream out, final int level) throws IOException {
+        this(out, level, DEFAULT_BLOCK_SIZE, SHARED_EXECUTOR, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param out         the stream to write the gzip data to
+     * @param level       the deflate level, between 1 and 9, or {@link Deflater#DEFAULT_COMPRESSION}
+     * @param blockSize   the number of uncompressed bytes that is deflated as one block
+     * @param executor    the executor that deflates the blocks
+     * @param parallelism the number of threads of the executor that this stream may keep busy
+     * @throws IOException when the gzip header can't be written
+     */
+    public ParallelGzipOutputStream(final OutputStream out, final int level, final int blockSize,
+                                    final ExecutorService executor, final int parallelism) throws IOException {
+        super(out);
+        Preconditions.checkArgument(blockSize >= DICTIONARY_SIZE, "The block size must be at least %s bytes",
+                DICTIONARY_SIZE);
+        Preconditions.checkArgument(parallelism > 0, "The parallelism must be positive");
+        this.level = level;
+        this.blockSize = blockSize;
+        this.executor = Preconditions.checkNotNull(executor);
+        // a few extra blocks keep the workers busy while the oldest block is written
+        this.maxBlocksInFlight = parallelism * 2;
+        this.block = new byte[blockSize];
+        writeHeader();
+    }
+
+    @Override
+    public void write(final int b) throws IOException {
+        write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(final byte[] b, final int off, final int len) throws IOException {
+        Preconditions.checkState(!finished, "The stream is already finished");
+        crc.update(b, off, len);
+        uncompressedSize += len;
+        int offset = off;
+        int remaining = len;
+        while (remaining > 0) {
+            if (blockLength == blockSize) {
+                submitBlock(false);
+            }
+            int count = Math.min(remaining, blockSize - blockLength);
+            System.arraycopy(b, offset, block, blockLength, count);
+            blockLength += count;
+            offset += count;
+            remaining -= count;
+        }
+    }
+
+    /**
+     * Compresses and writes everything that was written to this stream, followed by the gzip trailer, without closing
+     * the underlying stream.
+     *
+     * @throws IOException when the compressed data can't be written
+     */
+    public void finish() throws IOException {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        submitBlock(true);
+        while (!blocksInFlight.isEmpty()) {
+            writeOldestBlock();
+        }
+        writeInt((int) crc.getValue());
+        writeInt((int) uncompressedSize);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            finish();
+        } finally {
+            out.close();
+        }
+    }
+
+    private void submitBlock(final boolean last) throws IOException {
+        final byte[] data = block;
+        final int length = blockLength;
+        final byte[] dictionary = previousBlock;
+        blocksInFlight.add(executor.submit(new Callable<byte[]>() {
+            @Override
+            public byte[] call() {
+                return deflate(data, length, dictionary, last);
+            }
+        }));
+        previousBlock = data;
+        block = last ? null : new byte[blockSize];
+        blockLength = 0;
+        while (blocksInFlight.size() >= maxBlocksInFlight) {
+            writeOldestBlock();
+        }
+    }
+
+    private void writeOldestBlock() throws IOException {
+        Future<byte[]> oldest = blocksInFlight.remove();
+        try {
+            out.write(oldest.get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while compressing");
+        } catch (ExecutionException e) {
+            throw new IOException("Unable to compress", e.getCause());
+        }
+    }
+
+    private byte[] deflate(final byte[] data, final int length, final byte[] dictionary, final boolean last) {
+        Deflater deflater = new Deflater(level, true);
+        try {
+            if (dictionary != null) {
+                deflater.setDictionary(dictionary, dictionary.length - DICTIONARY_SIZE, DICTIONARY_SIZE);
+            }
+            deflater.setInput(data, 0, length);
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(length / 2 + 64);
+            byte[] buffer = new byte[Math.max(length / 2, 1024)];
+            if (last) {
+                deflater.finish();
+                while (!deflater.finished()) {
+                    compressed.write(buffer, 0, deflater.deflate(buffer));
+                }
+            } else {
+                // a sync flush ends the block on a byte boundary, so the next block can be appended as is
+                int count;
+                do {
+                    count = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+                    compressed.write(buffer, 0, count);
+                } while (count == buffer.length);
+            }
+            return compressed.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private void writeHeader() throws IOException {
+        out.write(new byte[]{
+                (byte) GZIP_MAGIC, (byte) (GZIP_MAGIC >> 8),
+                Deflater.DEFLATED,
+                0, // flags
+                0, 0, 0, 0, // modification time
+                0, // extra flags
+                (byte) OS_UNKNOWN
+        });
+    }
+
+    private void writeInt(final int value) throws IOException {
+        out.write(new byte[]{(byte) value, (byte) (value >> 8), (byte) (value >> 16), (byte) (value >> 24)});
+    }
+
+    private static ExecutorService createSharedExecutor() {
+        final AtomicInteger threadCount = new AtomicInteger();
+        return Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable runnable) {
+                Thread thread = new Thread(runnable, "docker-context-gzip-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+}
@@ -0,0 +1,276 @@
+/*
+    Copyright 2014 Wouter Danes
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+*/
+
+package net.wouterdanes.docker.provider.context;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * This class is responsible for writing tar archives without copying file contents through the heap. The headers are
+ * written by this class itself and the contents of every file are moved to the output with
+ * {@link FileChannel#transferTo(long, long, WritableByteChannel)}, which lets the operating system copy them directly
+ * when the output is a file or a socket.
+ * <br>
+ * The archives are in the POSIX.1-2001 (pax) format: names and link targets longer than 100 bytes and files of 8 GiB
+ * or more get an extended header, like the archives written by commons-compress with <code>LONGFILE_POSIX</code> and
+ * <code>BIGNUMBER_POSIX</code>.
+ * <br>
+ * A reproducible writer leaves out everything that differs between two checkouts of the same sources: every entry
+ * gets the same modification time and a mode of either {@link #DEFAULT_FILE_MODE} or
+ * {@link #EXECUTABLE_FILE_MODE}. Owner and group are always root. The same files written in the same order then
+ * result in the same bytes.
+ */
+public class TarWriter {
+
+    /**
+     * The mode of a regular file that is readable for everyone and writable for its owner.
+     */
+    public static final int DEFAULT_FILE_MODE = 0100644;
+
+    /**
+     * The mode of a regular file that is readable and executable for everyone and writable for its owner.
+     */
+    public static final int EXECUTABLE_FILE_MODE = 0100755;
+
+    /**
+     * The modification time of all entries written by a reproducible writer: the epoch.
+     */
+    public static final long REPRODUCIBLE_MODIFICATION_TIME = 0;
+
+    static final int RECORD_SIZE = 512;
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final String PAX_HEADER_NAME = "././@PaxHeader";
+    private static final byte TYPE_FILE = '0';
+    private static final byte TYPE_HARD_LINK = '1';
+    private static final byte TYPE_PAX_HEADER = 'x';
+    private static final int NAME_LENGTH = 100;
+    private static final long MAX_OCTAL_SIZE = 077777777777L;
+    private static final byte[] ZEROS = new byte[RECORD_SIZE * 2];
+
+    private final WritableByteChannel channel;
+    private boolean reproducible;
+    private boolean finished;
+
+    public TarWriter(final WritableByteChannel channel) {
+        this.channel = channel;
+    }
+
+    /**
+     * Creates a writer for a stream. A {@link java.io.FileOutputStream} is written through its file channel, so file
+     * contents are copied by the operating system.
+     *
+     * @param output the stream to write the archive to, it is not closed by this writer
+     * @return the writer
+     */
+    public static TarWriter forStream(final OutputStream output) {
+        return new TarWriter(Channels.newChannel(output));
+    }
+
+    /**
+     * @param reproducible whether to normalize the mode and modification time of the entries
+     */
+    public void setReproducible(final boolean reproducible) {
+        this.reproducible = reproducible;
+    }
+
+    /**
+     * Normalizes a mode the way a reproducible writer does: files that are executable for anyone become executable
+     * for everyone, all other files get the default mode.
+     *
+     * @param mode the mode of a file
+     * @return {@link #EXECUTABLE_FILE_MODE} or {@link #DEFAULT_FILE_MODE}
+     */
+    public static int normalizeMode(final int mode) {
+        return (mode & 0111) != 0 ? EXECUTABLE_FILE_MODE : DEFAULT_FILE_MODE;
+    }
+
+    /**
+     * Adds a regular file to the archive.
+     *
+     * @param file             the file to add
+     * @param name             the path of the file in the archive, using '/' as separator
+     * @param mode             the mode of the entry, for example {@link #DEFAULT_FILE_MODE}
+     * @param modificationTime the modification time of the entry in milliseconds since the epoch
+     * @throws IOException when the file can't be read or the archive can't be written
+     */
+    public void writeFile(final Path file, final String name, final int mode, final long modificationTime)
+            throws IOException {
+        try (FileChannel source = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = source.size();
+            if (reproducible) {
+                writeHeader(name, null, TYPE_FILE, normalizeMode(mode), size, REPRODUCIBLE_MODIFICATION_TIME);
+            } else {
+                writeHeader(name, null, TYPE_FILE, mode, size, modificationTime);
+            }
+            long position = 0;
+            while (position < size) {
+                long transferred = source.transferTo(position, size - position, channel);
+                if (transferred <= 0) {
+                    break;
+                }
+                position += transferred;
+            }
+            // a file that shrank while it was being written is padded, so the archive stays valid
+            writeZeros(size - position);
+            writeZeros(padding(size));
+        }
+    }
+
+    /**
+     * Adds a hard link to a file that was added to the archive before. The link takes a single header record, the
+     * contents of the file are only in the archive once.
+     *
+     * @param name             the path of the link in the archive, using '/' as separator
+     * @param target           the path of the file in the archive that the link points to
+     * @param mode             the mode of the entry, for example {@link #DEFAULT_FILE_MODE}
+     * @param modificationTime the modification time of the entry in milliseconds since the epoch
+     * @throws IOException when the archive can't be written
+     */
+    public void writeHardLink(final String name, final String target, final int mode, final long modificationTime)
+            throws IOException {
+        if (reproducible) {
+            writeHeader(name, target, TYPE_HARD_LINK, normalizeMode(mode), 0, REPRODUCIBLE_MODIFICATION_TIME);
+        } else {
+            writeHeader(name, target, TYPE_HARD_LINK, mode, 0, modificationTime);
+        }
+    }
+
+    /**
+     * Writes the end of archive marker. The underlying stream or channel is not closed.
+     *
+     * @throws IOException when the archive can't be written
+     */
+    public void finish() throws IOException {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        writeZeros(RECORD_SIZE * 2);
+    }
+
+    /**
+     * @param linkTarget the target of a hard link, or null
+     */
+    private void writeHeader(final String name, final String linkTarget, final byte type, final int mode,
+                             final long size, final long modificationTime) throws IOException {
+        byte[] nameBytes = name.getBytes(UTF8);
+        byte[] linkBytes = linkTarget == null ? new byte[0] : linkTarget.getBytes(UTF8);
+        StringBuilder paxRecords = new StringBuilder();
+        if (nameBytes.length > NAME_LENGTH) {
+            paxRecords.append(paxRecord("path", name));
+        }
+        if (linkBytes.length > NAME_LENGTH) {
+            paxRecords.append(paxRecord("linkpath", linkTarget));
+        }
+        if (size > MAX_OCTAL_SIZE) {
+            paxRecords.append(paxRecord("size", String.valueOf(size)));
+        }
+        if (paxRecords.length() > 0) {
+            byte[] records = paxRecords.toString().getBytes(UTF8);
+            write(createHeader(PAX_HEADER_NAME.getBytes(UTF8), new byte[0], TYPE_PAX_HEADER, 0100644,
+                    records.length, modificationTime));
+            write(records);
+            writeZeros(padding(records.length));
+        }
+        write(createHeader(nameBytes, linkBytes, type, mode, size > MAX_OCTAL_SIZE ? 0 : size, modificationTime));
+    }
+
+    private static byte[] createHeader(final byte[] name, final byte[] linkTarget, final byte type, final int mode,
+                                       final long size, final long modificationTime) {
+        byte[] header = new byte[RECORD_SIZE];
+        System.arraycopy(name, 0, header, 0, Math.min(name.length, NAME_LENGTH));
+        putOctal(header, 100, 8, mode & 07777777);
+        putOctal(header, 108, 8, 0);
+        putOctal(header, 116, 8, 0);
+        putOctal(header, 124, 12, size);
+        putOctal(header, 136, 12, Math.max(0, modificationTime / 1000));
+        header[156] = type;
+        System.arraycopy(linkTarget, 0, header, 157, Math.min(linkTarget.length, NAME_LENGTH));
+        System.arraycopy("ustar\u000000".getBytes(UTF8), 0, header, 257, 8);
+        putOctal(header, 329, 8, 0);
+        putOctal(header, 337, 8, 0);
+
+        // the checksum is calculated with the checksum field filled with spaces
+        Arrays.fill(header, 148, 156, (byte) ' ');
+        long checksum = 0;
+        for (byte b : header) {
+            checksum += b & 0xff;
+        }
+        putOctal(header, 148, 7, checksum);
+        header[155] = ' ';
+        return header;
+    }
+
+    /**
+     * Writes a zero padded, NUL terminated octal number in a header field.
+     */
+    private static void putOctal(final byte[] header, final int offset, final int length, final long value) {
+        String octal = Long.toOctalString(value);
+        int digits = length - 1;
+        for (int i = 0; i < digits; i++) {
+            int index = i - (digits - octal.length());
+            header[offset + i] = index < 0 ? (byte) '0' : (byte) octal.charAt(index);
+        }
+        header[offset + digits] = 0;
+    }
+
+    /**
+     * Creates a pax record: "&lt;length&gt; &lt;key&gt;=&lt;value&gt;\n", where the length includes itself.
+     */
+    private static String paxRecord(final String key, final String value) {
+        int contentLength = (" " + key + "=" + value + "\n").getBytes(UTF8).length;
+        int length = contentLength + String.valueOf(contentLength).length();
+        if (String.valueOf(length).length() > String.valueOf(contentLength).length()) {
+            length++;
+        }
+        return length + " " + key + "=" + value + "\n";
+    }
+
+    private static long padding(final long size) {
+        long remainder = size % RECORD_SIZE;
+        return remainder == 0 ? 0 : RECORD_SIZE - remainder;
+    }
+
+    private void writeZeros(final long count) throws IOException {
+        long remaining = count;
+        while (remaining > 0) {
+            int length = (int) Math.min(remaining, ZEROS.length);
+            write(ByteBuffer.wrap(ZEROS, 0, length));
+            remaining -= length;
+        }
+    }
+
+    private void write(final byte[] bytes) throws IOException {
+        write(ByteBuffer.wrap(bytes));
+    }
+
+    private void write(final ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+}
@@ -34,7 +34,8 @@ public class BuiltImageInfo {
         this.imageId = imageId;
         this.startId = imageConfig.getId();
         this.registry = Optional.fromNullable(imageConfig.getRegistry());
-        this.keepAfterStopping = imageConfig.isKeep() || imageConfig.isPush();
+        // a shared image can still be used by another module
+        this.keepAfterStopping = imageConfig.isKeep() || imageConfig.isPush() || imageConfig.isShared();
     }
 
     public String getStartId() {
@@ -49,6 +49,11 @@ public class ContainerStartConfiguration {
      */
     private int startupTimeout;
 
+    /**
+     * Probes that have to succeed before the container counts as started up
+     */
+    private List<ReadinessProbeConfiguration> readinessProbes;
+
     /**
      * Hostname to give to this container
      */
@@ -97,6 +102,14 @@ public class ContainerStartConfiguration {
         return this;
     }
 
+    public ContainerStartConfiguration withReadinessProbe(ReadinessProbeConfiguration probe) {
+        if (this.readinessProbes == null) {
+            this.readinessProbes = new ArrayList<>();
+        }
+        this.readinessProbes.add(probe);
+        return this;
+    }
+
     public ContainerStartConfiguration withEnv(Map<String, String> env) {
     	this.env = env;
     	return this;
@@ -135,6 +148,11 @@ public class ContainerStartConfiguration {
         return waitForStartup;
     }
 
+    public List<ReadinessProbeConfiguration> getReadinessProbes() {
+        return readinessProbes != null ? Collections.unmodifiableList(readinessProbes)
+                : Collections.<ReadinessProbeConfiguration>emptyList();
+    }
+
     public int getStartupTimeout() {
         return startupTimeout != 0 ? startupTimeout : DEFAULT_STARTUP_TIMEOUT;
     }
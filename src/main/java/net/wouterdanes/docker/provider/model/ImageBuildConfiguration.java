@@ -20,6 +20,7 @@ package net.wouterdanes.docker.provider.model;
 import org.apache.maven.plugins.annotations.Parameter;
 
 import java.io.File;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -49,6 +50,39 @@ public class ImageBuildConfiguration {
 	@Parameter
 	private List<Artifact> artifacts;
 
+    /**
+     * Patterns of files to leave out of the build context, in addition to the ones in the .dockerignore file
+     */
+    @Parameter
+    private List<String> excludes;
+
+    /**
+     * Patterns of files to put in the build context, if set, all other files are left out
+     */
+    @Parameter
+    private List<String> includes;
+
+    /**
+     * Whether to sort the build context and normalize timestamps and permissions, so the same files always result in
+     * the same archive
+     */
+    @Parameter(defaultValue = "false")
+    private boolean reproducible;
+
+    /**
+     * Whether to add files with the same contents to the build context only once, and hard links to them for the other
+     * paths
+     */
+    @Parameter(defaultValue = "false")
+    private boolean deduplicate;
+
+    /**
+     * Whether this image is built only once per reactor build and then used by all modules that declare an image with
+     * the same id. Shared images are never removed by the stop goal
+     */
+    @Parameter(defaultValue = "false")
+    private boolean shared;
+
     public String getId() {
         return id;
     }
@@ -104,4 +138,44 @@ public class ImageBuildConfiguration {
 	public void setDockerFile(File dockerFile) {
 		this.dockerFile = dockerFile;
 	}
+
+    public List<String> getExcludes() {
+        return excludes != null ? Collections.unmodifiableList(excludes) : Collections.<String>emptyList();
+    }
+
+    public void setExcludes(List<String> excludes) {
+        this.excludes = excludes;
+    }
+
+    public List<String> getIncludes() {
+        return includes != null ? Collections.unmodifiableList(includes) : Collections.<String>emptyList();
+    }
+
+    public void setIncludes(List<String> includes) {
+        this.includes = includes;
+    }
+
+    public boolean isReproducible() {
+        return reproducible;
+    }
+
+    public void setReproducible(boolean reproducible) {
+        this.reproducible = reproducible;
+    }
+
+    public boolean isDeduplicate() {
+        return deduplicate;
+    }
+
+    public void setDeduplicate(boolean deduplicate) {
+        this.deduplicate = deduplicate;
+    }
+
+    public boolean isShared() {
+        return shared;
+    }
+
+    public void setShared(boolean shared) {
+        this.shared = shared;
+    }
 }
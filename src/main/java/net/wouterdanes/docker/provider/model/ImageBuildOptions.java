@@ -0,0 +1,89 @@
+/*
+    Copyright 2014 Wouter Danes
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+*/
+
+package net.wouterdanes.docker.provider.model;
+
+import java.util.Collections;
+import java.util.Map;
+
+import com.google.common.base.Optional;
+
+import net.wouterdanes.docker.provider.context.BuildContext;
+import net.wouterdanes.docker.provider.context.ContextArchiveCache;
+import net.wouterdanes.docker.provider.context.ContextCompression;
+
+/**
+ * This class holds how a single image is built: the labels to add to it, how its build context is compressed and the
+ * cache its build context archive is kept in. Every build gets its own options, so images can be built at the same time
+ * with one provider. A build context that was already scanned, for example to calculate its digest, can be passed
+ * along so it isn't scanned again.
+ */
+public class ImageBuildOptions {
+
+    private Map<String, String> labels = Collections.emptyMap();
+    private ContextCompression compression = ContextCompression.defaults();
+    private Optional<ContextArchiveCache> contextCache = Optional.absent();
+    private Optional<BuildContext> context = Optional.absent();
+
+    public ImageBuildOptions withLabels(final Map<String, String> labels) {
+        this.labels = labels;
+        return this;
+    }
+
+    public ImageBuildOptions withCompression(final ContextCompression compression) {
+        this.compression = compression;
+        return this;
+    }
+
+    public ImageBuildOptions withContextCache(final Optional<ContextArchiveCache> contextCache) {
+        this.contextCache = contextCache;
+        return this;
+    }
+
+    public ImageBuildOptions withContext(final BuildContext context) {
+        this.context = Optional.of(context);
+        return this;
+    }
+
+    /**
+     * @return the labels to add to the image, by name
+     */
+    public Map<String, String> getLabels() {
+        return labels;
+    }
+
+    /**
+     * @return how the build context is compressed before it is sent to the Docker host
+     */
+    public ContextCompression getCompression() {
+        return compression;
+    }
+
+    /**
+     * @return the cache of build context archives, or absent to write the build context from scratch
+     */
+    public Optional<ContextArchiveCache> getContextCache() {
+        return contextCache;
+    }
+
+    /**
+     * @return the build context of the image, or absent to create it from the image configuration
+     */
+    public Optional<BuildContext> getContext() {
+        return context;
+    }
+}
@@ -0,0 +1,160 @@
+/*
+    Copyright 2014 Wouter Danes
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+*/
+
+package net.wouterdanes.docker.provider.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * This class stores the size of the build context of an image and the time spent in every phase of its build. All
+ * durations are in milliseconds.
+ */
+public class ImageBuildReport {
+
+    private final String imageId;
+    private int entries;
+    private long uncompressedBytes;
+    private long compressedBytes;
+    private List<ContextFile> largestFiles = Collections.emptyList();
+    private long walkMillis;
+    private long archiveMillis;
+    private long uploadMillis;
+    private long buildMillis;
+
+    /**
+     * @param imageId the id of the image in the plugin configuration
+     */
+    public ImageBuildReport(final String imageId) {
+        this.imageId = imageId;
+    }
+
+    public String getImageId() {
+        return imageId;
+    }
+
+    /**
+     * @return the number of files in the build context
+     */
+    public int getEntries() {
+        return entries;
+    }
+
+    public void setEntries(final int entries) {
+        this.entries = entries;
+    }
+
+    /**
+     * @return the size of the tar archive of the build context
+     */
+    public long getUncompressedBytes() {
+        return uncompressedBytes;
+    }
+
+    public void setUncompressedBytes(final long uncompressedBytes) {
+        this.uncompressedBytes = uncompressedBytes;
+    }
+
+    /**
+     * @return the number of bytes sent to the docker daemon, the same as the uncompressed size when the context isn't
+     * compressed
+     */
+    public long getCompressedBytes() {
+        return compressedBytes;
+    }
+
+    public void setCompressedBytes(final long compressedBytes) {
+        this.compressedBytes = compressedBytes;
+    }
+
+    /**
+     * @return the largest files in the build context, largest first
+     */
+    public List<ContextFile> getLargestFiles() {
+        return largestFiles;
+    }
+
+    public void setLargestFiles(final List<ContextFile> largestFiles) {
+        this.largestFiles = Collections.unmodifiableList(new ArrayList<>(largestFiles));
+    }
+
+    /**
+     * @return the time spent listing the files of the build context
+     */
+    public long getWalkMillis() {
+        return walkMillis;
+    }
+
+    public void setWalkMillis(final long walkMillis) {
+        this.walkMillis = walkMillis;
+    }
+
+    /**
+     * @return the time spent reading the files and writing (and compressing) the archive
+     */
+    public long getArchiveMillis() {
+        return archiveMillis;
+    }
+
+    public void setArchiveMillis(final long archiveMillis) {
+        this.archiveMillis = archiveMillis;
+    }
+
+    /**
+     * @return the time spent waiting for the archive to be sent to the docker daemon
+     */
+    public long getUploadMillis() {
+        return uploadMillis;
+    }
+
+    public void setUploadMillis(final long uploadMillis) {
+        this.uploadMillis = uploadMillis;
+    }
+
+    /**
+     * @return the time the docker daemon spent building the image after it received the archive
+     */
+    public long getBuildMillis() {
+        return buildMillis;
+    }
+
+    public void setBuildMillis(final long buildMillis) {
+        this.buildMillis = buildMillis;
+    }
+
+    /**
+     * A file in the build context.
+     */
+    public static class ContextFile {
+        private final String name;
+        private final long size;
+
+        public ContextFile(final String name, final long size) {
+            this.name = name;
+            this.size = size;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getSize() {
+            return size;
+        }
+    }
+}
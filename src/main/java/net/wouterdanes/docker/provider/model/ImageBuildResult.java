@@ -0,0 +1,50 @@
+/*
+    Copyright 2014 Wouter Danes
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+*/
+
+package net.wouterdanes.docker.provider.model;
+
+import com.google.common.base.Optional;
+
+/**
+ * This class holds the outcome of building an image: the id of the image and, when the provider measures its builds,
+ * the size of the build context and the timings of the build.
+ */
+public class ImageBuildResult {
+
+    private final String imageId;
+    private final Optional<ImageBuildReport> report;
+
+    public ImageBuildResult(final String imageId) {
+        this(imageId, Optional.<ImageBuildReport>absent());
+    }
+
+    public ImageBuildResult(final String imageId, final Optional<ImageBuildReport> report) {
+        this.imageId = imageId;
+        this.report = report;
+    }
+
+    public String getImageId() {
+        return imageId;
+    }
+
+    /**
+     * @return the report of the build, or absent if the provider doesn't measure builds
+     */
+    public Optional<ImageBuildReport> getReport() {
+        return report;
+    }
+}
@@ -0,0 +1,154 @@
+/*
+    Copyright 2014 Wouter Danes
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+*/
+
+package net.wouterdanes.docker.provider.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * This class is responsible for holding the configuration of a readiness probe of a container. A container is ready
+ * when all its probes succeed.
+ */
+public class ReadinessProbeConfiguration {
+
+    public static final int DEFAULT_ATTEMPT_TIMEOUT = 1000;
+
+    /**
+     * The kind of probe: "tcp", "http", "exec" or the name of a class that implements
+     * {@link net.wouterdanes.docker.provider.readiness.ReadinessProbe}
+     */
+    private String type;
+
+    /**
+     * The exposed port of the container to probe, for example "8080" or "8080/tcp"
+     */
+    private String port;
+
+    /**
+     * The path to request from an HTTP endpoint, default is "/"
+     */
+    private String path;
+
+    /**
+     * The HTTP status that indicates the container is ready, by default any 2xx or 3xx status does
+     */
+    private int status;
+
+    /**
+     * The command to execute in the container, which indicates the container is ready by exiting with 0
+     */
+    private List<String> command;
+
+    /**
+     * The fixed time between two attempts (milliseconds), by default the wait policy of the goal is used
+     */
+    private int interval;
+
+    /**
+     * The maximum time a single attempt may take to connect or respond (milliseconds), default is 1000
+     */
+    private int attemptTimeout;
+
+    /**
+     * The maximum time to wait for this probe to succeed (seconds), default is the startup timeout of the container
+     */
+    private int timeout;
+
+    public ReadinessProbeConfiguration withType(String type) {
+        this.type = type;
+        return this;
+    }
+
+    public ReadinessProbeConfiguration onPort(String port) {
+        this.port = port;
+        return this;
+    }
+
+    public ReadinessProbeConfiguration withPath(String path) {
+        this.path = path;
+        return this;
+    }
+
+    public ReadinessProbeConfiguration expectingStatus(int status) {
+        this.status = status;
+        return this;
+    }
+
+    public ReadinessProbeConfiguration withCommand(String... command) {
+        this.command = new ArrayList<>(command.length);
+        Collections.addAll(this.command, command);
+        return this;
+    }
+
+    public ReadinessProbeConfiguration withInterval(int interval) {
+        this.interval = interval;
+        return this;
+    }
+
+    public ReadinessProbeConfiguration withAttemptTimeout(int attemptTimeout) {
+        this.attemptTimeout = attemptTimeout;
+        return this;
+    }
+
+    public ReadinessProbeConfiguration withTimeout(int timeout) {
+        this.timeout = timeout;
+        return this;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public String getPort() {
+        return port;
+    }
+
+    public String getPath() {
+        return path != null ? path : "/";
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public List<String> getCommand() {
+        return command != null ? Collections.unmodifiableList(command) : Collections.<String>emptyList();
+    }
+
+    /**
+     * @return the fixed time between two attempts in milliseconds, or 0 to use the wait policy of the goal
+     */
+    public int getInterval() {
+        return interval;
+    }
+
+    /**
+     * @return the maximum time a single attempt may take to connect or respond in milliseconds
+     */
+    public int getAttemptTimeout() {
+        return attemptTimeout > 0 ? attemptTimeout : DEFAULT_ATTEMPT_TIMEOUT;
+    }
+
+    /**
+     * @return the maximum time to wait for this probe in seconds, or 0 to use the startup timeout of the container
+     */
+    public int getTimeout() {
+        return timeout;
+    }
+}
@@ -0,0 +1,237 @@
+/*
+    Copyright 2014 Wouter Danes
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+*/
+
+package net.wouterdanes.docker.provider.model;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+import com.google.common.base.Joiner;
+
+/**
+ * This class is responsible for holding the configuration of the plugin's wait loops. A wait loop starts with a short
+ * interval between two attempts, which grows exponentially up to a maximum. Every interval is jittered, so containers
+ * and builds that wait for the same thing don't poll in lockstep.
+ */
+public class WaitPolicy {
+
+    public static final long DEFAULT_INITIAL_INTERVAL = 50;
+    public static final long DEFAULT_MAX_INTERVAL = 1000;
+    public static final double DEFAULT_MULTIPLIER = 2.0;
+    public static final double DEFAULT_JITTER = 0.2;
+
+    /**
+     * The time between the first two attempts (milliseconds), default is 50
+     */
+    private long initialInterval;
+
+    /**
+     * The maximum time between two attempts (milliseconds), default is 1000
+     */
+    private long maxInterval;
+
+    /**
+     * The factor by which the interval grows after every attempt, default is 2.0
+     */
+    private double multiplier;
+
+    /**
+     * The fraction by which every interval is randomly shortened or lengthened, default is 0.2
+     */
+    private double jitter = DEFAULT_JITTER;
+
+    /**
+     * Creates a wait policy that waits the same time between all attempts, without jitter.
+     *
+     * @param interval the time between two attempts (milliseconds)
+     * @return the wait policy
+     */
+    public static WaitPolicy fixed(final long interval) {
+        return new WaitPolicy()
+                .withInitialInterval(interval)
+                .withMaxInterval(interval)
+                .withMultiplier(1.0)
+                .withJitter(0.0);
+    }
+
+    public WaitPolicy withInitialInterval(long initialInterval) {
+        this.initialInterval = initialInterval;
+        return this;
+    }
+
+    public WaitPolicy withMaxInterval(long maxInterval) {
+        this.maxInterval = maxInterval;
+        return this;
+    }
+
+    public WaitPolicy withMultiplier(double multiplier) {
+        this.multiplier = multiplier;
+        return this;
+    }
+
+    public WaitPolicy withJitter(double jitter) {
+        this.jitter = jitter;
+        return this;
+    }
+
+    public long getInitialInterval() {
+        return initialInterval > 0 ? initialInterval : DEFAULT_INITIAL_INTERVAL;
+    }
+
+    public long getMaxInterval() {
+        return Math.max(getInitialInterval(), maxInterval > 0 ? maxInterval : DEFAULT_MAX_INTERVAL);
+    }
+
+    public double getMultiplier() {
+        return multiplier >= 1.0 ? multiplier : DEFAULT_MULTIPLIER;
+    }
+
+    public double getJitter() {
+        return Math.max(0.0, Math.min(1.0, jitter));
+    }
+
+    /**
+     * Starts a wait loop without a deadline.
+     *
+     * @return the backoff of the wait loop
+     */
+    public Backoff start() {
+        return new Backoff(this, Long.MAX_VALUE);
+    }
+
+    /**
+     * Starts a wait loop that gives up after a timeout.
+     *
+     * @param timeoutMillis the maximum time to wait (milliseconds)
+     * @return the backoff of the wait loop
+     */
+    public Backoff start(final long timeoutMillis) {
+        return new Backoff(this, System.currentTimeMillis() + timeoutMillis);
+    }
+
+    /**
+     * The state of a single wait loop. It counts the intervals it waited and keeps the shortest, the longest and the
+     * last few of them, so they can be reported without growing with the length of the wait.
+     */
+    public static final class Backoff {
+        private static final int RECENT_INTERVALS = 5;
+
+        private final WaitPolicy policy;
+        private final long started;
+        private final long deadline;
+        private final Deque<Long> recentIntervals = new ArrayDeque<>(RECENT_INTERVALS);
+        private int waits;
+        private long minInterval = Long.MAX_VALUE;
+        private long maxInterval;
+        private long nextInterval;
+
+        private Backoff(final WaitPolicy policy, final long deadline) {
+            this.policy = policy;
+            this.started = System.currentTimeMillis();
+            this.deadline = deadline;
+            this.nextInterval = policy.getInitialInterval();
+        }
+
+        /**
+         * Waits until the next attempt. The last interval is cut short at the deadline, so the last attempt happens
+         * right before the loop gives up.
+         *
+         * @return true when another attempt should be made, false when the deadline has passed
+         * @throws InterruptedException when interrupted while waiting
+         */
+        public boolean await() throws InterruptedException {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                return false;
+            }
+            long interval = Math.min(jitter(nextInterval), remaining);
+            Thread.sleep(interval);
+            record(interval);
+            nextInterval = Math.min(policy.getMaxInterval(), (long) Math.ceil(nextInterval * policy.getMultiplier()));
+            return true;
+        }
+
+        /**
+         * @return the number of attempts made so far, the first one didn't wait
+         */
+        public int getAttempts() {
+            return waits + 1;
+        }
+
+        /**
+         * @return the last intervals that were waited, oldest first
+         */
+        public List<Long> getRecentIntervals() {
+            return new ArrayList<>(recentIntervals);
+        }
+
+        /**
+         * @return the shortest interval that was waited, or 0 when nothing was waited yet
+         */
+        public long getMinInterval() {
+            return waits == 0 ? 0 : minInterval;
+        }
+
+        /**
+         * @return the longest interval that was waited, or 0 when nothing was waited yet
+         */
+        public long getMaxInterval() {
+            return maxInterval;
+        }
+
+        public long getElapsed() {
+            return System.currentTimeMillis() - started;
+        }
+
+        /**
+         * @return a description of the time spent waiting, for example
+         *         "3 attempts in 163 ms, intervals 48 to 115 ms, last 48, 115 ms"
+         */
+        public String describe() {
+            int attempts = getAttempts();
+            String description = String.format("%s attempt%s in %s ms", attempts, attempts == 1 ? "" : "s",
+                    getElapsed());
+            if (waits == 0) {
+                return description;
+            }
+            return String.format("%s, intervals %s to %s ms, last %s ms", description, getMinInterval(),
+                    getMaxInterval(), Joiner.on(", ").join(recentIntervals));
+        }
+
+        private void record(final long interval) {
+            waits++;
+            minInterval = Math.min(minInterval, interval);
+            maxInterval = Math.max(maxInterval, interval);
+            if (recentIntervals.size() == RECENT_INTERVALS) {
+                recentIntervals.removeFirst();
+            }
+            recentIntervals.addLast(interval);
+        }
+
+        private long jitter(final long interval) {
+            double jitter = policy.getJitter();
+            if (jitter == 0.0) {
+                return interval;
+            }
+            double factor = 1.0 + ThreadLocalRandom.current().nextDouble(-jitter, jitter);
+            return Math.max(1, Math.round(interval * factor));
+        }
+    }
+}
@@ -0,0 +1,36 @@
+/*
+    Copyright 2014 Wouter Danes
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+*/
+
+package net.wouterdanes.docker.provider.readiness;
+
+import net.wouterdanes.docker.provider.model.ReadinessProbeConfiguration;
+
+/**
+ * This class is responsible for checking that a command executed in a container exits with 0, for example a database
+ * client that runs a trivial query.
+ */
+public class ExecReadinessProbe implements ReadinessProbe {
+
+    @Override
+    public boolean isReady(final ReadinessProbeConfiguration configuration, final ProbeContext context) {
+        if (configuration.getCommand().isEmpty()) {
+            throw new IllegalArgumentException("The probe has no command");
+        }
+        return context.getProvider().execInContainer(context.getContainerId(), configuration.getCommand(),
+                context.getHandles()) == 0;
+    }
+}
@@ -0,0 +1,75 @@
+/*
+    Copyright 2014 Wouter Danes
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+*/
+
+package net.wouterdanes.docker.provider.readiness;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+import net.wouterdanes.docker.provider.model.ExposedPort;
+import net.wouterdanes.docker.provider.model.ReadinessProbeConfiguration;
+
+/**
+ * This class is responsible for checking that an HTTP endpoint of a container responds with the expected status: the
+ * configured one, or any 2xx or 3xx status when none is configured.
+ */
+public class HttpReadinessProbe implements ReadinessProbe {
+
+    @Override
+    public boolean isReady(final ReadinessProbeConfiguration configuration, final ProbeContext context) {
+        ExposedPort port = context.getExposedPort(configuration.getPort());
+        String path = configuration.getPath().startsWith("/") ? configuration.getPath() : "/" + configuration.getPath();
+        HttpURLConnection connection = null;
+        Closeable disconnect = null;
+        try {
+            URL url = new URL("http", port.getHost(), port.getExternalPort(), path);
+            connection = (HttpURLConnection) url.openConnection();
+            disconnect = disconnecting(connection);
+            if (!context.getHandles().register(disconnect)) {
+                return false;
+            }
+            connection.setConnectTimeout(configuration.getAttemptTimeout());
+            connection.setReadTimeout(configuration.getAttemptTimeout());
+            connection.setInstanceFollowRedirects(false);
+            int status = connection.getResponseCode();
+            if (configuration.getStatus() != 0) {
+                return status == configuration.getStatus();
+            }
+            return status >= 200 && status < 400;
+        } catch (IOException e) {
+            return false;
+        } finally {
+            if (disconnect != null) {
+                context.getHandles().unregister(disconnect);
+            }
+            if (connection != null) {
+                connection.disconnect();
+            }
+        }
+    }
+
+    private static Closeable disconnecting(final HttpURLConnection connection) {
+        return new Closeable() {
+            @Override
+            public void close() {
+                connection.disconnect();
+            }
+        };
+    }
+}
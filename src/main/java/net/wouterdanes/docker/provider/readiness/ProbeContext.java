@@ -0,0 +1,89 @@
+/*
+    Copyright 2014 Wouter Danes
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+*/
+
+package net.wouterdanes.docker.provider.readiness;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import net.wouterdanes.docker.provider.DockerProvider;
+import net.wouterdanes.docker.provider.model.ExposedPort;
+import net.wouterdanes.docker.remoteapi.util.WaitHandles;
+
+/**
+ * This class holds what a {@link ReadinessProbe} needs to know about the container it probes.
+ */
+public class ProbeContext {
+
+    private final String containerId;
+    private final List<ExposedPort> exposedPorts;
+    private final DockerProvider provider;
+    private final WaitHandles handles;
+
+    public ProbeContext(final String containerId, final List<ExposedPort> exposedPorts, final DockerProvider provider) {
+        this(containerId, exposedPorts, provider, new WaitHandles());
+    }
+
+    public ProbeContext(final String containerId, final List<ExposedPort> exposedPorts, final DockerProvider provider,
+                        final WaitHandles handles) {
+        this.containerId = containerId;
+        this.exposedPorts = Collections.unmodifiableList(new ArrayList<>(exposedPorts));
+        this.provider = provider;
+        this.handles = handles;
+    }
+
+    public String getContainerId() {
+        return containerId;
+    }
+
+    public List<ExposedPort> getExposedPorts() {
+        return exposedPorts;
+    }
+
+    public DockerProvider getProvider() {
+        return provider;
+    }
+
+    /**
+     * @return the handles to register sockets and streams with while a probe blocks on them, they are closed when the
+     *         startup is aborted
+     */
+    public WaitHandles getHandles() {
+        return handles;
+    }
+
+    /**
+     * Finds the host and port on which a port of the container can be reached.
+     * @param port the port of the container, with ("8080/tcp") or without ("8080") protocol
+     * @return the exposed port
+     * @throws IllegalArgumentException when the container doesn't expose the port
+     */
+    public ExposedPort getExposedPort(final String port) {
+        if (port == null) {
+            throw new IllegalArgumentException("The probe has no port");
+        }
+        for (ExposedPort exposedPort : exposedPorts) {
+            String containerPort = exposedPort.getContainerPort();
+            if (containerPort.equals(port) || containerPort.equals(port + "/tcp")) {
+                return exposedPort;
+            }
+        }
+        throw new IllegalArgumentException(String.format("Container '%s' doesn't expose port '%s'", containerId,
+                port));
+    }
+}
@@ -0,0 +1,37 @@
+/*
+    Copyright 2014 Wouter Danes
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+*/
+
+package net.wouterdanes.docker.provider.readiness;
+
+import net.wouterdanes.docker.provider.model.ReadinessProbeConfiguration;
+
+/**
+ * This interface represents a check of whether a started container is ready to be used, for example because it accepts
+ * connections on a port. Probes are created by the {@link ReadinessProbeSupplier} and are called repeatedly, with the
+ * interval of their configuration, until they succeed or their timeout passes.
+ */
+public interface ReadinessProbe {
+
+    /**
+     * Checks once whether a container is ready. A container that can't be reached yet is not ready.
+     * @param configuration the configuration of the probe
+     * @param context the container to probe
+     * @return true if the container is ready
+     * @throws IllegalArgumentException when the probe can never succeed with its configuration
+     */
+    boolean isReady(ReadinessProbeConfiguration configuration, ProbeContext context);
+}
@@ -0,0 +1,75 @@
+/*
+    Copyright 2014 Wouter Danes
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+*/
+
+package net.wouterdanes.docker.provider.readiness;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import com.google.common.base.Supplier;
+
+/**
+ * This class creates a readiness probe based on the passed type when the get() method is called. Besides the built-in
+ * types, a type can be the name of a class on the classpath of the plugin that implements {@link ReadinessProbe}.
+ */
+public class ReadinessProbeSupplier implements Supplier<ReadinessProbe> {
+
+    private final String type;
+    private static volatile Map<String, Class<? extends ReadinessProbe>> probes = new HashMap<>();
+
+    static {
+        probes.put("tcp", TcpReadinessProbe.class);
+        probes.put("http", HttpReadinessProbe.class);
+        probes.put("exec", ExecReadinessProbe.class);
+    }
+
+    public ReadinessProbeSupplier(final String type) {
+        this.type = type;
+    }
+
+    public static void registerProbe(String type, Class<? extends ReadinessProbe> probeClass) {
+        assert probeClass != null;
+        probes.put(type, probeClass);
+    }
+
+    public static void removeProbe(String type) {
+        assert type != null;
+        probes.remove(type);
+    }
+
+    @Override
+    public ReadinessProbe get() {
+        if (type == null) {
+            throw new IllegalStateException("A readiness probe needs a type");
+        }
+        Class<? extends ReadinessProbe> probeClass = probes.containsKey(type) ? probes.get(type) : loadProbeClass();
+        try {
+            return probeClass.newInstance();
+        } catch (InstantiationException | IllegalAccessException e) {
+            throw new IllegalStateException("Can't instantiate readiness probe", e);
+        }
+    }
+
+    private Class<? extends ReadinessProbe> loadProbeClass() {
+        try {
+            return Class.forName(type, true, ReadinessProbeSupplier.class.getClassLoader())
+                    .asSubclass(ReadinessProbe.class);
+        } catch (ClassNotFoundException | ClassCastException e) {
+            throw new IllegalStateException(String.format("No readiness probe known by type '%s'", type), e);
+        }
+    }
+}
@@ -0,0 +1,69 @@
+/*
+    Copyright 2014 Wouter Danes
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+*/
+
+package net.wouterdanes.docker.provider.readiness;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+
+import net.wouterdanes.docker.provider.model.ExposedPort;
+import net.wouterdanes.docker.provider.model.ReadinessProbeConfiguration;
+
+/**
+ * This class is responsible for checking that a port of a container accepts connections. The docker proxy accepts
+ * connections on a published port before the container listens on it and closes them right away, so a connection that
+ * is closed immediately doesn't count.
+ */
+public class TcpReadinessProbe implements ReadinessProbe {
+
+    private static final int CLOSE_CHECK_MILLIS = 100;
+
+    @Override
+    public boolean isReady(final ReadinessProbeConfiguration configuration, final ProbeContext context) {
+        ExposedPort port = context.getExposedPort(configuration.getPort());
+        Socket socket = new Socket();
+        if (!context.getHandles().register(socket)) {
+            return false;
+        }
+        try {
+            socket.connect(new InetSocketAddress(port.getHost(), port.getExternalPort()),
+                    configuration.getAttemptTimeout());
+            socket.setSoTimeout(CLOSE_CHECK_MILLIS);
+            try {
+                return socket.getInputStream().read() != -1;
+            } catch (SocketTimeoutException e) {
+                // the server waits for us to talk first
+                return true;
+            }
+        } catch (IOException e) {
+            return false;
+        } finally {
+            context.getHandles().unregister(socket);
+            closeQuietly(socket);
+        }
+    }
+
+    private static void closeQuietly(final Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException ignored) {
+            // nothing left to do with it
+        }
+    }
+}
@@ -34,12 +34,16 @@ import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.Status.Family;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
 import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.security.KeyStore;
 import java.security.Security;
+import java.util.Iterator;
 
 /**
  * This class is responsible for holding the shared functionality of all Docker remoteapi services.
@@ -93,6 +97,17 @@ public abstract class BaseService {
         }
     }
 
+    /**
+     * Encodes a query parameter value that contains JSON, which would otherwise be read as a URI template.
+     */
+    protected static String encodeQueryValue(String value) {
+        try {
+            return URLEncoder.encode(value, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException("UTF-8 is not supported", e);
+        }
+    }
+
     protected <T> T toObject(String json, Class<T> clazz) {
         try {
             return objectMapper.readValue(json, clazz);
@@ -101,6 +116,14 @@ public abstract class BaseService {
         }
     }
 
+    /**
+     * Reads a stream of concatenated JSON objects, one object at a time. Reading the next object blocks until the
+     * docker daemon sends it.
+     */
+    protected <T> Iterator<T> toObjects(InputStream stream, Class<T> clazz) throws IOException {
+        return objectMapper.reader(clazz).readValues(stream);
+    }
+
     protected static void checkImageTargetingResponse(final String id, final Response.StatusType statusInfo) {
         if (statusInfo.getFamily() == Family.SUCCESSFUL) {
             // no error
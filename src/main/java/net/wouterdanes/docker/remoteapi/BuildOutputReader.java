@@ -0,0 +1,75 @@
+/*
+    Copyright 2014 Wouter Danes
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+*/
+
+package net.wouterdanes.docker.remoteapi;
+
+import java.io.InputStream;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import net.wouterdanes.docker.remoteapi.exception.DockerException;
+
+/**
+ * This class is responsible for reading the output of the "/build" end point and finding the ID of the built image in
+ * it.
+ */
+final class BuildOutputReader extends JsonMessageReader {
+
+    private static final Pattern IMAGE_ID_PATTERN = Pattern.compile("Successfully built ([0-9a-f]+)");
+
+    private String imageId;
+
+    private BuildOutputReader() {
+    }
+
+    /**
+     * Reads the output of a build until the end of the stream or the first error. The stream is not closed.
+     *
+     * @param output the response of the "/build" end point
+     * @return the ID of the built image
+     * @throws DockerException when the daemon reports an error, or the output doesn't contain the ID of an image
+     */
+    static String readImageId(final InputStream output) {
+        BuildOutputReader reader = new BuildOutputReader();
+        reader.read(output, "Can't read build output stream.");
+        if (reader.imageId == null) {
+            throw new DockerException("Can't obtain ID from build output stream.", reader.getTail());
+        }
+        return reader.imageId;
+    }
+
+    @Override
+    protected void readMessage(final JsonNode message) {
+        String stream = message.path("stream").textValue();
+        if (stream == null) {
+            // progress and fields of newer API versions
+            return;
+        }
+        for (String line : stream.split("\n")) {
+            if (line.isEmpty()) {
+                continue;
+            }
+            addToTail(line);
+            Matcher matcher = IMAGE_ID_PATTERN.matcher(line);
+            if (matcher.find()) {
+                imageId = matcher.group(1);
+            }
+        }
+    }
+}
@@ -17,22 +17,35 @@
 
 package net.wouterdanes.docker.remoteapi;
 
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.SocketTimeoutException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.charset.Charset;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Pattern;
 
 import javax.ws.rs.HttpMethod;
+import javax.ws.rs.ProcessingException;
 import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.client.Entity;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 
+import org.glassfish.jersey.client.ClientProperties;
+
 import net.wouterdanes.docker.remoteapi.exception.ContainerNotFoundException;
 import net.wouterdanes.docker.remoteapi.exception.DockerException;
 import net.wouterdanes.docker.remoteapi.model.ContainerCreateRequest;
 import net.wouterdanes.docker.remoteapi.model.ContainerCreateResponse;
 import net.wouterdanes.docker.remoteapi.model.ContainerInspectionResult;
 import net.wouterdanes.docker.remoteapi.model.ContainerStartRequest;
+import net.wouterdanes.docker.remoteapi.util.LogStreamMatcher;
+import net.wouterdanes.docker.remoteapi.util.WaitHandles;
 
 /**
  * This class is responsible for talking to the Docker Remote API "containers" endpoint.<br> See <a
@@ -141,4 +154,71 @@ public class ContainersService extends BaseService {
 
         return logs.toString();
     }
+
+    /**
+     * Follows the logs of a container until a pattern appears in them. The logs are read while the container writes
+     * them and every frame is searched once, instead of downloading all logs again for every attempt.
+     *
+     * @param containerId   the id of the container
+     * @param pattern       the pattern to look for
+     * @param timeoutMillis how long to wait for the pattern
+     * @param handles       the handles to register the log stream with, so the wait can be aborted
+     * @return true if the pattern appeared, false if the container stopped, the timeout passed or the wait was aborted
+     *         first
+     */
+    public boolean waitForLogs(final String containerId, final Pattern pattern, final long timeoutMillis,
+                               final WaitHandles handles) {
+        if (timeoutMillis <= 0) {
+            return false;
+        }
+        // a quiet container blocks the read, so the timeout also applies to every read
+        final Response response = getServiceEndPoint()
+                .path(containerId)
+                .path("logs")
+                .queryParam("follow", 1)
+                .queryParam("stdout", 1)
+                .queryParam("stderr", 1)
+                .request("application/vnd.docker.raw-stream")
+                .property(ClientProperties.READ_TIMEOUT, (int) Math.min(Integer.MAX_VALUE, timeoutMillis))
+                .get();
+        if (response.getStatusInfo().getFamily() != Response.Status.Family.SUCCESSFUL) {
+            Response.StatusType statusInfo = response.getStatusInfo();
+            response.close();
+            checkContainerTargetingResponse(containerId, statusInfo);
+            throw new DockerException(statusInfo.getReasonPhrase());
+        }
+
+        Closeable handle = new Closeable() {
+            @Override
+            public void close() {
+                response.close();
+            }
+        };
+        if (!handles.register(handle)) {
+            return false;
+        }
+        final AtomicBoolean timedOut = new AtomicBoolean();
+        Timer timer = new Timer("docker-logs-" + containerId, true);
+        timer.schedule(new TimerTask() {
+            @Override
+            public void run() {
+                timedOut.set(true);
+                response.close();
+            }
+        }, timeoutMillis);
+        try (InputStream stream = response.readEntity(InputStream.class)) {
+            return new LogStreamMatcher(pattern).find(stream);
+        } catch (IOException | ProcessingException | IllegalStateException e) {
+            // the response is closed when the timeout passes, a quiet stream times out by itself
+            if (timedOut.get() || handles.isClosed() || e instanceof SocketTimeoutException
+                    || e.getCause() instanceof SocketTimeoutException) {
+                return false;
+            }
+            throw new DockerException(String.format("Cannot read the logs of container '%s'", containerId), e);
+        } finally {
+            timer.cancel();
+            handles.unregister(handle);
+            response.close();
+        }
+    }
 }
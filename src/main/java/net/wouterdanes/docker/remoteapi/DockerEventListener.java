@@ -0,0 +1,38 @@
+/*
+    Copyright 2014 Wouter Danes
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+*/
+
+package net.wouterdanes.docker.remoteapi;
+
+import net.wouterdanes.docker.remoteapi.model.DockerEvent;
+
+/**
+ * Receives the events of a docker daemon while they are followed.
+ */
+public interface DockerEventListener {
+
+    /**
+     * Called for every event, in the order the docker daemon sends them
+     *
+     * @param event the event
+     */
+    void onEvent(DockerEvent event);
+
+    /**
+     * Called once when the events are no longer followed, because the stream was closed or broke off
+     */
+    void onClose();
+}
@@ -0,0 +1,96 @@
+/*
+    Copyright 2014 Wouter Danes
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+*/
+
+package net.wouterdanes.docker.remoteapi;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+import net.wouterdanes.docker.remoteapi.exception.DockerException;
+import net.wouterdanes.docker.remoteapi.model.DockerEvent;
+
+/**
+ * This class is responsible for following the events of the docker daemon through the Docker Remote API "events" end
+ * point.<br> See <a href="https://docs.docker.com/reference/api/docker_remote_api_v1.12/#monitor-dockers-events">
+ * https://docs.docker.com/reference/api/docker_remote_api_v1.12/#monitor-dockers-events</a>
+ */
+public class EventsService extends BaseService {
+
+    // the build only needs to know when containers stop or are removed
+    private static final List<String> CONTAINER_EVENTS = Arrays.asList("die", "destroy");
+
+    public EventsService(final String dockerApiRoot) {
+        super(dockerApiRoot, "/events");
+    }
+
+    /**
+     * Follows the events of the docker daemon on a background thread, starting with the events that happen after this
+     * method returns. The listener is called on that thread. The daemon is asked to send only the events of containers
+     * that stop or are removed, daemons that don't support filtering send all events.
+     *
+     * @param listener the listener to pass the events to
+     * @return the subscription, which stops following the events when it's closed
+     */
+    public Closeable follow(final DockerEventListener listener) {
+        Map<String, List<String>> filters = new LinkedHashMap<>();
+        filters.put("type", Arrays.asList("container"));
+        filters.put("event", CONTAINER_EVENTS);
+        final Response response = getServiceEndPoint()
+                .queryParam("filters", encodeQueryValue(toJson(filters)))
+                .request(MediaType.APPLICATION_JSON_TYPE)
+                .get();
+        if (response.getStatusInfo().getFamily() != Response.Status.Family.SUCCESSFUL) {
+            Response.StatusType statusInfo = response.getStatusInfo();
+            response.close();
+            throw new DockerException(statusInfo.getReasonPhrase());
+        }
+
+        Thread reader = new Thread("docker-events") {
+            @Override
+            public void run() {
+                try (InputStream stream = response.readEntity(InputStream.class)) {
+                    Iterator<DockerEvent> events = toObjects(stream, DockerEvent.class);
+                    while (events.hasNext()) {
+                        listener.onEvent(events.next());
+                    }
+                } catch (IOException | RuntimeException e) {
+                    // closing the subscription ends up here as well, the listener hears about both in onClose
+                } finally {
+                    response.close();
+                    listener.onClose();
+                }
+            }
+        };
+        reader.setDaemon(true);
+        reader.start();
+        return new Closeable() {
+            @Override
+            public void close() {
+                response.close();
+            }
+        };
+    }
+}
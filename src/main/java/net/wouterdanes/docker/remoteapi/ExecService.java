@@ -0,0 +1,135 @@
+/*
+    Copyright 2014 Wouter Danes
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+*/
+
+package net.wouterdanes.docker.remoteapi;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.ws.rs.ProcessingException;
+import javax.ws.rs.client.Entity;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import net.wouterdanes.docker.remoteapi.exception.ContainerNotFoundException;
+import net.wouterdanes.docker.remoteapi.exception.DockerException;
+import net.wouterdanes.docker.remoteapi.util.WaitHandles;
+
+/**
+ * This class is responsible for running commands in running containers through the Docker Remote API "exec" end
+ * points.<br> See <a href="https://docs.docker.com/reference/api/docker_remote_api_v1.15/#exec-create">
+ * https://docs.docker.com/reference/api/docker_remote_api_v1.15/#exec-create</a>
+ */
+public class ExecService extends BaseService {
+
+    public ExecService(final String dockerApiRoot) {
+        super(dockerApiRoot, "/");
+    }
+
+    /**
+     * Runs a command in a container and waits for it to finish. The output of the command is discarded.
+     *
+     * @param containerId the id of the container
+     * @param command     the command and its arguments
+     * @param handles     the handles to register the output stream with, so waiting for the command can be aborted
+     * @return the exit code of the command
+     */
+    public int execute(final String containerId, final List<String> command, final WaitHandles handles) {
+        Map<String, Object> createRequest = new LinkedHashMap<>();
+        createRequest.put("AttachStdout", true);
+        createRequest.put("AttachStderr", true);
+        createRequest.put("Cmd", command);
+        Response createResponse = getServiceEndPoint()
+                .path("containers")
+                .path(containerId)
+                .path("exec")
+                .request(MediaType.APPLICATION_JSON_TYPE)
+                .post(Entity.entity(toJson(createRequest), MediaType.APPLICATION_JSON_TYPE));
+        String execId;
+        try {
+            if (createResponse.getStatus() == 404) {
+                throw new ContainerNotFoundException(containerId);
+            }
+            checkSuccessful(createResponse);
+            execId = toObject(createResponse.readEntity(String.class), JsonNode.class).path("Id").asText();
+        } finally {
+            createResponse.close();
+        }
+
+        Map<String, Object> startRequest = new LinkedHashMap<>();
+        startRequest.put("Detach", false);
+        startRequest.put("Tty", false);
+        final Response startResponse = getServiceEndPoint()
+                .path("exec")
+                .path(execId)
+                .path("start")
+                .request()
+                .post(Entity.entity(toJson(startRequest), MediaType.APPLICATION_JSON_TYPE));
+        Closeable handle = new Closeable() {
+            @Override
+            public void close() {
+                startResponse.close();
+            }
+        };
+        try {
+            checkSuccessful(startResponse);
+            if (!handles.register(handle)) {
+                throw new DockerException(String.format("Waiting for a command in container '%s' was aborted",
+                        containerId));
+            }
+            // the stream ends when the command finishes
+            drain(startResponse.readEntity(InputStream.class));
+        } catch (ProcessingException | IllegalStateException e) {
+            // the response was closed because the wait was aborted
+            throw new DockerException("Cannot read the output of the command", e);
+        } finally {
+            handles.unregister(handle);
+            startResponse.close();
+        }
+
+        String json = getServiceEndPoint()
+                .path("exec")
+                .path(execId)
+                .path("json")
+                .request(MediaType.APPLICATION_JSON_TYPE)
+                .get(String.class);
+        return toObject(json, JsonNode.class).path("ExitCode").asInt(-1);
+    }
+
+    private static void checkSuccessful(final Response response) {
+        if (response.getStatusInfo().getFamily() != Response.Status.Family.SUCCESSFUL) {
+            throw new DockerException(response.getStatusInfo().getReasonPhrase());
+        }
+    }
+
+    private static void drain(final InputStream stream) {
+        byte[] buffer = new byte[8192];
+        try (InputStream input = stream) {
+            while (input.read(buffer) != -1) {
+                // discard the output
+            }
+        } catch (IOException e) {
+            throw new DockerException("Cannot read the output of the command", e);
+        }
+    }
+}
@@ -17,14 +17,24 @@
 
 package net.wouterdanes.docker.remoteapi;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
 import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.client.WebTarget;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.google.common.base.Optional;
 
+import net.wouterdanes.docker.remoteapi.exception.DockerException;
 import net.wouterdanes.docker.remoteapi.model.ImageDescriptor;
+import net.wouterdanes.docker.remoteapi.model.ImageInventory;
 
 /**
  * This class is responsible for talking to the Docker Remote API "images" endpoint.<br> See <a
@@ -37,7 +47,14 @@ public class ImagesService extends BaseService {
         super(dockerApiRoot, "/images");
     }
 
-    public String pullImage(final String image) {
+    /**
+     * Pulls an image and reads the progress of the pull while the daemon sends it.
+     *
+     * @param image    the name and optional tag of the image
+     * @param listener the listener to report the progress to
+     * @throws DockerException when the daemon reports an error during the pull
+     */
+    public void pullImage(final String image, final ProgressListener listener) {
         ImageDescriptor descriptor = new ImageDescriptor(image);
 
         WebTarget target = getServiceEndPoint()
@@ -49,24 +66,47 @@ public class ImagesService extends BaseService {
             target = target.queryParam("tag", descriptor.getTag().get());
         }
 
-        return target.request()
+        InputStream progress = target.request()
                 .accept(MediaType.APPLICATION_JSON_TYPE)
-                .post(null, String.class);
+                .post(null, InputStream.class);
+        readProgress(progress, image, listener);
     }
 
-    public String pushImage(String nameAndTag) {
+    /**
+     * Pushes an image and reads the progress of the push while the daemon sends it.
+     *
+     * @param nameAndTag the name and optional tag of the image
+     * @param listener   the listener to report the progress to
+     * @throws DockerException when the daemon reports an error during the push
+     */
+    public void pushImage(String nameAndTag, final ProgressListener listener) {
+        InputStream progress;
         try {
             WebTarget target = createPushRequestFromTag(nameAndTag);
 
-            return target.request()
+            progress = target.request()
                     .header(REGISTRY_AUTH_HEADER, getRegistryAuthHeaderValue())
                     .accept(MediaType.APPLICATION_JSON_TYPE)
-                    .post(null, String.class);
+                    .post(null, InputStream.class);
 
         } catch (WebApplicationException e) {
             throw makeImageTargetingException(nameAndTag, e);
 
         }
+        readProgress(progress, nameAndTag, listener);
+    }
+
+    private static void readProgress(final InputStream progress, final String image,
+                                     final ProgressListener listener) {
+        try {
+            ProgressReader.read(progress, image, listener);
+        } finally {
+            try {
+                progress.close();
+            } catch (IOException ignored) {
+                // the result of the transfer is already known
+            }
+        }
     }
 
     private WebTarget createPushRequestFromTag(final String nameAndTag) {
@@ -106,6 +146,68 @@ public class ImagesService extends BaseService {
         checkImageTargetingResponse(imageId, statusInfo);
     }
 
+    public boolean hasImage(final String image) {
+        Response response = getServiceEndPoint()
+                .path(image)
+                .path("json")
+                .request(MediaType.APPLICATION_JSON_TYPE)
+                .get();
+
+        Response.StatusType statusInfo = response.getStatusInfo();
+
+        response.close();
+
+        if (statusInfo.getStatusCode() == 404) {
+            return false;
+        }
+        checkImageTargetingResponse(image, statusInfo);
+        return true;
+    }
+
+    /**
+     * Lists the images that have a label with a specific value, newest first.
+     * @param label the name of the label
+     * @param value the value of the label
+     * @return the Ids of the matching images
+     */
+    public List<String> findImagesByLabel(final String label, final String value) {
+        Map<String, List<String>> filters = Collections.singletonMap("label",
+                Collections.singletonList(label + "=" + value));
+        String json = getServiceEndPoint()
+                .path("json")
+                .queryParam("filters", encodeQueryValue(toJson(filters)))
+                .request(MediaType.APPLICATION_JSON_TYPE)
+                .get(String.class);
+
+        List<String> imageIds = new ArrayList<>();
+        for (JsonNode image : toObject(json, JsonNode.class)) {
+            imageIds.add(ImageInventory.normalizeId(image.path("Id").asText()));
+        }
+        return imageIds;
+    }
+
+    /**
+     * Lists the names and ids of all images on the docker daemon with a single call.
+     *
+     * @return the images of the docker daemon
+     */
+    public ImageInventory listImages() {
+        String json = getServiceEndPoint()
+                .path("json")
+                .request(MediaType.APPLICATION_JSON_TYPE)
+                .get(String.class);
+
+        List<String> repoTags = new ArrayList<>();
+        List<String> imageIds = new ArrayList<>();
+        for (JsonNode image : toObject(json, JsonNode.class)) {
+            imageIds.add(image.path("Id").asText());
+            for (JsonNode repoTag : image.path("RepoTags")) {
+                repoTags.add(repoTag.asText());
+            }
+        }
+        return new ImageInventory(repoTags, imageIds);
+    }
+
     public void deleteImage(final String imageId) {
         try {
             getServiceEndPoint()
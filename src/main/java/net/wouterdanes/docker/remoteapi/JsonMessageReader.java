@@ -0,0 +1,94 @@
+/*
+    Copyright 2014 Wouter Danes
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+*/
+
+package net.wouterdanes.docker.remoteapi;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.MappingJsonFactory;
+
+import net.wouterdanes.docker.remoteapi.exception.DockerException;
+
+/**
+ * This class is responsible for reading the stream of JSON messages that the "/build", "/images/create" and
+ * "/images/{name}/push" end points send. The messages are parsed one at a time while they arrive, so memory use
+ * doesn't grow with the length of the stream. An error message stops the reading immediately, because the daemon
+ * reports a failure that happens after the response started with a successful HTTP status. The last few lines of
+ * output are kept, to add to the exception.
+ */
+abstract class JsonMessageReader {
+
+    private static final JsonFactory JSON_FACTORY = new MappingJsonFactory();
+
+    // the number of lines of output that is added to the exception of a failure
+    private static final int TAIL_LINES = 20;
+
+    private final Deque<String> tail = new ArrayDeque<>(TAIL_LINES);
+
+    /**
+     * Reads the messages until the end of the stream or the first error. The stream is not closed.
+     *
+     * @param output            the response of the end point
+     * @param unreadableMessage the message of the exception when the stream can't be read
+     * @throws DockerException when the daemon reports an error or the stream can't be read
+     */
+    protected final void read(final InputStream output, final String unreadableMessage) {
+        try {
+            JsonParser parser = JSON_FACTORY.createParser(output);
+            parser.disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                JsonNode message = parser.readValueAsTree();
+                String error = message.path("error").textValue();
+                if (error != null) {
+                    throw new DockerException(error.trim(), getTail());
+                }
+                readMessage(message);
+            }
+        } catch (IOException e) {
+            throw new DockerException(unreadableMessage, e);
+        }
+    }
+
+    /**
+     * Handles a message that is not an error.
+     *
+     * @param message the message
+     */
+    protected abstract void readMessage(JsonNode message);
+
+    protected final void addToTail(final String line) {
+        if (tail.size() == TAIL_LINES) {
+            tail.removeFirst();
+        }
+        tail.addLast(line);
+    }
+
+    protected final String getTail() {
+        StringBuilder builder = new StringBuilder();
+        for (String line : tail) {
+            builder.append(line).append('\n');
+        }
+        return builder.toString();
+    }
+}
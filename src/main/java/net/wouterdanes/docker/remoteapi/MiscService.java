@@ -17,15 +17,20 @@
 
 package net.wouterdanes.docker.remoteapi;
 
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
 
 import javax.ws.rs.client.Entity;
+import javax.ws.rs.client.WebTarget;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.StreamingOutput;
 
 import com.google.common.base.Optional;
 
-import net.wouterdanes.docker.remoteapi.exception.DockerException;
+import org.glassfish.jersey.client.ClientProperties;
+import org.glassfish.jersey.client.RequestEntityProcessing;
+
 import net.wouterdanes.docker.remoteapi.model.DockerVersionInfo;
 
 /**
@@ -33,9 +38,6 @@ import net.wouterdanes.docker.remoteapi.model.DockerVersionInfo;
  */
 public class MiscService extends BaseService {
 
-    private static final Pattern BUILD_IMAGE_ID_EXTRACTION_PATTERN =
-            Pattern.compile(".*Successfully built ([0-9a-f]+).*", Pattern.DOTALL);
-
     public MiscService(final String dockerApiRoot) {
         super(dockerApiRoot, "/");
     }
@@ -55,25 +57,41 @@ public class MiscService extends BaseService {
     }
 
     /**
-     * Builds an image based on the passed tar archive. Optionally names &amp; tags the image
-     * @param tarArchive the tar archive to use as a source for the image
+     * Builds an image based on the passed tar archive. Optionally names &amp; tags the image. The archive is streamed
+     * to the daemon using chunked transfer encoding, so it is never buffered in memory as a whole. The build output
+     * is read while the daemon writes it and the build fails as soon as the daemon reports an error.
+     * @param tarArchive the tar archive to use as a source for the image, written while the request is sent
      * @param name the name and optional tag of the image.
+     * @param labels the labels to add to the image, by name
      * @return the ID of the created image
      */
-    public String buildImage(byte[] tarArchive, Optional<String> name) {
-        String jsonStream = getServiceEndPoint()
+    public String buildImage(StreamingOutput tarArchive, Optional<String> name, Map<String, String> labels) {
+        WebTarget target = getServiceEndPoint()
                 .path("/build")
                 .queryParam("q", true)
                 .queryParam("t", name.orNull())
-                .queryParam("forcerm")
+                .queryParam("forcerm");
+        if (!labels.isEmpty()) {
+            target = target.queryParam("labels", encodeQueryValue(toJson(labels)));
+        }
+        InputStream jsonStream = target
                 .request(MediaType.APPLICATION_JSON_TYPE)
-                .post(Entity.entity(tarArchive, "application/tar"), String.class);
+                .property(ClientProperties.REQUEST_ENTITY_PROCESSING, RequestEntityProcessing.CHUNKED)
+                .post(Entity.entity(tarArchive, "application/tar"), InputStream.class);
+
+        try {
+            return BuildOutputReader.readImageId(jsonStream);
+        } finally {
+            closeQuietly(jsonStream);
+        }
+    }
 
-        Matcher matcher = BUILD_IMAGE_ID_EXTRACTION_PATTERN.matcher(jsonStream);
-        if (!matcher.matches()) {
-            throw new DockerException("Can't obtain ID from build output stream.", jsonStream);
+    private static void closeQuietly(final InputStream stream) {
+        try {
+            stream.close();
+        } catch (IOException ignored) {
+            // the result of the build is already known
         }
-        return matcher.group(1);
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,45 @@
+/*
+    Copyright 2014 Wouter Danes
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+*/
+
+package net.wouterdanes.docker.remoteapi;
+
+/**
+ * Receives the progress of an image that is pulled or pushed.
+ */
+public interface ProgressListener {
+
+    /**
+     * A listener that ignores the progress.
+     */
+    ProgressListener IGNORE = new ProgressListener() {
+        @Override
+        public void onProgress(final String image, final long transferredBytes, final long totalBytes,
+                               final long bytesPerSecond) {
+            // NOOP
+        }
+    };
+
+    /**
+     * Called every now and then while the layers of the image are transferred, and once at the end
+     *
+     * @param image            the name of the image
+     * @param transferredBytes the number of bytes of all layers that are transferred so far
+     * @param totalBytes       the size of all layers, as far as the docker daemon knows it yet
+     * @param bytesPerSecond   the average throughput so far
+     */
+    void onProgress(String image, long transferredBytes, long totalBytes, long bytesPerSecond);
+}
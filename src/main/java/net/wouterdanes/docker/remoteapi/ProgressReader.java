@@ -0,0 +1,126 @@
+/*
+    Copyright 2014 Wouter Danes
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+*/
+
+package net.wouterdanes.docker.remoteapi;
+
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import net.wouterdanes.docker.remoteapi.exception.DockerException;
+
+/**
+ * This class is responsible for reading the progress of the "/images/create" (pull) and "/images/{name}/push" end
+ * points. The bytes transferred are counted per layer and reported to a listener at most once per report interval.
+ */
+final class ProgressReader extends JsonMessageReader {
+
+    static final long REPORT_INTERVAL_MILLIS = 5000;
+
+    private final String image;
+    private final ProgressListener listener;
+    private final long reportIntervalMillis;
+    private final Map<String, Long> transferredBytes = new HashMap<>();
+    private final Map<String, Long> totalBytes = new HashMap<>();
+    private final long started = System.currentTimeMillis();
+    private long lastReport = started;
+    private boolean reportPending;
+
+    private ProgressReader(final String image, final ProgressListener listener, final long reportIntervalMillis) {
+        this.image = image;
+        this.listener = listener;
+        this.reportIntervalMillis = reportIntervalMillis;
+    }
+
+    /**
+     * Reads the progress of a pull or push until the end of the stream or the first error. The stream is not closed.
+     *
+     * @param output   the response of the end point
+     * @param image    the name of the image, to pass to the listener
+     * @param listener the listener to report the progress to
+     * @throws DockerException when the daemon reports an error
+     */
+    static void read(final InputStream output, final String image, final ProgressListener listener) {
+        read(output, image, listener, REPORT_INTERVAL_MILLIS);
+    }
+
+    static void read(final InputStream output, final String image, final ProgressListener listener,
+                     final long reportIntervalMillis) {
+        ProgressReader reader = new ProgressReader(image, listener, reportIntervalMillis);
+        reader.read(output, String.format("Can't read the progress of image '%s'.", image));
+        if (reader.reportPending) {
+            reader.report();
+        }
+    }
+
+    @Override
+    protected void readMessage(final JsonNode message) {
+        // errorDetail, the rendered progress bar and fields of newer API versions are ignored
+        String id = message.path("id").textValue();
+        String status = message.path("status").textValue();
+        long current = message.path("progressDetail").path("current").asLong(-1);
+        long total = message.path("progressDetail").path("total").asLong(-1);
+        if (status != null) {
+            addToTail(id != null ? id + ": " + status : status);
+        }
+        if (id == null) {
+            return;
+        }
+        if (isTransferring(status) && current >= 0) {
+            transferredBytes.put(id, current);
+            if (total > 0) {
+                totalBytes.put(id, total);
+            }
+        } else if (isTransferred(status) && totalBytes.containsKey(id)) {
+            transferredBytes.put(id, totalBytes.get(id));
+        } else {
+            // extracting a layer also reports progress, but no bytes are transferred
+            return;
+        }
+        reportPending = true;
+        if (System.currentTimeMillis() - lastReport >= reportIntervalMillis) {
+            report();
+        }
+    }
+
+    private static boolean isTransferring(final String status) {
+        return "Downloading".equals(status) || "Pushing".equals(status);
+    }
+
+    private static boolean isTransferred(final String status) {
+        return "Download complete".equals(status) || "Pushed".equals(status);
+    }
+
+    private void report() {
+        long now = System.currentTimeMillis();
+        long transferred = sum(transferredBytes);
+        long elapsedMillis = Math.max(1, now - started);
+        listener.onProgress(image, transferred, sum(totalBytes), transferred * 1000 / elapsedMillis);
+        lastReport = now;
+        reportPending = false;
+    }
+
+    private static long sum(final Map<String, Long> bytesPerLayer) {
+        long sum = 0;
+        for (long bytes : bytesPerLayer.values()) {
+            sum += bytes;
+        }
+        return sum;
+    }
+}
@@ -47,6 +47,9 @@ public class ContainerInspectionResult {
     @JsonProperty("NetworkSettings")
     private NetworkSettings networkSettings;
 
+    @JsonProperty("State")
+    private State state;
+
     public String getId() {
         return id;
     }
@@ -75,6 +78,31 @@ public class ContainerInspectionResult {
         return networkSettings;
     }
 
+    public State getState() {
+        return state;
+    }
+
+    public static class State {
+        @JsonProperty("Running")
+        private boolean running;
+        @JsonProperty("ExitCode")
+        private int exitCode;
+        @JsonProperty("Error")
+        private String error;
+
+        public boolean isRunning() {
+            return running;
+        }
+
+        public int getExitCode() {
+            return exitCode;
+        }
+
+        public String getError() {
+            return error;
+        }
+    }
+
     public static class Config {
         @JsonProperty("Hostname")
         private String hostname;
@@ -0,0 +1,70 @@
+/*
+    Copyright 2014 Wouter Danes
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+*/
+
+package net.wouterdanes.docker.remoteapi.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * See <a href="https://docs.docker.com/reference/api/docker_remote_api_v1.12/#monitor-dockers-events">
+ * https://docs.docker.com/reference/api/docker_remote_api_v1.12/#monitor-dockers-events</a>
+ */
+@SuppressWarnings("unused")
+public class DockerEvent {
+
+    @JsonProperty("status")
+    private String status;
+    @JsonProperty("id")
+    private String id;
+    @JsonProperty("from")
+    private String from;
+    @JsonProperty("time")
+    private long time;
+
+    public DockerEvent() {
+    }
+
+    public DockerEvent(final String status, final String id) {
+        this.status = status;
+        this.id = id;
+    }
+
+    /**
+     * @return what happened, for example "start", "die" or "destroy"
+     */
+    public String getStatus() {
+        return status;
+    }
+
+    /**
+     * @return the id of the container or image the event is about
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * @return the image of the container the event is about
+     */
+    public String getFrom() {
+        return from;
+    }
+
+    public long getTime() {
+        return time;
+    }
+}
@@ -0,0 +1,76 @@
+/*
+    Copyright 2014 Wouter Danes
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+*/
+
+package net.wouterdanes.docker.remoteapi.model;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Holds the names and ids of all images a docker daemon has, so many images can be looked up with a single call.
+ */
+public class ImageInventory {
+
+    private static final Pattern ID_PREFIX = Pattern.compile("^[0-9a-f]{12,64}$");
+    private static final String DIGEST_PREFIX = "sha256:";
+
+    private final Set<String> repoTags;
+    private final Set<String> ids = new HashSet<>();
+
+    /**
+     * @param repoTags the names and tags of the images, for example "nginx:1.7"
+     * @param ids      the ids of the images
+     */
+    public ImageInventory(final Collection<String> repoTags, final Collection<String> ids) {
+        this.repoTags = new HashSet<>(repoTags);
+        for (String id : ids) {
+            this.ids.add(normalizeId(id));
+        }
+    }
+
+    /**
+     * Tells whether the docker daemon has an image. An image without a tag refers to its "latest" tag, like it does
+     * for the docker daemon.
+     *
+     * @param image the id, or the name and optional tag, of the image
+     * @return true if the image is in the inventory
+     */
+    public boolean contains(final String image) {
+        String reference = normalizeId(image);
+        if (ID_PREFIX.matcher(reference).matches()) {
+            for (String id : ids) {
+                if (id.startsWith(reference)) {
+                    return true;
+                }
+            }
+        }
+        ImageDescriptor descriptor = new ImageDescriptor(image);
+        return repoTags.contains(descriptor.getTag().isPresent() ? image : image + ":latest");
+    }
+
+    /**
+     * Newer docker daemons prefix image ids with the name of the hash function, older ones don't.
+     *
+     * @param id the id of an image, as returned by the docker daemon
+     * @return the id without the "sha256:" prefix
+     */
+    public static String normalizeId(final String id) {
+        return id.startsWith(DIGEST_PREFIX) ? id.substring(DIGEST_PREFIX.length()) : id;
+    }
+}
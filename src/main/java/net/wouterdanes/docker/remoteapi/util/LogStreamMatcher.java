@@ -0,0 +1,120 @@
+/*
+    Copyright 2014 Wouter Danes
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+*/
+
+package net.wouterdanes.docker.remoteapi.util;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.util.regex.Pattern;
+
+/**
+ * This class is responsible for finding a pattern in the logs of a container while they are streamed. Every part of
+ * the logs is decoded and searched once, together with the unfinished line at the end of the logs before it, so a match
+ * can span the border between two frames. Lines that were finished are not searched again, and at most the overlap of
+ * an unfinished line is kept, so matching takes linear time and constant memory. A match that spans a line break is
+ * only found when both lines are in the same frame, and a match that is longer than the overlap is not found.
+ */
+public class LogStreamMatcher {
+
+    public static final int DEFAULT_OVERLAP = 8192;
+
+    private static final int HEADER_LENGTH = 8;
+    private static final int MAX_CHUNK_LENGTH = 64 * 1024;
+
+    private final Pattern pattern;
+    private final int overlap;
+    private final CharsetDecoder decoder = Charset.forName("UTF-8").newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    // the end of the last line when the logs searched so far didn't end with a line break
+    private final StringBuilder unfinishedLine = new StringBuilder();
+    // the start of a character that was split over two frames
+    private ByteBuffer leftover = ByteBuffer.allocate(0);
+
+    public LogStreamMatcher(final Pattern pattern) {
+        this(pattern, DEFAULT_OVERLAP);
+    }
+
+    public LogStreamMatcher(final Pattern pattern, final int overlap) {
+        this.pattern = pattern;
+        this.overlap = overlap;
+    }
+
+    /**
+     * Searches the next part of the logs.
+     *
+     * @param content the UTF-8 encoded logs following the parts that were searched before
+     * @return true if the pattern is found in the logs searched so far
+     */
+    public boolean matches(final ByteBuffer content) {
+        ByteBuffer input = content;
+        if (leftover.hasRemaining()) {
+            input = ByteBuffer.allocate(leftover.remaining() + content.remaining());
+            input.put(leftover).put(content);
+            input.flip();
+        }
+        CharBuffer chars = CharBuffer.allocate(input.remaining());
+        decoder.decode(input, chars, false);
+        chars.flip();
+        leftover = ByteBuffer.allocate(input.remaining());
+        leftover.put(input);
+        leftover.flip();
+
+        unfinishedLine.append(chars);
+        boolean found = pattern.matcher(unfinishedLine).find();
+        int lineEnd = unfinishedLine.lastIndexOf("\n") + 1;
+        unfinishedLine.delete(0, Math.max(lineEnd, unfinishedLine.length() - overlap));
+        return found;
+    }
+
+    /**
+     * Reads a multiplexed log stream of the docker remote API until the pattern is found. The stream consists of frames
+     * that start with an 8 byte header, of which the last 4 bytes hold the length of the frame.
+     *
+     * @param stream the stream to read
+     * @return true if the pattern is found, false if the stream ended first
+     * @throws IOException when the stream can't be read
+     */
+    public boolean find(final InputStream stream) throws IOException {
+        DataInputStream input = new DataInputStream(stream);
+        byte[] header = new byte[HEADER_LENGTH];
+        byte[] chunk = new byte[MAX_CHUNK_LENGTH];
+        while (true) {
+            try {
+                input.readFully(header);
+            } catch (EOFException e) {
+                return false;
+            }
+            int remaining = ByteBuffer.wrap(header, 4, 4).getInt();
+            while (remaining > 0) {
+                int length = Math.min(remaining, chunk.length);
+                input.readFully(chunk, 0, length);
+                remaining -= length;
+                if (matches(ByteBuffer.wrap(chunk, 0, length))) {
+                    return true;
+                }
+            }
+        }
+    }
+}
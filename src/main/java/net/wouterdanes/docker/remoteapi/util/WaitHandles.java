@@ -0,0 +1,95 @@
+/*
+    Copyright 2014 Wouter Danes
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+*/
+
+package net.wouterdanes.docker.remoteapi.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * This class is responsible for aborting waits that block on the network, like following the logs of a container or
+ * probing one of its ports. A wait registers what it blocks on (a response, a socket or a stream) while it blocks.
+ * Closing the handles closes everything that is registered and everything that is registered afterwards, so blocked
+ * reads end right away instead of when their timeout passes.
+ */
+public class WaitHandles implements Closeable {
+
+    private final Set<Closeable> handles = new HashSet<>();
+    private boolean closed;
+
+    /**
+     * Registers something a wait blocks on. It is closed right away when the handles are already closed.
+     *
+     * @param handle the response, socket or stream to close when the wait is aborted
+     * @return false if the handles are closed, the wait should give up then
+     */
+    public boolean register(final Closeable handle) {
+        synchronized (handles) {
+            if (!closed) {
+                handles.add(handle);
+                return true;
+            }
+        }
+        closeQuietly(handle);
+        return false;
+    }
+
+    /**
+     * Forgets a handle when the wait that registered it is done.
+     *
+     * @param handle a handle that was registered before
+     */
+    public void unregister(final Closeable handle) {
+        synchronized (handles) {
+            handles.remove(handle);
+        }
+    }
+
+    /**
+     * @return true if the waits were aborted
+     */
+    public boolean isClosed() {
+        synchronized (handles) {
+            return closed;
+        }
+    }
+
+    @Override
+    public void close() {
+        List<Closeable> registered;
+        synchronized (handles) {
+            closed = true;
+            registered = new ArrayList<>(handles);
+            handles.clear();
+        }
+        for (Closeable handle : registered) {
+            closeQuietly(handle);
+        }
+    }
+
+    private static void closeQuietly(final Closeable handle) {
+        try {
+            handle.close();
+        } catch (IOException | RuntimeException ignored) {
+            // the wait ends either way
+        }
+    }
+}
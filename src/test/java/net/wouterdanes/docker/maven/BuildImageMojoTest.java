@@ -17,19 +17,35 @@
 
 package net.wouterdanes.docker.maven;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Optional;
 import net.wouterdanes.docker.provider.AbstractFakeDockerProvider;
 import net.wouterdanes.docker.provider.DockerExceptionThrowingDockerProvider;
 import net.wouterdanes.docker.provider.DockerProviderSupplier;
+import net.wouterdanes.docker.provider.context.BuildContext;
 import net.wouterdanes.docker.provider.model.ImageBuildConfiguration;
+import net.wouterdanes.docker.provider.model.ImageBuildOptions;
+import net.wouterdanes.docker.provider.model.ImageBuildReport;
+import net.wouterdanes.docker.provider.model.ImageBuildResult;
 import net.wouterdanes.docker.provider.model.PushableImage;
+import net.wouterdanes.docker.remoteapi.exception.DockerException;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
 import org.junit.After;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.Mockito;
 
+import java.io.File;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
@@ -39,6 +55,8 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
 
 public class BuildImageMojoTest {
 
@@ -49,6 +67,9 @@ public class BuildImageMojoTest {
     private static final String REGISTRY = UUID.randomUUID().toString();
     private static final String REGISTRYANDNAMEANDTAG = REGISTRY + "/" + NAMEANDTAG;
 
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
     private BuildImageMojo mojo = new BuildImageMojo();
 
     private ImageBuildConfiguration mockImage;
@@ -58,7 +79,10 @@ public class BuildImageMojoTest {
         mojo.setPluginContext(new HashMap());
 
         FakeDockerProvider.instance = Mockito.mock(FakeDockerProvider.class);
-        Mockito.when(FakeDockerProvider.instance.buildImage(any(ImageBuildConfiguration.class))).thenReturn(IMAGEID);
+        Mockito.when(FakeDockerProvider.instance.buildImage(any(ImageBuildConfiguration.class),
+                any(ImageBuildOptions.class))).thenReturn(new ImageBuildResult(IMAGEID));
+        Mockito.when(FakeDockerProvider.instance.findImageByLabel(anyString(), anyString()))
+                .thenReturn(Optional.<String>absent());
 
         DockerProviderSupplier.registerProvider(FAKE_PROVIDER_KEY, FakeDockerProvider.class);
         DockerExceptionThrowingDockerProvider.class.newInstance();
@@ -82,7 +106,8 @@ public class BuildImageMojoTest {
     public void testThatTheMojoBuildsAtLeastOneImageWhenAllImagesAreValid() throws Exception {
         executeMojo(FAKE_PROVIDER_KEY);
 
-        Mockito.verify(FakeDockerProvider.instance, Mockito.atLeastOnce()).buildImage(any(ImageBuildConfiguration.class));
+        Mockito.verify(FakeDockerProvider.instance, Mockito.atLeastOnce()).buildImage(any(ImageBuildConfiguration.class),
+                any(ImageBuildOptions.class));
 
         assertTrue(mojo.getPluginErrors().isEmpty());
         assertImageNotEnqueuedForPush();
@@ -140,6 +165,184 @@ public class BuildImageMojoTest {
         assertImageEnqueuedForPush(null);
     }
 
+    @Test
+    public void testThatAnImageIsBuiltAfterTheImageItIsBasedOn() throws Exception {
+        ImageBuildConfiguration app = createImage("app", null, "FROM company/base:1.0");
+        ImageBuildConfiguration base = createImage("base", "company/base:1.0", "FROM busybox");
+        ImageBuildConfiguration tool = createImage("tool", null, "FROM base\nRUN true");
+        mojo.setImages(Arrays.asList(app, tool, base));
+        mojo.setBuildConcurrency(3);
+
+        executeMojo(FAKE_PROVIDER_KEY);
+
+        InOrder appOrder = Mockito.inOrder(FakeDockerProvider.instance);
+        appOrder.verify(FakeDockerProvider.instance).buildImage(eq(base), any(ImageBuildOptions.class));
+        appOrder.verify(FakeDockerProvider.instance).buildImage(eq(app), any(ImageBuildOptions.class));
+        InOrder toolOrder = Mockito.inOrder(FakeDockerProvider.instance);
+        toolOrder.verify(FakeDockerProvider.instance).buildImage(eq(base), any(ImageBuildOptions.class));
+        toolOrder.verify(FakeDockerProvider.instance).buildImage(eq(tool), any(ImageBuildOptions.class));
+        assertTrue(mojo.getPluginErrors().isEmpty());
+    }
+
+    @Test
+    public void testThatAnImageIsNotBuiltWhenTheImageItIsBasedOnFails() throws Exception {
+        ImageBuildConfiguration base = createImage("base", "company/base", "FROM busybox");
+        ImageBuildConfiguration app = createImage("app", null, "FROM company/base:latest");
+        ImageBuildConfiguration other = createImage("other", null, "FROM busybox");
+        Mockito.when(FakeDockerProvider.instance.buildImage(eq(base), any(ImageBuildOptions.class)))
+                .thenThrow(new DockerException("boom"));
+        mojo.setImages(Arrays.asList(base, app, other));
+        mojo.setBuildConcurrency(2);
+
+        executeMojo(FAKE_PROVIDER_KEY);
+
+        Mockito.verify(FakeDockerProvider.instance, Mockito.never()).buildImage(eq(app), any(ImageBuildOptions.class));
+        Mockito.verify(FakeDockerProvider.instance).buildImage(eq(other), any(ImageBuildOptions.class));
+        assertEquals(2, mojo.getPluginErrors().size());
+    }
+
+    @Test(expected = MojoExecutionException.class)
+    public void testThatTheMojoThrowsAnExceptionWhenImagesDependOnEachOther() throws Exception {
+        ImageBuildConfiguration first = createImage("first", null, "FROM second");
+        ImageBuildConfiguration second = createImage("second", null, "FROM first");
+        mojo.setImages(Arrays.asList(first, second));
+
+        executeMojo(FAKE_PROVIDER_KEY);
+    }
+
+    @Test
+    public void testThatAnUnchangedImageIsNotRebuiltWhenTheBuildCacheIsEnabled() throws Exception {
+        ImageBuildConfiguration image = createImage("cached", NAMEANDTAG, "FROM busybox");
+        mojo.setImages(Collections.singletonList(image));
+        mojo.setBuildCache(true);
+        mojo.setBuildCacheFile(new File(folder.getRoot(), "cache/build-cache.properties"));
+        Mockito.when(FakeDockerProvider.instance.hasImage(IMAGEID)).thenReturn(true);
+
+        executeMojo(FAKE_PROVIDER_KEY);
+        executeMojo(FAKE_PROVIDER_KEY);
+
+        Mockito.verify(FakeDockerProvider.instance, Mockito.times(1))
+                .buildImage(eq(image), any(ImageBuildOptions.class));
+        Mockito.verify(FakeDockerProvider.instance).tagImage(IMAGEID, NAMEANDTAG);
+        assertTrue(mojo.getPluginErrors().isEmpty());
+    }
+
+    @Test
+    public void testThatACachedImageIsRebuiltWhenTheImageItIsBasedOnWasRebuilt() throws Exception {
+        ImageBuildConfiguration base = createImage("base", "company/base", "FROM busybox");
+        ImageBuildConfiguration app = createImage("app", null, "FROM company/base");
+        mojo.setImages(Arrays.asList(base, app));
+        mojo.setBuildCache(true);
+        mojo.setBuildCacheFile(new File(folder.getRoot(), "build-cache.properties"));
+        Mockito.when(FakeDockerProvider.instance.buildImage(eq(base), any(ImageBuildOptions.class)))
+                .thenReturn(new ImageBuildResult("base-1"), new ImageBuildResult("base-2"));
+        Mockito.when(FakeDockerProvider.instance.hasImage("base-1")).thenReturn(false);
+        Mockito.when(FakeDockerProvider.instance.hasImage(IMAGEID)).thenReturn(true);
+
+        executeMojo(FAKE_PROVIDER_KEY);
+        executeMojo(FAKE_PROVIDER_KEY);
+
+        Mockito.verify(FakeDockerProvider.instance, Mockito.times(2)).buildImage(eq(base), any(ImageBuildOptions.class));
+        Mockito.verify(FakeDockerProvider.instance, Mockito.times(2)).buildImage(eq(app), any(ImageBuildOptions.class));
+    }
+
+    @Test
+    public void testThatACachedImageIsRebuiltWhenTheDaemonNoLongerHasIt() throws Exception {
+        ImageBuildConfiguration image = createImage("cached", null, "FROM busybox");
+        mojo.setImages(Collections.singletonList(image));
+        mojo.setBuildCache(true);
+        mojo.setBuildCacheFile(new File(folder.getRoot(), "build-cache.properties"));
+        Mockito.when(FakeDockerProvider.instance.hasImage(IMAGEID)).thenReturn(false);
+
+        executeMojo(FAKE_PROVIDER_KEY);
+        executeMojo(FAKE_PROVIDER_KEY);
+
+        Mockito.verify(FakeDockerProvider.instance, Mockito.times(2))
+                .buildImage(eq(image), any(ImageBuildOptions.class));
+    }
+
+    @Test
+    public void testThatAnImageWithTheSameContextOnTheDaemonIsUsedInsteadOfBuilding() throws Exception {
+        ImageBuildConfiguration image = createImage("labelled", NAMEANDTAG, "FROM busybox");
+        mojo.setImages(Collections.singletonList(image));
+        mojo.setBuildCache(true);
+        mojo.setBuildCacheFile(new File(folder.getRoot(), "build-cache.properties"));
+        String digest = BuildContext.forImage(image).getDigest();
+        Mockito.when(FakeDockerProvider.instance.findImageByLabel(BuildImageMojo.CONTEXT_DIGEST_LABEL, digest))
+                .thenReturn(Optional.of(IMAGEID));
+
+        executeMojo(FAKE_PROVIDER_KEY);
+
+        Mockito.verify(FakeDockerProvider.instance, Mockito.never()).buildImage(eq(image), any(ImageBuildOptions.class));
+        Mockito.verify(FakeDockerProvider.instance).tagImage(IMAGEID, NAMEANDTAG);
+        assertTrue(mojo.getPluginErrors().isEmpty());
+    }
+
+    @Test
+    public void testThatABuiltImageIsLabelledWithTheDigestOfItsContext() throws Exception {
+        ImageBuildConfiguration image = createImage("labelled", null, "FROM busybox");
+        mojo.setImages(Collections.singletonList(image));
+        mojo.setBuildCache(true);
+        mojo.setBuildCacheFile(new File(folder.getRoot(), "build-cache.properties"));
+
+        executeMojo(FAKE_PROVIDER_KEY);
+
+        ArgumentCaptor<ImageBuildOptions> options = ArgumentCaptor.forClass(ImageBuildOptions.class);
+        Mockito.verify(FakeDockerProvider.instance).buildImage(eq(image), options.capture());
+        assertEquals(Collections.singletonMap(BuildImageMojo.CONTEXT_DIGEST_LABEL,
+                BuildContext.forImage(image).getDigest()), options.getValue().getLabels());
+        assertTrue(options.getValue().getContext().isPresent());
+    }
+
+    @Test
+    public void testThatAnImageBuiltWhileWaitingForTheBuildLockIsUsedInsteadOfBuilding() throws Exception {
+        ImageBuildConfiguration image = createImage("locked", null, "FROM busybox");
+        mojo.setImages(Collections.singletonList(image));
+        mojo.setBuildCache(true);
+        mojo.setBuildCacheFile(new File(folder.getRoot(), "build-cache.properties"));
+        mojo.setBuildLockDirectory(new File(folder.getRoot(), "locks"));
+        String digest = BuildContext.forImage(image).getDigest();
+        Mockito.when(FakeDockerProvider.instance.findImageByLabel(BuildImageMojo.CONTEXT_DIGEST_LABEL, digest))
+                .thenReturn(Optional.<String>absent(), Optional.of(IMAGEID));
+
+        executeMojo(FAKE_PROVIDER_KEY);
+
+        Mockito.verify(FakeDockerProvider.instance, Mockito.never()).buildImage(eq(image), any(ImageBuildOptions.class));
+        Optional<ImageBuildLocks.Lock> lock = new ImageBuildLocks(new File(folder.getRoot(), "locks")).tryAcquire(digest);
+        assertTrue(lock.isPresent());
+        lock.get().release();
+    }
+
+    @Test
+    public void testThatTheBuildReportsOfAllImagesAreWrittenToTheReportFile() throws Exception {
+        ImageBuildReport report = new ImageBuildReport(STARTID);
+        report.setEntries(3);
+        report.setUncompressedBytes(4096);
+        report.setLargestFiles(Arrays.asList(new ImageBuildReport.ContextFile("app.jar", 2048)));
+        Mockito.when(FakeDockerProvider.instance.buildImage(any(ImageBuildConfiguration.class),
+                any(ImageBuildOptions.class))).thenReturn(new ImageBuildResult(IMAGEID, Optional.of(report)));
+        File reportFile = new File(folder.getRoot(), "target/docker-build-report.json");
+        mojo.setBuildReportFile(reportFile);
+
+        executeMojo(FAKE_PROVIDER_KEY);
+
+        JsonNode reports = new ObjectMapper().readTree(reportFile);
+        assertEquals(1, reports.size());
+        assertEquals(STARTID, reports.get(0).get("imageId").asText());
+        assertEquals(4096, reports.get(0).get("uncompressedBytes").asLong());
+        assertEquals("app.jar", reports.get(0).get("largestFiles").get(0).get("name").asText());
+    }
+
+    private ImageBuildConfiguration createImage(String id, String nameAndTag, String dockerFile) throws Exception {
+        File file = folder.newFile(id + ".Dockerfile");
+        Files.write(file.toPath(), dockerFile.getBytes(Charset.forName("UTF-8")));
+        ImageBuildConfiguration image = new ImageBuildConfiguration();
+        image.setId(id);
+        image.setNameAndTag(nameAndTag);
+        image.setDockerFile(file);
+        return image;
+    }
+
     private void executeMojo(String provider) throws MojoExecutionException, MojoFailureException {
         mojo.setProviderName(provider);
         mojo.execute();
@@ -0,0 +1,143 @@
+/*
+    Copyright 2014 Wouter Danes
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+*/
+
+package net.wouterdanes.docker.maven;
+
+import java.io.Closeable;
+
+import javax.ws.rs.ProcessingException;
+
+import com.google.common.base.Optional;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import net.wouterdanes.docker.provider.DockerProvider;
+import net.wouterdanes.docker.remoteapi.DockerEventListener;
+import net.wouterdanes.docker.remoteapi.exception.DockerException;
+import net.wouterdanes.docker.remoteapi.model.DockerEvent;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ContainerStateTableTest {
+
+    private DockerProvider provider;
+    private Closeable subscription;
+
+    @Before
+    public void setUp() throws Exception {
+        provider = mock(DockerProvider.class);
+        subscription = mock(Closeable.class);
+        when(provider.followEvents(any(DockerEventListener.class))).thenReturn(Optional.of(subscription));
+        when(provider.getExitCode(anyString())).thenReturn(Optional.of(2));
+    }
+
+    @Test
+    public void testThatARunningContainerIsNotInspectedWhileEventsAreFollowed() throws Exception {
+        ContainerStateTable table = ContainerStateTable.follow(provider);
+        table.track("abc");
+        table.onEvent(new DockerEvent("start", "abc"));
+
+        assertTrue(table.isFollowing());
+        assertFalse(table.hasExited("abc", provider));
+        assertEquals(Optional.<Integer>absent(), table.getExitCode("abc", provider));
+        verify(provider, never()).getExitCode(anyString());
+    }
+
+    @Test
+    public void testThatAContainerThatDiedIsInspectedForItsExitCode() throws Exception {
+        ContainerStateTable table = ContainerStateTable.follow(provider);
+        table.track("abc");
+        table.onEvent(new DockerEvent("die", "abc"));
+
+        assertTrue(table.hasExited("abc", provider));
+        assertTrue(table.isKnownToBeStopped("abc"));
+        assertFalse(table.isKnownToBeRemoved("abc"));
+        assertEquals(Optional.of(2), table.getExitCode("abc", provider));
+    }
+
+    @Test
+    public void testThatAContainerThatDiedBeforeItWasTrackedIsKnownToBeStopped() throws Exception {
+        ContainerStateTable table = ContainerStateTable.follow(provider);
+        table.onEvent(new DockerEvent("die", "abc"));
+        table.onEvent(new DockerEvent("destroy", "abc"));
+        table.track("abc");
+
+        assertTrue(table.isKnownToBeStopped("abc"));
+        assertTrue(table.isKnownToBeRemoved("abc"));
+    }
+
+    @Test
+    public void testThatContainersAreInspectedWhenTheEventsStreamBreaksOff() throws Exception {
+        ContainerStateTable table = ContainerStateTable.follow(provider);
+        table.track("abc");
+        table.onClose();
+
+        assertFalse(table.isFollowing());
+        assertFalse(table.isKnownToBeStopped("abc"));
+        assertTrue(table.hasExited("abc", provider));
+        verify(provider).getExitCode("abc");
+    }
+
+    @Test
+    public void testThatContainersAreInspectedWhenTheProviderCantFollowEvents() throws Exception {
+        when(provider.followEvents(any(DockerEventListener.class))).thenReturn(Optional.<Closeable>absent());
+
+        ContainerStateTable table = ContainerStateTable.follow(provider);
+
+        assertFalse(table.isFollowing());
+        assertTrue(table.hasExited("abc", provider));
+    }
+
+    @Test
+    public void testThatContainersAreInspectedWhenFollowingTheEventsFails() throws Exception {
+        when(provider.followEvents(any(DockerEventListener.class))).thenThrow(new DockerException("Bad stuff"));
+
+        ContainerStateTable table = ContainerStateTable.follow(provider);
+
+        assertFalse(table.isFollowing());
+        assertTrue(table.hasExited("abc", provider));
+    }
+
+    @Test
+    public void testThatContainersAreInspectedWhenTheDaemonCantBeReachedForItsEvents() throws Exception {
+        when(provider.followEvents(any(DockerEventListener.class)))
+                .thenThrow(new ProcessingException("Connection refused"));
+
+        ContainerStateTable table = ContainerStateTable.follow(provider);
+
+        assertFalse(table.isFollowing());
+        assertTrue(table.hasExited("abc", provider));
+    }
+
+    @Test
+    public void testThatClosingTheTableClosesTheSubscription() throws Exception {
+        ContainerStateTable table = ContainerStateTable.follow(provider);
+        table.close();
+
+        verify(subscription).close();
+        assertFalse(table.isFollowing());
+    }
+}
@@ -0,0 +1,96 @@
+/*
+    Copyright 2014 Wouter Danes
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+*/
+
+package net.wouterdanes.docker.maven;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.base.Optional;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import net.wouterdanes.docker.provider.model.WaitPolicy;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ImageBuildLocksTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private ImageBuildLocks locks;
+
+    @Before
+    public void setUp() throws Exception {
+        locks = new ImageBuildLocks(folder.newFolder("locks"));
+    }
+
+    @Test
+    public void testThatALockedDigestCanOnlyBeLockedAfterItIsReleased() throws Exception {
+        ImageBuildLocks.Lock lock = locks.acquire("abcd", new WaitPolicy(), 0);
+
+        assertFalse(new ImageBuildLocks(locks.getDirectory()).tryAcquire("abcd").isPresent());
+        assertTrue(locks.tryAcquire("ef01").isPresent());
+
+        lock.release();
+        Optional<ImageBuildLocks.Lock> next = locks.tryAcquire("abcd");
+        assertTrue(next.isPresent());
+        next.get().release();
+    }
+
+    @Test
+    public void testThatAcquiringWaitsForTheLockToBeReleased() throws Exception {
+        final ImageBuildLocks.Lock lock = locks.acquire("abcd", new WaitPolicy(), 0);
+        final CountDownLatch acquired = new CountDownLatch(1);
+        Thread waiter = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    locks.acquire("abcd", new WaitPolicy(), 0).release();
+                    acquired.countDown();
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        };
+        waiter.start();
+
+        assertFalse(acquired.await(1, TimeUnit.SECONDS));
+        lock.release();
+        assertTrue(acquired.await(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testThatAcquiringGivesUpWithTheLockFileWhenTheTimeoutPasses() throws Exception {
+        ImageBuildLocks.Lock lock = locks.acquire("abcd", new WaitPolicy(), 0);
+        try {
+            new ImageBuildLocks(locks.getDirectory()).acquire("abcd", WaitPolicy.fixed(50), 200);
+            fail("The lock should not have been acquired");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("abcd.lock"));
+        } finally {
+            lock.release();
+        }
+    }
+}
@@ -0,0 +1,99 @@
+/*
+    Copyright 2014 Wouter Danes
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+*/
+
+package net.wouterdanes.docker.maven;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class SharedImageRegistryTest {
+
+    private final SharedImageRegistry registry = new SharedImageRegistry();
+
+    @Test
+    public void testThatModulesBuildingTheSameImageAtTheSameTimeBuildItOnce() throws Exception {
+        final AtomicInteger builds = new AtomicInteger();
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final Callable<String> build = new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+                builds.incrementAndGet();
+                started.countDown();
+                release.await();
+                return "1234abcd";
+            }
+        };
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                results.add(executor.submit(new Callable<String>() {
+                    @Override
+                    public String call() throws Exception {
+                        return registry.getOrBuild("shared", build);
+                    }
+                }));
+            }
+            started.await(10, TimeUnit.SECONDS);
+            release.countDown();
+            for (Future<String> result : results) {
+                assertEquals("1234abcd", result.get(10, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(1, builds.get());
+    }
+
+    @Test
+    public void testThatAFailedBuildIsTriedAgain() throws Exception {
+        try {
+            registry.getOrBuild("shared", new Callable<String>() {
+                @Override
+                public String call() {
+                    throw new IllegalStateException("daemon went away");
+                }
+            });
+            fail("The failure of the build should have been thrown");
+        } catch (IllegalStateException e) {
+            assertEquals("daemon went away", e.getMessage());
+        }
+
+        String imageId = registry.getOrBuild("shared", new Callable<String>() {
+            @Override
+            public String call() {
+                return "1234abcd";
+            }
+        });
+
+        assertEquals("1234abcd", imageId);
+    }
+}
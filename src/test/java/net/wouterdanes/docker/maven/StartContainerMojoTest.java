@@ -17,12 +17,23 @@
 
 package net.wouterdanes.docker.maven;
 
+import java.io.Closeable;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+import javax.ws.rs.ProcessingException;
+
+import com.google.common.base.Optional;
 
 import org.apache.maven.plugin.MojoExecution;
 import org.apache.maven.project.MavenProject;
@@ -30,6 +41,7 @@ import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.Matchers;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
@@ -40,15 +52,28 @@ import net.wouterdanes.docker.provider.DockerProviderSupplier;
 import net.wouterdanes.docker.provider.model.ContainerStartConfiguration;
 import net.wouterdanes.docker.provider.model.ExposedPort;
 import net.wouterdanes.docker.provider.model.ImageBuildConfiguration;
+import net.wouterdanes.docker.provider.model.ReadinessProbeConfiguration;
+import net.wouterdanes.docker.provider.readiness.ProbeContext;
+import net.wouterdanes.docker.provider.readiness.ReadinessProbe;
+import net.wouterdanes.docker.remoteapi.DockerEventListener;
+import net.wouterdanes.docker.remoteapi.exception.DockerException;
 import net.wouterdanes.docker.remoteapi.model.ContainerInspectionResult;
 import net.wouterdanes.docker.remoteapi.model.ContainerLink;
+import net.wouterdanes.docker.remoteapi.model.DockerEvent;
+import net.wouterdanes.docker.remoteapi.model.ImageInventory;
+import net.wouterdanes.docker.remoteapi.util.WaitHandles;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
-import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
-import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -71,6 +96,11 @@ public class StartContainerMojoTest {
 
         when(FakeDockerProvider.instance.startContainer(Matchers.any(ContainerStartConfiguration.class)))
                 .thenReturn(inspectionResult);
+        when(FakeDockerProvider.instance.getExitCode(anyString())).thenReturn(Optional.<Integer>absent());
+        when(FakeDockerProvider.instance.followEvents(any(DockerEventListener.class)))
+                .thenReturn(Optional.<Closeable>absent());
+        when(FakeDockerProvider.instance.listImages())
+                .thenReturn(new ImageInventory(Collections.<String>emptyList(), Collections.<String>emptyList()));
         DockerProviderSupplier.registerProvider(FAKE_PROVIDER_KEY, FakeDockerProvider.class);
 
         DockerExceptionThrowingDockerProvider.class.newInstance();
@@ -216,13 +246,16 @@ public class StartContainerMojoTest {
                 .withId("some-container")
                 .withStartupTimeout(1);
 
-        when(FakeDockerProvider.instance.getLogs("someId")).thenReturn("Oh hello world!");
+        when(FakeDockerProvider.instance.waitForLogs(eq("someId"),
+                any(Pattern.class), anyLong(), any(WaitHandles.class)))
+                .thenReturn(true);
 
         StartContainerMojo mojo = createMojo(container);
 
         mojo.execute();
 
-        verify(FakeDockerProvider.instance, atLeastOnce()).getLogs("someId");
+        verify(FakeDockerProvider.instance).waitForLogs(eq("someId"), any(Pattern.class),
+                anyLong(), any(WaitHandles.class));
         assert mojo.getPluginErrors().isEmpty();
 
     }
@@ -236,19 +269,22 @@ public class StartContainerMojoTest {
                 .withId("some-container")
                 .withStartupTimeout(1);
 
-        when(FakeDockerProvider.instance.getLogs("someId")).thenReturn("Oh dear, something went wrong!");
+        when(FakeDockerProvider.instance.waitForLogs(eq("someId"),
+                any(Pattern.class), anyLong(), any(WaitHandles.class)))
+                .thenReturn(false);
 
         StartContainerMojo mojo = createMojo(container);
 
         mojo.execute();
 
-        verify(FakeDockerProvider.instance, atLeastOnce()).getLogs("someId");
+        verify(FakeDockerProvider.instance).waitForLogs(eq("someId"), any(Pattern.class),
+                anyLong(), any(WaitHandles.class));
         assert !mojo.getPluginErrors().isEmpty();
 
     }
 
     @Test
-    public void testThatMojoWaitsLongEnoughForTheStartupToFinish() throws Exception {
+    public void testThatMojoWaitsForTheLogsAsLongAsTheStartupTimeout() throws Exception {
 
         ContainerStartConfiguration container = new ContainerStartConfiguration()
                 .fromImage("some-image")
@@ -256,31 +292,16 @@ public class StartContainerMojoTest {
                 .withId("some-container")
                 .withStartupTimeout(2);
 
-        final ThreadLocal<Long> startTime = new ThreadLocal<>();
-
-        when(FakeDockerProvider.instance.startContainer(container)).then(new Answer<ContainerInspectionResult>() {
-            @Override
-            public ContainerInspectionResult answer(final InvocationOnMock invocation) throws Throwable {
-                startTime.set(System.currentTimeMillis());
-                ContainerInspectionResult inspectionResult = mock(ContainerInspectionResult.class);
-                when(inspectionResult.getId()).thenReturn("someId");
-                return inspectionResult;
-            }
-        });
-
-        when(FakeDockerProvider.instance.getLogs("someId")).then(new Answer<Object>() {
-            @Override
-            public Object answer(final InvocationOnMock invocation) throws Throwable {
-                boolean logsAvailable = startTime.get() != null && startTime.get() + 1000 <= System.currentTimeMillis();
-                return logsAvailable ? "Well... hello world!" : null;
-            }
-        });
+        ArgumentCaptor<Pattern> pattern = ArgumentCaptor.forClass(Pattern.class);
+        when(FakeDockerProvider.instance.waitForLogs(eq("someId"),
+                pattern.capture(), eq(2000L), any(WaitHandles.class)))
+                .thenReturn(true);
 
         StartContainerMojo mojo = createMojo(container);
 
         mojo.execute();
 
-        verify(FakeDockerProvider.instance, atLeastOnce()).getLogs("someId");
+        assertTrue(pattern.getValue().matcher("Well... hello world!").find());
         assert mojo.getPluginErrors().isEmpty();
 
     }
@@ -299,7 +320,17 @@ public class StartContainerMojoTest {
                                 .withAlias("database")
                 );
 
-        when(FakeDockerProvider.instance.getLogs("linked")).thenReturn("", "", "there");
+        final AtomicBoolean linkedStarted = new AtomicBoolean();
+        when(FakeDockerProvider.instance.waitForLogs(eq("linked"),
+                any(Pattern.class), anyLong(), any(WaitHandles.class)))
+                .then(new Answer<Boolean>() {
+                    @Override
+                    public Boolean answer(final InvocationOnMock invocation) throws Throwable {
+                        Thread.sleep(100);
+                        linkedStarted.set(true);
+                        return true;
+                    }
+                });
 
         ContainerInspectionResult linkedContainerInspectionResult = mock(ContainerInspectionResult.class);
         when(linkedContainerInspectionResult.getId()).thenReturn("linked");
@@ -308,15 +339,373 @@ public class StartContainerMojoTest {
         when(FakeDockerProvider.instance.startContainer(parent)).then(new Answer<Object>() {
             @Override
             public Object answer(final InvocationOnMock invocation) throws Throwable {
-                verify(FakeDockerProvider.instance, times(3)).getLogs("linked");
+                assertTrue(linkedStarted.get());
                 return new ContainerInspectionResult();
             }
         });
 
         StartContainerMojo mojo = createMojo(Arrays.asList(linked, parent), FAKE_PROVIDER_KEY);
+        mojo.setStartConcurrency(2);
 
         mojo.execute();
 
+        verify(FakeDockerProvider.instance).startContainer(parent);
+        assertTrue(mojo.getPluginErrors().isEmpty());
+    }
+
+    @Test
+    public void testThatContainersWithoutLinksBetweenThemAreStartedAtTheSameTime() throws Exception {
+        ContainerStartConfiguration first = new ContainerStartConfiguration().withId("first");
+        ContainerStartConfiguration second = new ContainerStartConfiguration().withId("second");
+        final CountDownLatch bothStarting = new CountDownLatch(2);
+        Answer<ContainerInspectionResult> startTogether = new Answer<ContainerInspectionResult>() {
+            @Override
+            public ContainerInspectionResult answer(final InvocationOnMock invocation) throws Throwable {
+                bothStarting.countDown();
+                if (!bothStarting.await(10, TimeUnit.SECONDS)) {
+                    throw new DockerException("The other container was not started at the same time");
+                }
+                return new ContainerInspectionResult();
+            }
+        };
+        when(FakeDockerProvider.instance.startContainer(first)).then(startTogether);
+        when(FakeDockerProvider.instance.startContainer(second)).then(startTogether);
+
+        StartContainerMojo mojo = createMojo(Arrays.asList(first, second), FAKE_PROVIDER_KEY);
+        mojo.setStartConcurrency(2);
+        mojo.execute();
+
+        assertTrue(mojo.getPluginErrors().isEmpty());
+    }
+
+    @Test
+    public void testThatContainersAreWaitedForAtTheSameTimeWhenTheyAreStartedOneByOne() throws Exception {
+        ContainerStartConfiguration first = new ContainerStartConfiguration().withId("first").waitForStartup("up");
+        ContainerStartConfiguration second = new ContainerStartConfiguration().withId("second").waitForStartup("up");
+        for (ContainerStartConfiguration configuration : Arrays.asList(first, second)) {
+            ContainerInspectionResult result = mock(ContainerInspectionResult.class);
+            when(result.getId()).thenReturn(configuration.getId());
+            when(FakeDockerProvider.instance.startContainer(configuration)).thenReturn(result);
+        }
+        final CountDownLatch bothWaiting = new CountDownLatch(2);
+        when(FakeDockerProvider.instance.waitForLogs(anyString(),
+                any(Pattern.class), anyLong(), any(WaitHandles.class)))
+                .then(new Answer<Boolean>() {
+                    @Override
+                    public Boolean answer(final InvocationOnMock invocation) throws Throwable {
+                        bothWaiting.countDown();
+                        return bothWaiting.await(10, TimeUnit.SECONDS);
+                    }
+                });
+
+        StartContainerMojo mojo = createMojo(Arrays.asList(first, second), FAKE_PROVIDER_KEY);
+        mojo.setStartConcurrency(1);
+        mojo.execute();
+
+        assertTrue(mojo.getPluginErrors().isEmpty());
+    }
+
+    @Test
+    public void testThatAContainerThatExitsWhileStartingUpIsReportedWithItsExitCodeAndLogs() throws Exception {
+        ContainerStartConfiguration linked = new ContainerStartConfiguration()
+                .withId("linked")
+                .waitForStartup("ready to accept connections");
+        ContainerStartConfiguration parent = new ContainerStartConfiguration()
+                .withId("parent")
+                .withLink(new ContainerLink().toContainer("linked").withAlias("database"));
+        when(FakeDockerProvider.instance.waitForLogs(eq("someId"),
+                any(Pattern.class), anyLong(), any(WaitHandles.class)))
+                .thenReturn(false);
+        when(FakeDockerProvider.instance.getExitCode("someId")).thenReturn(Optional.of(3));
+        when(FakeDockerProvider.instance.getLogs("someId")).thenReturn("starting\nFATAL: no disk space\n");
+
+        StartContainerMojo mojo = createMojo(Arrays.asList(linked, parent), FAKE_PROVIDER_KEY);
+        mojo.execute();
+
+        assertEquals(2, mojo.getPluginErrors().size());
+        String message = mojo.getPluginErrors().get(0).getMessage();
+        assertTrue(message, message.contains("exited with code 3"));
+        assertTrue(message, message.contains("FATAL: no disk space"));
+        verify(FakeDockerProvider.instance, never()).startContainer(parent);
+    }
+
+    @Test
+    public void testThatAReadinessProbeStopsWaitingWhenTheContainerExits() throws Exception {
+        ContainerStartConfiguration container = new ContainerStartConfiguration()
+                .withId("container")
+                .withStartupTimeout(300)
+                .withReadinessProbe(new ReadinessProbeConfiguration()
+                        .withType(ReadyOnThirdAttemptProbe.class.getName()));
+        when(FakeDockerProvider.instance.getExitCode("someId")).thenReturn(Optional.of(1));
+        ReadyOnThirdAttemptProbe.ATTEMPTS.set(0);
+
+        StartContainerMojo mojo = createMojo(container);
+        mojo.execute();
+
+        assertEquals(1, ReadyOnThirdAttemptProbe.ATTEMPTS.get());
+        assertEquals(1, mojo.getPluginErrors().size());
+        assertTrue(mojo.getPluginErrors().get(0).getMessage().contains("exited with code 1"));
+    }
+
+    @Test
+    public void testThatAReadinessProbeLearnsThatTheContainerExitedFromTheEventsOfTheDaemon() throws Exception {
+        ContainerStartConfiguration container = new ContainerStartConfiguration()
+                .withId("container")
+                .withReadinessProbe(new ReadinessProbeConfiguration()
+                        .withType(DyingContainerProbe.class.getName())
+                        .withInterval(10));
+        final Closeable subscription = mock(Closeable.class);
+        when(FakeDockerProvider.instance.followEvents(any(DockerEventListener.class)))
+                .then(new Answer<Optional<Closeable>>() {
+                    @Override
+                    public Optional<Closeable> answer(final InvocationOnMock invocation) throws Throwable {
+                        DyingContainerProbe.listener = (DockerEventListener) invocation.getArguments()[0];
+                        return Optional.of(subscription);
+                    }
+                });
+        when(FakeDockerProvider.instance.getExitCode("someId")).thenReturn(Optional.of(137));
+
+        StartContainerMojo mojo = createMojo(container);
+        mojo.execute();
+
+        assertEquals(1, mojo.getPluginErrors().size());
+        assertTrue(mojo.getPluginErrors().get(0).getMessage().contains("exited with code 137"));
+        // only inspected once to report the exit code, not on every attempt
+        verify(FakeDockerProvider.instance).getExitCode("someId");
+    }
+
+    @Test
+    public void testThatStartedContainersAreRemovedWhenAContainerFailsInFailFastMode() throws Exception {
+        ContainerStartConfiguration first = new ContainerStartConfiguration().withId("first");
+        ContainerStartConfiguration second = new ContainerStartConfiguration().withId("second");
+        when(FakeDockerProvider.instance.startContainer(second)).thenThrow(new DockerException("Bad stuff"));
+
+        StartContainerMojo mojo = createMojo(Arrays.asList(first, second), FAKE_PROVIDER_KEY);
+        mojo.setFailFast(true);
+        mojo.execute();
+
+        assertEquals(1, mojo.getPluginErrors().size());
+        verify(FakeDockerProvider.instance).stopContainer("someId");
+        verify(FakeDockerProvider.instance).deleteContainer("someId");
+        assertTrue(mojo.getStartedContainers().isEmpty());
+    }
+
+    @Test
+    public void testThatAContainerStartedWhileTheStartupIsAbortedIsRemovedAsWell() throws Exception {
+        ContainerStartConfiguration slow = new ContainerStartConfiguration().withId("slow");
+        ContainerStartConfiguration failing = new ContainerStartConfiguration().withId("failing");
+        final CountDownLatch slowStarted = new CountDownLatch(1);
+        when(FakeDockerProvider.instance.getExposedPorts("someId")).then(new Answer<List<ExposedPort>>() {
+            @Override
+            public List<ExposedPort> answer(final InvocationOnMock invocation) throws Throwable {
+                slowStarted.countDown();
+                // the failing container aborts the startup in the meantime
+                Thread.sleep(300);
+                return Collections.emptyList();
+            }
+        });
+        when(FakeDockerProvider.instance.startContainer(failing)).then(new Answer<ContainerInspectionResult>() {
+            @Override
+            public ContainerInspectionResult answer(final InvocationOnMock invocation) throws Throwable {
+                slowStarted.await(10, TimeUnit.SECONDS);
+                throw new DockerException("Bad stuff");
+            }
+        });
+
+        StartContainerMojo mojo = createMojo(Arrays.asList(slow, failing), FAKE_PROVIDER_KEY);
+        mojo.setStartConcurrency(2);
+        mojo.setFailFast(true);
+        mojo.execute();
+
+        assertEquals(1, mojo.getPluginErrors().size());
+        verify(FakeDockerProvider.instance).stopContainer("someId");
+        verify(FakeDockerProvider.instance).deleteContainer("someId");
+        assertTrue(mojo.getStartedContainers().isEmpty());
+    }
+
+    @Test
+    public void testThatStartedContainersAreRemovedWhenTheStartupDeadlinePasses() throws Exception {
+        ContainerStartConfiguration container = new ContainerStartConfiguration()
+                .withId("container")
+                .waitForStartup("never")
+                .withStartupTimeout(300);
+        final CountDownLatch released = new CountDownLatch(1);
+        final ArgumentCaptor<Long> timeout = ArgumentCaptor.forClass(Long.class);
+        when(FakeDockerProvider.instance.waitForLogs(eq("someId"),
+                any(Pattern.class), timeout.capture(), any(WaitHandles.class)))
+                .then(new Answer<Boolean>() {
+                    @Override
+                    public Boolean answer(final InvocationOnMock invocation) throws Throwable {
+                        return released.await(10, TimeUnit.SECONDS);
+                    }
+                });
+
+        StartContainerMojo mojo = createMojo(container);
+        mojo.setStartupDeadline(1);
+        try {
+            mojo.execute();
+        } finally {
+            released.countDown();
+        }
+
+        assertTrue(timeout.getValue() <= 1000);
+        assertEquals(1, mojo.getPluginErrors().size());
+        assertTrue(mojo.getPluginErrors().get(0).getMessage().contains("startup deadline"));
+        verify(FakeDockerProvider.instance).deleteContainer("someId");
+        assertTrue(mojo.getStartedContainers().isEmpty());
+    }
+
+    @Test
+    public void testThatARunningWaitIsAbortedBeforeTheStartedContainersAreRemoved() throws Exception {
+        ContainerStartConfiguration container = new ContainerStartConfiguration()
+                .withId("container")
+                .waitForStartup("never");
+        final CountDownLatch aborted = new CountDownLatch(1);
+        when(FakeDockerProvider.instance.waitForLogs(eq("someId"),
+                any(Pattern.class), anyLong(), any(WaitHandles.class)))
+                .then(new Answer<Boolean>() {
+                    @Override
+                    public Boolean answer(final InvocationOnMock invocation) throws Throwable {
+                        WaitHandles handles = (WaitHandles) invocation.getArguments()[3];
+                        // stands in for a log stream that only returns when it is closed
+                        handles.register(new Closeable() {
+                            @Override
+                            public void close() {
+                                aborted.countDown();
+                            }
+                        });
+                        aborted.await(10, TimeUnit.SECONDS);
+                        return false;
+                    }
+                });
+        final AtomicBoolean abortedBeforeRemoval = new AtomicBoolean();
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(final InvocationOnMock invocation) throws Throwable {
+                abortedBeforeRemoval.set(aborted.getCount() == 0);
+                return null;
+            }
+        }).when(FakeDockerProvider.instance).deleteContainer("someId");
+
+        StartContainerMojo mojo = createMojo(container);
+        mojo.setStartupDeadline(1);
+        long start = System.currentTimeMillis();
+        mojo.execute();
+
+        assertTrue(System.currentTimeMillis() - start < 5000);
+        assertTrue(abortedBeforeRemoval.get());
+        assertTrue(mojo.getStartedContainers().isEmpty());
+    }
+
+    @Test
+    public void testThatOnlyMissingImagesArePulledBeforeContainersAreStarted() throws Exception {
+        ContainerStartConfiguration present = new ContainerStartConfiguration().withId("present").fromImage("nginx");
+        ContainerStartConfiguration missing = new ContainerStartConfiguration().withId("missing")
+                .fromImage("postgres:9.4");
+        ContainerStartConfiguration sameImage = new ContainerStartConfiguration().withId("same")
+                .fromImage("postgres:9.4");
+        when(FakeDockerProvider.instance.listImages()).thenReturn(new ImageInventory(
+                Arrays.asList("nginx:latest"), Arrays.asList("0123456789abcdef")));
+
+        StartContainerMojo mojo = createMojo(Arrays.asList(present, missing, sameImage), FAKE_PROVIDER_KEY);
+        mojo.execute();
+
+        InOrder inOrder = inOrder(FakeDockerProvider.instance);
+        inOrder.verify(FakeDockerProvider.instance).pullImage("postgres:9.4");
+        inOrder.verify(FakeDockerProvider.instance).startContainer(present);
+        verify(FakeDockerProvider.instance, never()).pullImage("nginx");
+        verify(FakeDockerProvider.instance).listImages();
+    }
+
+    @Test
+    public void testThatMissingImagesArePulledAtTheSameTime() throws Exception {
+        ContainerStartConfiguration first = new ContainerStartConfiguration().withId("first").fromImage("redis");
+        ContainerStartConfiguration second = new ContainerStartConfiguration().withId("second").fromImage("mongo");
+        final CountDownLatch bothPulling = new CountDownLatch(2);
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(final InvocationOnMock invocation) throws Throwable {
+                bothPulling.countDown();
+                if (!bothPulling.await(10, TimeUnit.SECONDS)) {
+                    throw new DockerException("The other image was not pulled at the same time");
+                }
+                return null;
+            }
+        }).when(FakeDockerProvider.instance).pullImage(anyString());
+
+        StartContainerMojo mojo = createMojo(Arrays.asList(first, second), FAKE_PROVIDER_KEY);
+        mojo.setPullConcurrency(2);
+        mojo.execute();
+
+        assertEquals(0, bothPulling.getCount());
+        assertTrue(mojo.getPluginErrors().isEmpty());
+    }
+
+    @Test
+    public void testThatAnImageThatCannotBePulledIsReportedAsAPluginError() throws Exception {
+        ContainerStartConfiguration container = new ContainerStartConfiguration().withId("container")
+                .fromImage("redis");
+        doThrow(new ProcessingException("Connection refused")).when(FakeDockerProvider.instance).pullImage("redis");
+
+        StartContainerMojo mojo = createMojo(container);
+        mojo.execute();
+
+        assertEquals(1, mojo.getPluginErrors().size());
+        assertTrue(mojo.getPluginErrors().get(0).getMessage().contains("pull image redis"));
+    }
+
+    @Test
+    public void testThatAContainerIsNotStartedWhenTheContainerItLinksToFails() throws Exception {
+        ContainerStartConfiguration linked = new ContainerStartConfiguration().withId("linked");
+        ContainerStartConfiguration parent = new ContainerStartConfiguration()
+                .withId("parent")
+                .withLink(new ContainerLink().toContainer("linked").withAlias("database"));
+        when(FakeDockerProvider.instance.startContainer(linked)).thenThrow(new DockerException("Bad stuff"));
+
+        StartContainerMojo mojo = createMojo(Arrays.asList(linked, parent), FAKE_PROVIDER_KEY);
+        mojo.execute();
+
+        verify(FakeDockerProvider.instance, never()).startContainer(parent);
+        assertEquals(2, mojo.getPluginErrors().size());
+    }
+
+    @Test
+    public void testThatAContainerIsStartedAfterTheReadinessProbesOfTheContainerItLinksToSucceed() throws Exception {
+        ContainerStartConfiguration linked = new ContainerStartConfiguration()
+                .withId("linked")
+                .withReadinessProbe(new ReadinessProbeConfiguration()
+                        .withType(ReadyOnThirdAttemptProbe.class.getName())
+                        .withInterval(10));
+        ContainerStartConfiguration parent = new ContainerStartConfiguration()
+                .withId("parent")
+                .withLink(new ContainerLink().toContainer("linked").withAlias("database"));
+        when(FakeDockerProvider.instance.startContainer(parent)).then(new Answer<ContainerInspectionResult>() {
+            @Override
+            public ContainerInspectionResult answer(final InvocationOnMock invocation) throws Throwable {
+                assertEquals(3, ReadyOnThirdAttemptProbe.ATTEMPTS.get());
+                return new ContainerInspectionResult();
+            }
+        });
+        ReadyOnThirdAttemptProbe.ATTEMPTS.set(0);
+
+        StartContainerMojo mojo = createMojo(Arrays.asList(linked, parent), FAKE_PROVIDER_KEY);
+        mojo.execute();
+
+        verify(FakeDockerProvider.instance).startContainer(parent);
+        assertTrue(mojo.getPluginErrors().isEmpty());
+    }
+
+    @Test
+    public void testThatMojoAddsAnErrorForAnUnknownReadinessProbe() throws Exception {
+        ContainerStartConfiguration container = new ContainerStartConfiguration()
+                .withId("container")
+                .withReadinessProbe(new ReadinessProbeConfiguration().withType("telepathy"));
+
+        StartContainerMojo mojo = createMojo(container);
+        mojo.execute();
+
+        assertEquals(1, mojo.getPluginErrors().size());
+        verify(FakeDockerProvider.instance, never()).startContainer(container);
     }
 
     @Test
@@ -373,6 +762,28 @@ public class StartContainerMojoTest {
         return mojo;
     }
 
+    public static class ReadyOnThirdAttemptProbe implements ReadinessProbe {
+        private static final AtomicInteger ATTEMPTS = new AtomicInteger();
+
+        @Override
+        public boolean isReady(final ReadinessProbeConfiguration configuration, final ProbeContext context) {
+            return ATTEMPTS.incrementAndGet() == 3;
+        }
+    }
+
+    public static class DyingContainerProbe implements ReadinessProbe {
+        private static volatile DockerEventListener listener;
+        private final AtomicInteger attempts = new AtomicInteger();
+
+        @Override
+        public boolean isReady(final ReadinessProbeConfiguration configuration, final ProbeContext context) {
+            if (attempts.incrementAndGet() == 3) {
+                listener.onEvent(new DockerEvent("die", context.getContainerId()));
+            }
+            return false;
+        }
+    }
+
     public static class FakeDockerProvider extends AbstractFakeDockerProvider {
         private static FakeDockerProvider instance;
 
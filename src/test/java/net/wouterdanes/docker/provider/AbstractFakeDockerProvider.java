@@ -1,14 +1,23 @@
 package net.wouterdanes.docker.provider;
 
+import java.io.Closeable;
 import java.util.List;
+import java.util.regex.Pattern;
+
+import com.google.common.base.Optional;
 
 import org.apache.maven.plugin.logging.Log;
 
 import net.wouterdanes.docker.provider.model.ContainerStartConfiguration;
 import net.wouterdanes.docker.provider.model.ExposedPort;
 import net.wouterdanes.docker.provider.model.ImageBuildConfiguration;
+import net.wouterdanes.docker.provider.model.ImageBuildOptions;
+import net.wouterdanes.docker.provider.model.ImageBuildResult;
+import net.wouterdanes.docker.remoteapi.DockerEventListener;
 import net.wouterdanes.docker.remoteapi.model.ContainerInspectionResult;
 import net.wouterdanes.docker.remoteapi.model.Credentials;
+import net.wouterdanes.docker.remoteapi.model.ImageInventory;
+import net.wouterdanes.docker.remoteapi.util.WaitHandles;
 
 /**
  * Utility class to create mock docker providers, extend this and implement the getInstance() method, then create
@@ -45,8 +54,23 @@ public abstract class AbstractFakeDockerProvider implements DockerProvider {
     }
 
     @Override
-    public String buildImage(final ImageBuildConfiguration image) {
-        return proxy.buildImage(image);
+    public ImageBuildResult buildImage(final ImageBuildConfiguration image, final ImageBuildOptions options) {
+        return proxy.buildImage(image, options);
+    }
+
+    @Override
+    public boolean hasImage(final String imageId) {
+        return proxy.hasImage(imageId);
+    }
+
+    @Override
+    public ImageInventory listImages() {
+        return proxy.listImages();
+    }
+
+    @Override
+    public void pullImage(final String image) {
+        proxy.pullImage(image);
     }
 
     @Override
@@ -74,8 +98,34 @@ public abstract class AbstractFakeDockerProvider implements DockerProvider {
         return proxy.getLogs(containerId);
     }
 
+    @Override
+    public boolean waitForLogs(final String containerId, final Pattern pattern, final long timeoutMillis,
+                               final WaitHandles handles) {
+        return proxy.waitForLogs(containerId, pattern, timeoutMillis, handles);
+    }
+
+    @Override
+    public int execInContainer(final String containerId, final List<String> command, final WaitHandles handles) {
+        return proxy.execInContainer(containerId, command, handles);
+    }
+
+    @Override
+    public Optional<Integer> getExitCode(final String containerId) {
+        return proxy.getExitCode(containerId);
+    }
+
+    @Override
+    public Optional<Closeable> followEvents(final DockerEventListener listener) {
+        return proxy.followEvents(listener);
+    }
+
     @Override
     public void setLogger(final Log logger) {
         proxy.setLogger(logger);
     }
+
+    @Override
+    public Optional<String> findImageByLabel(final String label, final String value) {
+        return proxy.findImageByLabel(label, value);
+    }
 }
@@ -1,15 +1,24 @@
 package net.wouterdanes.docker.provider;
 
+import java.io.Closeable;
 import java.util.List;
+import java.util.regex.Pattern;
+
+import com.google.common.base.Optional;
 
 import org.apache.maven.plugin.logging.Log;
 
 import net.wouterdanes.docker.provider.model.ContainerStartConfiguration;
 import net.wouterdanes.docker.provider.model.ExposedPort;
 import net.wouterdanes.docker.provider.model.ImageBuildConfiguration;
+import net.wouterdanes.docker.provider.model.ImageBuildOptions;
+import net.wouterdanes.docker.provider.model.ImageBuildResult;
+import net.wouterdanes.docker.remoteapi.DockerEventListener;
 import net.wouterdanes.docker.remoteapi.exception.DockerException;
 import net.wouterdanes.docker.remoteapi.model.ContainerInspectionResult;
 import net.wouterdanes.docker.remoteapi.model.Credentials;
+import net.wouterdanes.docker.remoteapi.model.ImageInventory;
+import net.wouterdanes.docker.remoteapi.util.WaitHandles;
 
 /**
  * A Mock {@link net.wouterdanes.docker.provider.DockerProvider} that only throws
@@ -54,11 +63,28 @@ public class DockerExceptionThrowingDockerProvider implements DockerProvider {
     }
 
     @Override
-    public String buildImage(final ImageBuildConfiguration image) {
+    public ImageBuildResult buildImage(final ImageBuildConfiguration image, final ImageBuildOptions options) {
+        throwBadException();
+        return null;
+    }
+
+    @Override
+    public boolean hasImage(final String imageId) {
+        throwBadException();
+        return false;
+    }
+
+    @Override
+    public ImageInventory listImages() {
         throwBadException();
         return null;
     }
 
+    @Override
+    public void pullImage(final String image) {
+        throwBadException();
+    }
+
     @Override
     public void removeImage(final String imageId) {
         throwBadException();
@@ -80,11 +106,42 @@ public class DockerExceptionThrowingDockerProvider implements DockerProvider {
         return null;
     }
 
+    @Override
+    public boolean waitForLogs(final String containerId, final Pattern pattern, final long timeoutMillis,
+                               final WaitHandles handles) {
+        throwBadException();
+        return false;
+    }
+
+    @Override
+    public int execInContainer(final String containerId, final List<String> command, final WaitHandles handles) {
+        throwBadException();
+        return -1;
+    }
+
+    @Override
+    public Optional<Integer> getExitCode(final String containerId) {
+        throwBadException();
+        return null;
+    }
+
+    @Override
+    public Optional<Closeable> followEvents(final DockerEventListener listener) {
+        throwBadException();
+        return null;
+    }
+
     @Override
     public void setLogger(final Log logger) {
         // NOOP
     }
 
+    @Override
+    public Optional<String> findImageByLabel(final String label, final String value) {
+        throwBadException();
+        return Optional.absent();
+    }
+
     private static void throwBadException() {
         throw new DockerException("Bad stuff");
     }
@@ -0,0 +1,216 @@
+/*
+    Copyright 2014 Wouter Danes
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+*/
+
+package net.wouterdanes.docker.provider.context;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import net.wouterdanes.docker.provider.model.Artifact;
+import net.wouterdanes.docker.provider.model.ImageBuildConfiguration;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class BuildContextTest {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private ImageBuildConfiguration image;
+
+    @Before
+    public void setUp() throws Exception {
+        image = new ImageBuildConfiguration();
+        image.setId("image");
+        image.setDockerFile(createFile("Dockerfile", "FROM busybox"));
+    }
+
+    @Test
+    public void testThatTheContextContainsTheDockerfileAndAllArtifacts() throws Exception {
+        File directory = folder.newFolder("site");
+        write(new File(directory, "index.html"), "<html/>");
+        File subDirectory = new File(directory, "css");
+        subDirectory.mkdir();
+        write(new File(subDirectory, "site.css"), "body {}");
+
+        image.setArtifacts(Arrays.asList(
+                createArtifact(createFile("app.conf", "key=value"), "etc/app.conf"),
+                createArtifact(directory, "var/www")
+        ));
+
+        Map<String, String> entries = readEntries(BuildContext.forImage(image));
+
+        assertEquals(4, entries.size());
+        assertEquals("FROM busybox", entries.get("Dockerfile"));
+        assertEquals("key=value", entries.get("etc/app.conf"));
+        assertEquals("<html/>", entries.get("var/www/index.html"));
+        assertEquals("body {}", entries.get("var/www/css/site.css"));
+    }
+
+    @Test
+    public void testThatAnArtifactWithoutDestinationIsAddedUnderItsFileName() throws Exception {
+        image.setArtifacts(Arrays.asList(createArtifact(createFile("app.jar", "jar"), null)));
+
+        Map<String, String> entries = readEntries(BuildContext.forImage(image));
+
+        assertEquals("jar", entries.get("app.jar"));
+    }
+
+    @Test
+    public void testThatFilesLeftOutByTheDockerignoreFileAndExcludesAreNotInTheContext() throws Exception {
+        createFile(".dockerignore", "**/*.tmp\n");
+        File directory = folder.newFolder("app");
+        write(new File(directory, "app.jar"), "jar");
+        write(new File(directory, "scratch.tmp"), "tmp");
+        File cache = new File(directory, "cache");
+        cache.mkdir();
+        write(new File(cache, "entry"), "cached");
+
+        image.setArtifacts(Arrays.asList(createArtifact(directory, "app")));
+        image.setExcludes(Arrays.asList("app/cache"));
+
+        Map<String, String> entries = readEntries(BuildContext.forImage(image));
+
+        assertEquals(2, entries.size());
+        assertEquals("jar", entries.get("app/app.jar"));
+    }
+
+    @Test
+    public void testThatAReproducibleContextDoesNotDependOnTimestampsOrTheOrderOfArtifacts() throws Exception {
+        File second = createFile("second.txt", "2");
+        File first = createFile("first.sh", "1");
+        first.setExecutable(true);
+        image.setArtifacts(Arrays.asList(createArtifact(second, "b/second.txt"), createArtifact(first, "a/first.sh")));
+        image.setReproducible(true);
+
+        byte[] before = toByteArray(BuildContext.forImage(image));
+        Files.setLastModifiedTime(second.toPath(), FileTime.fromMillis(1418000000000L));
+        byte[] after = toByteArray(BuildContext.forImage(image));
+
+        assertArrayEquals(before, after);
+        List<TarArchiveEntry> entries = new ArrayList<>();
+        try (TarArchiveInputStream tar = new TarArchiveInputStream(new ByteArrayInputStream(after))) {
+            TarArchiveEntry entry;
+            while ((entry = tar.getNextTarEntry()) != null) {
+                entries.add(entry);
+            }
+        }
+        assertEquals("Dockerfile", entries.get(0).getName());
+        assertEquals("a/first.sh", entries.get(1).getName());
+        assertEquals("b/second.txt", entries.get(2).getName());
+        assertEquals(TarWriter.REPRODUCIBLE_MODIFICATION_TIME, entries.get(2).getModTime().getTime());
+        assertEquals(TarWriter.DEFAULT_FILE_MODE, entries.get(2).getMode());
+    }
+
+    @Test
+    public void testThatDuplicateFilesAreWrittenAsHardLinksToTheFirstCopy() throws Exception {
+        File directory = folder.newFolder("lib");
+        write(new File(directory, "shared.jar"), "shared");
+        write(new File(directory, "other.jar"), "others");
+        File copy = createFile("shared.jar", "shared");
+        image.setArtifacts(Arrays.asList(createArtifact(directory, "first/lib"),
+                createArtifact(copy, "second/lib/shared.jar")));
+        image.setDeduplicate(true);
+
+        List<TarArchiveEntry> entries = new ArrayList<>();
+        try (TarArchiveInputStream tar = new TarArchiveInputStream(new ByteArrayInputStream(
+                toByteArray(BuildContext.forImage(image))))) {
+            TarArchiveEntry entry;
+            while ((entry = tar.getNextTarEntry()) != null) {
+                entries.add(entry);
+            }
+        }
+
+        assertEquals(4, entries.size());
+        assertEquals("first/lib/other.jar", entries.get(1).getName());
+        assertFalse(entries.get(1).isLink());
+        assertEquals("first/lib/shared.jar", entries.get(2).getName());
+        assertFalse(entries.get(2).isLink());
+        assertEquals("second/lib/shared.jar", entries.get(3).getName());
+        assertTrue(entries.get(3).isLink());
+        assertEquals("first/lib/shared.jar", entries.get(3).getLinkName());
+    }
+
+    @Test(expected = FileNotFoundException.class)
+    public void testThatAMissingArtifactFailsBeforeAnythingIsWritten() throws Exception {
+        image.setArtifacts(Arrays.asList(createArtifact(new File(folder.getRoot(), "missing.jar"), null)));
+
+        BuildContext.forImage(image);
+    }
+
+    private static byte[] toByteArray(BuildContext context) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        context.write(output);
+        return output.toByteArray();
+    }
+
+    private static Map<String, String> readEntries(BuildContext context) throws IOException {
+        Map<String, String> entries = new HashMap<>();
+        try (TarArchiveInputStream tar = new TarArchiveInputStream(new ByteArrayInputStream(toByteArray(context)))) {
+            TarArchiveEntry entry;
+            while ((entry = tar.getNextTarEntry()) != null) {
+                byte[] contents = new byte[(int) entry.getSize()];
+                int read = 0;
+                while (read < contents.length) {
+                    read += tar.read(contents, read, contents.length - read);
+                }
+                entries.put(entry.getName(), new String(contents, UTF8));
+            }
+        }
+        return entries;
+    }
+
+    private File createFile(String name, String contents) throws IOException {
+        File file = folder.newFile(name);
+        write(file, contents);
+        return file;
+    }
+
+    private static void write(File file, String contents) throws IOException {
+        Files.write(file.toPath(), contents.getBytes(UTF8));
+    }
+
+    private static Artifact createArtifact(File file, String dest) {
+        Artifact artifact = new Artifact();
+        artifact.setFile(file);
+        artifact.setDest(dest);
+        return artifact;
+    }
+}
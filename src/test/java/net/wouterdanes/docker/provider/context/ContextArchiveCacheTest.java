@@ -0,0 +1,132 @@
+/*
+    Copyright 2014 Wouter Danes
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+*/
+
+package net.wouterdanes.docker.provider.context;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+
+import javax.ws.rs.core.StreamingOutput;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import net.wouterdanes.docker.provider.model.Artifact;
+import net.wouterdanes.docker.provider.model.ImageBuildConfiguration;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class ContextArchiveCacheTest {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private ImageBuildConfiguration image;
+    private ContextArchiveCache cache;
+    private File first;
+    private File second;
+
+    @Before
+    public void setUp() throws Exception {
+        image = new ImageBuildConfiguration();
+        image.setId("my/image");
+        image.setDockerFile(createFile("Dockerfile", "FROM busybox"));
+        first = createFile("first.jar", "first version");
+        second = createFile("second.jar", "second version");
+        image.setArtifacts(Arrays.asList(createArtifact(first), createArtifact(second)));
+        cache = new ContextArchiveCache(new File(folder.getRoot(), "docker-context"));
+    }
+
+    @Test
+    public void testThatAnUnchangedContextIsNotRewritten() throws Exception {
+        ContextArchiveCache.CachedArchive archive = cache.update(image.getId(), BuildContext.forImage(image));
+        assertEquals(3, archive.getRewrittenEntries());
+
+        archive = cache.update(image.getId(), BuildContext.forImage(image));
+
+        assertEquals(0, archive.getRewrittenEntries());
+        assertArrayEquals(write(BuildContext.forImage(image)), write(archive));
+    }
+
+    @Test
+    public void testThatAFileOfTheSameSizeIsRewrittenInPlace() throws Exception {
+        cache.update(image.getId(), BuildContext.forImage(image));
+        write(first, "first VERSION");
+
+        ContextArchiveCache.CachedArchive archive = cache.update(image.getId(), BuildContext.forImage(image));
+
+        assertEquals(1, archive.getRewrittenEntries());
+        assertArrayEquals(write(BuildContext.forImage(image)), write(archive));
+    }
+
+    @Test
+    public void testThatTheEntriesAfterAResizedFileAreRewritten() throws Exception {
+        cache.update(image.getId(), BuildContext.forImage(image));
+        write(first, "a much longer first version");
+
+        ContextArchiveCache.CachedArchive archive = cache.update(image.getId(), BuildContext.forImage(image));
+
+        assertEquals(2, archive.getRewrittenEntries());
+        assertArrayEquals(write(BuildContext.forImage(image)), write(archive));
+    }
+
+    @Test
+    public void testThatARemovedArtifactIsRemovedFromTheArchive() throws Exception {
+        cache.update(image.getId(), BuildContext.forImage(image));
+        image.setArtifacts(Arrays.asList(createArtifact(first)));
+
+        ContextArchiveCache.CachedArchive archive = cache.update(image.getId(), BuildContext.forImage(image));
+
+        assertEquals(0, archive.getRewrittenEntries());
+        assertArrayEquals(write(BuildContext.forImage(image)), write(archive));
+    }
+
+    private static byte[] write(final StreamingOutput archive) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        archive.write(output);
+        return output.toByteArray();
+    }
+
+    private File createFile(final String name, final String contents) throws IOException {
+        File file = folder.newFile(name);
+        write(file, contents);
+        return file;
+    }
+
+    private static void write(final File file, final String contents) throws IOException {
+        long modificationTime = file.exists() ? file.lastModified() : 0;
+        Files.write(file.toPath(), contents.getBytes(UTF8));
+        // file systems with a coarse timestamp resolution could otherwise keep the old modification time
+        Files.setLastModifiedTime(file.toPath(), FileTime.fromMillis(modificationTime + 2000));
+    }
+
+    private static Artifact createArtifact(final File file) {
+        Artifact artifact = new Artifact();
+        artifact.setFile(file);
+        return artifact;
+    }
+}
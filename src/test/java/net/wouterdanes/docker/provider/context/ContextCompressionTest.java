@@ -0,0 +1,175 @@
+/*
+    Copyright 2014 Wouter Danes
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+*/
+
+package net.wouterdanes.docker.provider.context;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+
+import javax.ws.rs.core.StreamingOutput;
+
+import com.google.common.io.ByteStreams;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import net.wouterdanes.docker.provider.model.Artifact;
+import net.wouterdanes.docker.provider.model.ImageBuildConfiguration;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ContextCompressionTest {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private ImageBuildConfiguration image;
+
+    @Before
+    public void setUp() throws Exception {
+        image = new ImageBuildConfiguration();
+        image.setId("image");
+        File dockerFile = folder.newFile("Dockerfile");
+        Files.write(dockerFile.toPath(), "FROM busybox".getBytes(UTF8));
+        image.setDockerFile(dockerFile);
+    }
+
+    @Test
+    public void testThatTheModeIsParsedCaseInsensitively() throws Exception {
+        ContextCompression compression = ContextCompression.parse(" Gzip ", 1);
+
+        assertEquals(ContextCompression.Mode.GZIP, compression.getMode());
+        assertEquals(1, compression.getLevel());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testThatAnUnknownModeIsRejected() throws Exception {
+        ContextCompression.parse("bzip2", ContextCompression.DEFAULT_LEVEL);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testThatAnInvalidLevelIsRejected() throws Exception {
+        ContextCompression.parse("gzip", 10);
+    }
+
+    @Test
+    public void testThatFixedModesIgnoreTheDaemonLocation() throws Exception {
+        BuildContext context = createContext(compressibleBytes());
+
+        assertEquals(0, new ContextCompression(ContextCompression.Mode.NONE, 6).chooseLevel(false, context));
+        assertEquals(3, new ContextCompression(ContextCompression.Mode.GZIP, 3).chooseLevel(true, context));
+    }
+
+    @Test
+    public void testThatAutoModeNeverCompressesForALocalDaemon() throws Exception {
+        BuildContext context = createContext(compressibleBytes());
+
+        assertEquals(0, ContextCompression.defaults().chooseLevel(true, context));
+    }
+
+    @Test
+    public void testThatAutoModeCompressesAContextThatCompressesWellForARemoteDaemon() throws Exception {
+        BuildContext context = createContext(compressibleBytes());
+
+        assertEquals(ContextCompression.DEFAULT_LEVEL, ContextCompression.defaults().chooseLevel(false, context));
+    }
+
+    @Test
+    public void testThatAutoModeDoesntCompressAContextThatDoesntCompress() throws Exception {
+        byte[] random = new byte[ContextCompression.SAMPLE_SIZE];
+        new Random(42).nextBytes(random);
+        BuildContext context = createContext(random);
+
+        assertEquals(0, ContextCompression.defaults().chooseLevel(false, context));
+    }
+
+    @Test
+    public void testThatAutoModeProbesADirectoryThroughTheFilter() throws Exception {
+        File directory = folder.newFolder("context");
+        Files.write(new File(directory, "data.txt").toPath(), compressibleBytes());
+        ContextFilter excludeData = new ContextFilter(Arrays.asList("data.txt"), Arrays.<String>asList());
+
+        ContextCompression compression = ContextCompression.defaults();
+
+        assertEquals(ContextCompression.DEFAULT_LEVEL, compression.chooseLevel(false, directory.toPath(),
+                ContextFilter.acceptAll().forDirectory(directory.toPath())));
+        assertEquals(0, compression.chooseLevel(false, directory.toPath(),
+                excludeData.forDirectory(directory.toPath())));
+    }
+
+    @Test
+    public void testThatUnixSocketsAndLoopbackAddressesAreLocal() throws Exception {
+        assertTrue(ContextCompression.isLocalDaemon(URI.create("unix:///var/run/docker.sock")));
+        assertTrue(ContextCompression.isLocalDaemon(URI.create("tcp://127.0.0.1:2375")));
+        assertFalse(ContextCompression.isLocalDaemon(URI.create("tcp://192.0.2.10:2375")));
+    }
+
+    @Test
+    public void testThatACompressedContextIsValidGzip() throws Exception {
+        final byte[] contents = compressibleBytes();
+        StreamingOutput plain = new StreamingOutput() {
+            @Override
+            public void write(final OutputStream output) throws IOException {
+                output.write(contents);
+            }
+        };
+
+        assertSame(plain, ContextCompression.compress(plain, ContextCompression.NO_COMPRESSION));
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ContextCompression.compress(plain, 1).write(output);
+        byte[] decompressed = ByteStreams.toByteArray(
+                new GZIPInputStream(new ByteArrayInputStream(output.toByteArray())));
+
+        assertTrue(output.size() < contents.length);
+        assertArrayEquals(contents, decompressed);
+    }
+
+    private BuildContext createContext(final byte[] contents) throws IOException {
+        File file = folder.newFile("data.bin");
+        Files.write(file.toPath(), contents);
+        Artifact artifact = new Artifact();
+        artifact.setFile(file);
+        image.setArtifacts(Arrays.asList(artifact));
+        return BuildContext.forImage(image);
+    }
+
+    private static byte[] compressibleBytes() {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; builder.length() < ContextCompression.SAMPLE_SIZE; i++) {
+            builder.append("line ").append(i % 100).append(" of a very repetitive log file\n");
+        }
+        return builder.toString().getBytes(UTF8);
+    }
+}
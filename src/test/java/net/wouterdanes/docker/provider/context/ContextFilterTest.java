@@ -0,0 +1,113 @@
+/*
+    Copyright 2014 Wouter Danes
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+*/
+
+package net.wouterdanes.docker.provider.context;
+
+import java.io.File;
+import java.nio.charset.Charset;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import net.wouterdanes.docker.provider.model.ImageBuildConfiguration;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ContextFilterTest {
+
+    private static final List<String> NONE = Collections.emptyList();
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testThatAPatternExcludesMatchingFilesAndEverythingBelowAMatchingDirectory() throws Exception {
+        ContextFilter filter = new ContextFilter(Arrays.asList("# comment", "*.log", "target/", ".git"), NONE);
+
+        assertFalse(filter.acceptFile("build.log"));
+        assertTrue(filter.acceptFile("logs/build.log"));
+        assertFalse(filter.acceptFile("target/classes/App.class"));
+        assertFalse(filter.acceptDirectory("target"));
+        assertFalse(filter.acceptDirectory(".git"));
+        assertTrue(filter.acceptFile("src/main/App.java"));
+    }
+
+    @Test
+    public void testThatDoubleStarMatchesAnyNumberOfDirectories() throws Exception {
+        ContextFilter filter = new ContextFilter(Arrays.asList("**/node_modules", "docs/**/*.png"), NONE);
+
+        assertFalse(filter.acceptDirectory("node_modules"));
+        assertFalse(filter.acceptDirectory("web/app/node_modules"));
+        assertFalse(filter.acceptFile("docs/img/logo.png"));
+        assertFalse(filter.acceptFile("docs/logo.png"));
+        assertTrue(filter.acceptFile("web/logo.png"));
+    }
+
+    @Test
+    public void testThatAnExceptionReincludesFilesAndKeepsTheirDirectoryWalked() throws Exception {
+        ContextFilter filter = new ContextFilter(Arrays.asList("target", "!target/app.jar"), NONE);
+
+        assertTrue(filter.acceptDirectory("target"));
+        assertTrue(filter.acceptFile("target/app.jar"));
+        assertFalse(filter.acceptFile("target/classes/App.class"));
+    }
+
+    @Test
+    public void testThatIncludesLeaveOutEverythingElse() throws Exception {
+        ContextFilter filter = new ContextFilter(NONE, Arrays.asList("lib/*.jar", "conf"));
+
+        assertTrue(filter.acceptFile("lib/app.jar"));
+        assertFalse(filter.acceptFile("lib/app.pom"));
+        assertTrue(filter.acceptFile("conf/app/settings.xml"));
+        assertTrue(filter.acceptDirectory("lib"));
+        assertFalse(filter.acceptDirectory("src"));
+    }
+
+    @Test
+    public void testThatPathsAreNormalized() throws Exception {
+        ContextFilter filter = new ContextFilter(Arrays.asList("./tmp/", "/cache"), NONE);
+
+        assertFalse(filter.acceptFile("tmp/file"));
+        assertFalse(filter.acceptFile("/cache/file"));
+    }
+
+    @Test
+    public void testThatTheDockerfileAndDockerignoreAreAlwaysPartOfADirectoryContext() throws Exception {
+        File dockerFile = folder.newFile("Dockerfile");
+        File dockerIgnore = folder.newFile(".dockerignore");
+        Files.write(dockerIgnore.toPath(), "Dockerfile\n.dockerignore\n".getBytes(Charset.forName("UTF-8")));
+        File other = folder.newFile("notes.txt");
+        ImageBuildConfiguration image = new ImageBuildConfiguration();
+        image.setDockerFile(dockerFile);
+        image.setIncludes(Arrays.asList("lib"));
+
+        Path root = folder.getRoot().toPath();
+        DirectoryStream.Filter<Path> filter = ContextFilter.forImage(image).forDirectory(root);
+
+        assertTrue(filter.accept(dockerFile.toPath()));
+        assertTrue(filter.accept(dockerIgnore.toPath()));
+        assertFalse(filter.accept(other.toPath()));
+    }
+}
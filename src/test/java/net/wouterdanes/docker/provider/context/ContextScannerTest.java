@@ -0,0 +1,128 @@
+/*
+    Copyright 2014 Wouter Danes
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+*/
+
+package net.wouterdanes.docker.provider.context;
+
+import java.nio.file.FileSystemLoopException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Assume;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+
+public class ContextScannerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testThatEntriesAreSortedByNameWithinEveryDirectory() throws Exception {
+        Path root = folder.newFolder("context").toPath();
+        List<String> expected = new ArrayList<>();
+        for (String directory : Arrays.asList("b", "a", "a/c")) {
+            Files.createDirectories(root.resolve(directory));
+        }
+        for (int i = 0; i < 200; i++) {
+            String name = String.format("a/file%03d", i);
+            Files.write(root.resolve(name), new byte[]{(byte) i});
+            expected.add("app/" + name);
+        }
+        Files.write(root.resolve("a/c/nested"), new byte[0]);
+        Files.write(root.resolve("b/last"), new byte[0]);
+        // "a/c" sorts before "a/file000"
+        expected.add(0, "app/a/c/nested");
+        expected.add("app/b/last");
+
+        List<ContextScanner.Entry> entries = ContextScanner.scan(root, "app/", ContextScanner.acceptAll());
+
+        assertEquals(expected, getNames(entries));
+        assertEquals(1, entries.get(1).getSize());
+    }
+
+    @Test
+    public void testThatRejectedDirectoriesAreNotScanned() throws Exception {
+        Path root = folder.newFolder("context").toPath();
+        Files.createDirectories(root.resolve("node_modules/left-pad"));
+        Files.write(root.resolve("node_modules/left-pad/index.js"), new byte[0]);
+        Files.write(root.resolve("index.js"), new byte[0]);
+        ContextFilter filter = new ContextFilter(Arrays.asList("node_modules"), Collections.<String>emptyList());
+
+        List<ContextScanner.Entry> entries = ContextScanner.scan(root, "", filter);
+
+        assertEquals(Arrays.asList("index.js"), getNames(entries));
+    }
+
+    @Test
+    public void testThatEntriesRejectedByTheirNameAreNotStated() throws Exception {
+        Path root = folder.newFolder("context").toPath();
+        Files.write(root.resolve("index.js"), new byte[0]);
+        try {
+            // stat'ing a link to nothing fails
+            Files.createSymbolicLink(root.resolve("dangling.log"), root.resolve("missing"));
+        } catch (UnsupportedOperationException e) {
+            Assume.assumeTrue(false);
+        }
+        ContextFilter filter = new ContextFilter(Arrays.asList("*.log"), Collections.<String>emptyList());
+
+        List<ContextScanner.Entry> entries = ContextScanner.scan(root, "", filter);
+
+        assertEquals(Arrays.asList("index.js"), getNames(entries));
+    }
+
+    @Test
+    public void testThatPosixPermissionsEndUpInTheMode() throws Exception {
+        Path root = folder.newFolder("context").toPath();
+        Assume.assumeTrue(root.getFileSystem().supportedFileAttributeViews().contains("posix"));
+        Path script = root.resolve("run.sh");
+        Files.write(script, new byte[0]);
+        Files.setPosixFilePermissions(script, PosixFilePermissions.fromString("rwxr-x---"));
+
+        ContextScanner.Entry entry = ContextScanner.scanFile(script, "run.sh");
+
+        assertEquals(0100750, entry.getMode());
+    }
+
+    @Test(expected = FileSystemLoopException.class)
+    public void testThatASymbolicLinkToAParentDirectoryFails() throws Exception {
+        Path root = folder.newFolder("context").toPath();
+        Path directory = Files.createDirectories(root.resolve("a/b"));
+        try {
+            Files.createSymbolicLink(directory.resolve("loop"), root.resolve("a"));
+        } catch (UnsupportedOperationException e) {
+            Assume.assumeTrue(false);
+        }
+
+        ContextScanner.scan(root, "", ContextScanner.acceptAll());
+    }
+
+    private static List<String> getNames(final List<ContextScanner.Entry> entries) {
+        List<String> names = new ArrayList<>();
+        for (ContextScanner.Entry entry : entries) {
+            names.add(entry.getName());
+        }
+        return names;
+    }
+}
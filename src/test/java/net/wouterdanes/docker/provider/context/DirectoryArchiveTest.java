@@ -0,0 +1,93 @@
+/*
+    Copyright 2014 Wouter Danes
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+*/
+
+package net.wouterdanes.docker.provider.context;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+
+public class DirectoryArchiveTest {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testThatOnlyTheAcceptedFilesAreArchivedInOrder() throws Exception {
+        Path directory = folder.newFolder("context").toPath();
+        write(directory.resolve("Dockerfile"), "FROM busybox");
+        Files.createDirectory(directory.resolve("src"));
+        write(directory.resolve("src/b.txt"), "b");
+        write(directory.resolve("src/a.txt"), "a");
+        Files.createDirectory(directory.resolve("target"));
+        write(directory.resolve("target/big.jar"), "jar");
+        ContextFilter filter = new ContextFilter(Arrays.asList("target"), Collections.<String>emptyList());
+
+        File archive = DirectoryArchive.create(directory, filter, ContextCompression.NO_COMPRESSION, true);
+        try (InputStream input = new FileInputStream(archive)) {
+            assertEquals(Arrays.asList("Dockerfile", "src/a.txt", "src/b.txt"), readNames(input));
+        } finally {
+            Files.delete(archive.toPath());
+        }
+    }
+
+    @Test
+    public void testThatACompressedArchiveIsGzipped() throws Exception {
+        Path directory = folder.newFolder("context").toPath();
+        write(directory.resolve("Dockerfile"), "FROM busybox");
+
+        File archive = DirectoryArchive.create(directory, ContextScanner.acceptAll(), 6, false);
+        try (InputStream input = new GZIPInputStream(new FileInputStream(archive))) {
+            assertEquals(Arrays.asList("Dockerfile"), readNames(input));
+        } finally {
+            Files.delete(archive.toPath());
+        }
+    }
+
+    private static List<String> readNames(final InputStream input) throws IOException {
+        List<String> names = new ArrayList<>();
+        TarArchiveInputStream tar = new TarArchiveInputStream(input);
+        TarArchiveEntry entry;
+        while ((entry = tar.getNextTarEntry()) != null) {
+            names.add(entry.getName());
+        }
+        return names;
+    }
+
+    private static void write(final Path file, final String contents) throws IOException {
+        Files.write(file, contents.getBytes(UTF8));
+    }
+}
@@ -0,0 +1,112 @@
+/*
+    Copyright 2014 Wouter Danes
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+*/
+
+package net.wouterdanes.docker.provider.context;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.GZIPInputStream;
+
+import com.google.common.io.ByteStreams;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ParallelGzipOutputStreamTest {
+
+    private static final int BLOCK_SIZE = 32 * 1024;
+
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() throws Exception {
+        executor = Executors.newFixedThreadPool(4);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testThatDataSpanningManyBlocksDecompressesToTheOriginal() throws Exception {
+        byte[] data = createText(10 * BLOCK_SIZE + 123);
+
+        byte[] compressed = compress(data, 6, 1000);
+
+        assertArrayEquals(data, decompress(compressed));
+        assertTrue(compressed.length < data.length / 4);
+    }
+
+    @Test
+    public void testThatIncompressibleDataAndBlockBoundariesAreHandled() throws Exception {
+        byte[] data = new byte[4 * BLOCK_SIZE];
+        new Random(7).nextBytes(data);
+
+        assertArrayEquals(data, decompress(compress(data, 1, BLOCK_SIZE)));
+    }
+
+    @Test
+    public void testThatAnEmptyStreamIsValidGzip() throws Exception {
+        assertArrayEquals(new byte[0], decompress(compress(new byte[0], 6, 100)));
+    }
+
+    @Test
+    public void testThatSingleByteWritesEndUpInTheFinishedStream() throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ParallelGzipOutputStream gzip = new ParallelGzipOutputStream(output, 6, BLOCK_SIZE, executor, 4);
+        byte[] data = createText(BLOCK_SIZE + 1);
+        for (byte b : data) {
+            gzip.write(b);
+        }
+        gzip.finish();
+
+        assertArrayEquals(data, decompress(output.toByteArray()));
+    }
+
+    private byte[] compress(final byte[] data, final int level, final int chunkSize) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (ParallelGzipOutputStream gzip = new ParallelGzipOutputStream(output, level, BLOCK_SIZE, executor, 2)) {
+            for (int offset = 0; offset < data.length; offset += chunkSize) {
+                gzip.write(data, offset, Math.min(chunkSize, data.length - offset));
+            }
+        }
+        return output.toByteArray();
+    }
+
+    private static byte[] decompress(final byte[] compressed) throws IOException {
+        return ByteStreams.toByteArray(new GZIPInputStream(new ByteArrayInputStream(compressed)));
+    }
+
+    private static byte[] createText(final int length) {
+        StringBuilder builder = new StringBuilder();
+        Random random = new Random(3);
+        while (builder.length() < length) {
+            builder.append("entry ").append(random.nextInt(500)).append(" in a log file\n");
+        }
+        return builder.substring(0, length).getBytes(Charset.forName("UTF-8"));
+    }
+}
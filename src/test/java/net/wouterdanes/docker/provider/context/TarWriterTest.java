@@ -0,0 +1,137 @@
+/*
+    Copyright 2014 Wouter Danes
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+*/
+
+package net.wouterdanes.docker.provider.context;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+
+import com.google.common.base.Strings;
+import com.google.common.io.ByteStreams;
+
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TarWriterTest {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final long MODIFICATION_TIME = 1418000000000L;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testThatEntriesCanBeReadBackWithCommonsCompress() throws Exception {
+        File file = createFile("app.conf", Strings.repeat("key=value\n", 100));
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        TarWriter tar = TarWriter.forStream(output);
+        tar.writeFile(file.toPath(), "etc/app.conf", 0100755, MODIFICATION_TIME);
+        tar.writeFile(createFile("empty", "").toPath(), "empty", TarWriter.DEFAULT_FILE_MODE, MODIFICATION_TIME);
+        tar.finish();
+
+        assertEquals(0, output.size() % TarWriter.RECORD_SIZE);
+        try (TarArchiveInputStream input = new TarArchiveInputStream(new ByteArrayInputStream(output.toByteArray()))) {
+            TarArchiveEntry entry = input.getNextTarEntry();
+            assertEquals("etc/app.conf", entry.getName());
+            assertEquals(0100755, entry.getMode());
+            assertEquals(MODIFICATION_TIME, entry.getModTime().getTime());
+            assertEquals(Strings.repeat("key=value\n", 100), new String(ByteStreams.toByteArray(input), UTF8));
+
+            entry = input.getNextTarEntry();
+            assertEquals("empty", entry.getName());
+            assertEquals(0, entry.getSize());
+
+            assertNull(input.getNextTarEntry());
+        }
+    }
+
+    @Test
+    public void testThatLongNamesAreWrittenInAnExtendedHeader() throws Exception {
+        String name = Strings.repeat("directory/", 15) + "file.txt";
+        File file = createFile("file.txt", "contents");
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        TarWriter tar = TarWriter.forStream(output);
+        tar.writeFile(file.toPath(), name, TarWriter.DEFAULT_FILE_MODE, MODIFICATION_TIME);
+        tar.finish();
+
+        try (TarArchiveInputStream input = new TarArchiveInputStream(new ByteArrayInputStream(output.toByteArray()))) {
+            assertEquals(name, input.getNextTarEntry().getName());
+            assertEquals("contents", new String(ByteStreams.toByteArray(input), UTF8));
+        }
+    }
+
+    @Test
+    public void testThatAHardLinkWithALongTargetCanBeReadBack() throws Exception {
+        String target = Strings.repeat("directory/", 15) + "library.jar";
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        TarWriter tar = TarWriter.forStream(output);
+        tar.writeFile(createFile("library.jar", "jar").toPath(), target, TarWriter.DEFAULT_FILE_MODE,
+                MODIFICATION_TIME);
+        tar.writeHardLink("copy.jar", target, TarWriter.DEFAULT_FILE_MODE, MODIFICATION_TIME);
+        tar.finish();
+
+        try (TarArchiveInputStream input = new TarArchiveInputStream(new ByteArrayInputStream(output.toByteArray()))) {
+            assertEquals(target, input.getNextTarEntry().getName());
+            TarArchiveEntry link = input.getNextTarEntry();
+            assertEquals("copy.jar", link.getName());
+            assertTrue(link.isLink());
+            assertEquals(target, link.getLinkName());
+            assertEquals(0, link.getSize());
+        }
+    }
+
+    @Test
+    public void testThatAnArchiveWrittenToAFileIsComplete() throws Exception {
+        File file = createFile("data", Strings.repeat("0123456789", 100000));
+        File archive = new File(folder.getRoot(), "context.tar");
+
+        try (FileOutputStream output = new FileOutputStream(archive)) {
+            TarWriter tar = TarWriter.forStream(output);
+            tar.writeFile(file.toPath(), "data", TarWriter.DEFAULT_FILE_MODE, MODIFICATION_TIME);
+            tar.finish();
+        }
+
+        try (InputStream stream = new FileInputStream(archive);
+             TarArchiveInputStream input = new TarArchiveInputStream(stream)) {
+            assertEquals(1000000, input.getNextTarEntry().getSize());
+            assertEquals(Strings.repeat("0123456789", 100000), new String(ByteStreams.toByteArray(input), UTF8));
+        }
+    }
+
+    private File createFile(final String name, final String contents) throws IOException {
+        File file = folder.newFile(name);
+        Files.write(file.toPath(), contents.getBytes(UTF8));
+        return file;
+    }
+}
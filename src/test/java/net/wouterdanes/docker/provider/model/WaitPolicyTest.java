@@ -0,0 +1,103 @@
+/*
+    Copyright 2014 Wouter Danes
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+*/
+
+package net.wouterdanes.docker.provider.model;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class WaitPolicyTest {
+
+    @Test
+    public void testThatIntervalsGrowExponentiallyUpToTheMaximum() throws Exception {
+        WaitPolicy policy = new WaitPolicy()
+                .withInitialInterval(1)
+                .withMaxInterval(8)
+                .withMultiplier(2.0)
+                .withJitter(0.0);
+
+        WaitPolicy.Backoff backoff = policy.start();
+        for (int i = 0; i < 6; i++) {
+            assertTrue(backoff.await());
+        }
+
+        assertEquals(7, backoff.getAttempts());
+        assertEquals(1, backoff.getMinInterval());
+        assertEquals(8, backoff.getMaxInterval());
+        assertEquals(Arrays.asList(2L, 4L, 8L, 8L, 8L), backoff.getRecentIntervals());
+    }
+
+    @Test
+    public void testThatJitterKeepsIntervalsWithinTheConfiguredFraction() throws Exception {
+        WaitPolicy.Backoff backoff = WaitPolicy.fixed(10).withJitter(0.5).start();
+        for (int i = 0; i < 5; i++) {
+            backoff.await();
+        }
+
+        for (long interval : backoff.getRecentIntervals()) {
+            assertTrue("interval " + interval, interval >= 5 && interval <= 15);
+        }
+    }
+
+    @Test
+    public void testThatTheLastIntervalIsCutShortAtTheDeadline() throws Exception {
+        WaitPolicy.Backoff backoff = WaitPolicy.fixed(1000).start(20);
+
+        assertTrue(backoff.await());
+        assertFalse(backoff.await());
+
+        assertEquals(2, backoff.getAttempts());
+        assertTrue(backoff.getMaxInterval() <= 20);
+    }
+
+    @Test
+    public void testThatDefaultsAreUsedForUnsetValues() throws Exception {
+        WaitPolicy policy = new WaitPolicy();
+
+        assertEquals(WaitPolicy.DEFAULT_INITIAL_INTERVAL, policy.getInitialInterval());
+        assertEquals(WaitPolicy.DEFAULT_MAX_INTERVAL, policy.getMaxInterval());
+        assertEquals(WaitPolicy.DEFAULT_MULTIPLIER, policy.getMultiplier(), 0.0);
+        assertEquals(WaitPolicy.DEFAULT_JITTER, policy.getJitter(), 0.0);
+    }
+
+    @Test
+    public void testThatTheDescriptionContainsTheIntervalHistory() throws Exception {
+        WaitPolicy.Backoff backoff = WaitPolicy.fixed(1).start();
+        backoff.await();
+        backoff.await();
+
+        assertTrue(backoff.describe(), backoff.describe().matches("3 attempts in \\d+ ms, intervals 1 to 1 ms, last 1, 1 ms"));
+    }
+
+    @Test
+    public void testThatOnlyTheLastFewIntervalsAreKept() throws Exception {
+        WaitPolicy.Backoff backoff = WaitPolicy.fixed(1).start();
+        for (int i = 0; i < 20; i++) {
+            backoff.await();
+        }
+
+        assertEquals(21, backoff.getAttempts());
+        assertEquals(5, backoff.getRecentIntervals().size());
+        assertTrue(backoff.describe(), backoff.describe().matches("21 attempts in \\d+ ms, intervals 1 to 1 ms, "
+                + "last 1, 1, 1, 1, 1 ms"));
+    }
+}
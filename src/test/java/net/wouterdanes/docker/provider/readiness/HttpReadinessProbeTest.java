@@ -0,0 +1,132 @@
+/*
+    Copyright 2014 Wouter Danes
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+*/
+
+package net.wouterdanes.docker.provider.readiness;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import net.wouterdanes.docker.provider.model.ExposedPort;
+import net.wouterdanes.docker.provider.model.ReadinessProbeConfiguration;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class HttpReadinessProbeTest {
+
+    private final HttpReadinessProbe probe = new HttpReadinessProbe();
+    private final AtomicInteger status = new AtomicInteger();
+    private HttpServer server;
+    private ProbeContext context;
+
+    @Before
+    public void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/health", new HttpHandler() {
+            @Override
+            public void handle(final HttpExchange exchange) throws IOException {
+                exchange.sendResponseHeaders(status.get(), -1);
+                exchange.close();
+            }
+        });
+        server.createContext("/slow", new HttpHandler() {
+            @Override
+            public void handle(final HttpExchange exchange) throws IOException {
+                try {
+                    Thread.sleep(300);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                exchange.sendResponseHeaders(200, -1);
+                exchange.close();
+            }
+        });
+        server.start();
+        context = new ProbeContext("some-container", Collections.singletonList(
+                new ExposedPort("8080/tcp", server.getAddress().getPort(), "127.0.0.1")), null);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.stop(0);
+    }
+
+    @Test
+    public void testThatAnEndpointIsReadyWhenItRespondsWithASuccessStatus() throws Exception {
+        ReadinessProbeConfiguration configuration = new ReadinessProbeConfiguration()
+                .withType("http")
+                .onPort("8080")
+                .withPath("health");
+
+        status.set(503);
+        assertFalse(probe.isReady(configuration, context));
+        status.set(204);
+        assertTrue(probe.isReady(configuration, context));
+    }
+
+    @Test
+    public void testThatAnEndpointIsOnlyReadyWithTheConfiguredStatus() throws Exception {
+        ReadinessProbeConfiguration configuration = new ReadinessProbeConfiguration()
+                .withType("http")
+                .onPort("8080/tcp")
+                .withPath("/health")
+                .expectingStatus(401);
+
+        status.set(200);
+        assertFalse(probe.isReady(configuration, context));
+        status.set(401);
+        assertTrue(probe.isReady(configuration, context));
+    }
+
+    @Test
+    public void testThatASlowEndpointIsReadyWhenTheIntervalIsShorterThanItsResponseTime() throws Exception {
+        ReadinessProbeConfiguration configuration = new ReadinessProbeConfiguration()
+                .withType("http")
+                .onPort("8080")
+                .withPath("/slow")
+                .withInterval(50);
+
+        assertTrue(probe.isReady(configuration, context));
+    }
+
+    @Test
+    public void testThatASlowEndpointIsNotReadyWhenItTakesLongerThanTheAttemptTimeout() throws Exception {
+        ReadinessProbeConfiguration configuration = new ReadinessProbeConfiguration()
+                .withType("http")
+                .onPort("8080")
+                .withPath("/slow")
+                .withAttemptTimeout(50);
+
+        assertFalse(probe.isReady(configuration, context));
+    }
+
+    @Test
+    public void testThatTheDefaultPathIsTheRoot() throws Exception {
+        assertEquals("/", new ReadinessProbeConfiguration().getPath());
+    }
+}
@@ -0,0 +1,113 @@
+/*
+    Copyright 2014 Wouter Danes
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+*/
+
+package net.wouterdanes.docker.provider.readiness;
+
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Test;
+
+import net.wouterdanes.docker.provider.model.ExposedPort;
+import net.wouterdanes.docker.provider.model.ReadinessProbeConfiguration;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TcpReadinessProbeTest {
+
+    private final TcpReadinessProbe probe = new TcpReadinessProbe();
+    private final ReadinessProbeConfiguration configuration = new ReadinessProbeConfiguration()
+            .withType("tcp")
+            .onPort("5432")
+            .withInterval(500);
+    private final List<Socket> accepted = new ArrayList<>();
+    private ServerSocket server;
+
+    @After
+    public void tearDown() throws Exception {
+        for (Socket socket : accepted) {
+            socket.close();
+        }
+        if (server != null) {
+            server.close();
+        }
+    }
+
+    @Test
+    public void testThatAPortThatAcceptsConnectionsIsReady() throws Exception {
+        startServer(false);
+
+        assertTrue(probe.isReady(configuration, createContext(server.getLocalPort())));
+    }
+
+    @Test
+    public void testThatAConnectionThatIsClosedRightAwayIsNotReady() throws Exception {
+        startServer(true);
+
+        assertFalse(probe.isReady(configuration, createContext(server.getLocalPort())));
+    }
+
+    @Test
+    public void testThatAPortWithoutListenerIsNotReady() throws Exception {
+        int port;
+        try (ServerSocket unused = new ServerSocket(0)) {
+            port = unused.getLocalPort();
+        }
+
+        assertFalse(probe.isReady(configuration, createContext(port)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testThatAPortThatIsNotExposedCanNeverBeReady() throws Exception {
+        probe.isReady(configuration.onPort("8080"), createContext(1234));
+    }
+
+    private void startServer(final boolean closeRightAway) throws Exception {
+        server = new ServerSocket(0);
+        Thread acceptor = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    while (true) {
+                        Socket socket = server.accept();
+                        if (closeRightAway) {
+                            socket.close();
+                        } else {
+                            synchronized (accepted) {
+                                accepted.add(socket);
+                            }
+                        }
+                    }
+                } catch (Exception ignored) {
+                    // the server is closed
+                }
+            }
+        };
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    private static ProbeContext createContext(final int port) {
+        return new ProbeContext("some-container",
+                Collections.singletonList(new ExposedPort("5432/tcp", port, "127.0.0.1")), null);
+    }
+}
@@ -0,0 +1,88 @@
+/*
+    Copyright 2014 Wouter Danes
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+*/
+
+package net.wouterdanes.docker.remoteapi;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.Charset;
+
+import org.junit.Test;
+
+import net.wouterdanes.docker.remoteapi.exception.DockerException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class BuildOutputReaderTest {
+
+    @Test
+    public void testThatTheImageIdIsReadFromTheStream() throws Exception {
+        String output = "{\"stream\":\"Step 0 : FROM busybox\\n\"}\r\n"
+                + "{\"stream\":\" ---\\u003e 4986bf8c1536\\n\"}\r\n"
+                + "{\"status\":\"Downloading\",\"progressDetail\":{\"current\":1,\"total\":2}}\r\n"
+                + "{\"stream\":\"Successfully built 7b5f3e0c4d1a\\n\"}\r\n";
+
+        assertEquals("7b5f3e0c4d1a", BuildOutputReader.readImageId(toStream(output)));
+    }
+
+    @Test
+    public void testThatAnErrorStopsReadingImmediately() throws Exception {
+        String output = "{\"stream\":\"Step 1 : RUN false\\n\"}\r\n"
+                + "{\"errorDetail\":{\"code\":1,\"message\":\"returned a non-zero code: 1\"},"
+                + "\"error\":\"returned a non-zero code: 1\"}\r\n";
+        // the stream fails when it is read past the error
+        InputStream stream = new SequenceInputStream(toStream(output), new InputStream() {
+            @Override
+            public int read() throws IOException {
+                throw new IOException("read past the error");
+            }
+        });
+
+        try {
+            BuildOutputReader.readImageId(stream);
+            fail("Expected a DockerException");
+        } catch (DockerException e) {
+            assertEquals("returned a non-zero code: 1", e.getMessage());
+            assertEquals("Step 1 : RUN false\n", e.getApiResponse().get());
+        }
+    }
+
+    @Test
+    public void testThatOnlyTheTailOfTheOutputIsKeptWhenThereIsNoImageId() throws Exception {
+        StringBuilder output = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            output.append("{\"stream\":\"line ").append(i).append("\\n\"}");
+        }
+
+        try {
+            BuildOutputReader.readImageId(toStream(output.toString()));
+            fail("Expected a DockerException");
+        } catch (DockerException e) {
+            String tail = e.getApiResponse().get();
+            assertTrue(tail.endsWith("line 999\n"));
+            assertTrue(tail.length() < 200);
+        }
+    }
+
+    private static InputStream toStream(final String output) {
+        return new ByteArrayInputStream(output.getBytes(Charset.forName("UTF-8")));
+    }
+}
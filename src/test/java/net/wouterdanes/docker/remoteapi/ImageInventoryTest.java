@@ -0,0 +1,55 @@
+/*
+    Copyright 2014 Wouter Danes
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+*/
+
+package net.wouterdanes.docker.remoteapi;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import net.wouterdanes.docker.remoteapi.model.ImageInventory;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ImageInventoryTest {
+
+    private final ImageInventory inventory = new ImageInventory(
+            Arrays.asList("ubuntu:latest", "ubuntu:precise", "localhost:5000/wouter/app:1.0"),
+            Arrays.asList("sha256:8dbd9e392a964056420e5d58ca5cc376ef18e2de93b5cc90e868a1bbc8318c1c"));
+
+    @Test
+    public void testThatAnImageWithoutTagRefersToTheLatestTag() throws Exception {
+        assertTrue(inventory.contains("ubuntu"));
+        assertTrue(inventory.contains("ubuntu:precise"));
+        assertFalse(inventory.contains("ubuntu:trusty"));
+    }
+
+    @Test
+    public void testThatImagesFromARegistryAreFound() throws Exception {
+        assertTrue(inventory.contains("localhost:5000/wouter/app:1.0"));
+        assertFalse(inventory.contains("localhost:5000/wouter/app"));
+    }
+
+    @Test
+    public void testThatImagesAreFoundByTheirId() throws Exception {
+        assertTrue(inventory.contains("8dbd9e392a96"));
+        assertTrue(inventory.contains("sha256:8dbd9e392a964056420e5d58ca5cc376ef18e2de93b5cc90e868a1bbc8318c1c"));
+        assertFalse(inventory.contains("8dbd9e39"));
+        assertFalse(inventory.contains("0123456789ab"));
+    }
+}
@@ -0,0 +1,111 @@
+/*
+    Copyright 2014 Wouter Danes
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+*/
+
+package net.wouterdanes.docker.remoteapi;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import net.wouterdanes.docker.remoteapi.exception.DockerException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ProgressReaderTest {
+
+    @Test
+    public void testThatTheTransferredBytesOfAllLayersAreReported() throws Exception {
+        String output = "{\"status\":\"Pulling from busybox\",\"id\":\"latest\"}\r\n"
+                + "{\"status\":\"Downloading\",\"progressDetail\":{\"current\":100,\"total\":400},\"id\":\"aaa\"}\r\n"
+                + "{\"status\":\"Downloading\",\"progressDetail\":{\"current\":50,\"total\":100},\"id\":\"bbb\"}\r\n"
+                + "{\"status\":\"Download complete\",\"progressDetail\":{},\"id\":\"aaa\"}\r\n";
+        RecordingListener listener = new RecordingListener();
+
+        ProgressReader.read(toStream(output), "busybox", listener, 0);
+
+        assertEquals(3, listener.transferred.size());
+        assertEquals(Long.valueOf(100), listener.transferred.get(0));
+        assertEquals(Long.valueOf(150), listener.transferred.get(1));
+        assertEquals(Long.valueOf(450), listener.transferred.get(2));
+        assertEquals(Long.valueOf(500), listener.totals.get(2));
+    }
+
+    @Test
+    public void testThatExtractingALayerIsNotCountedAsTransferredBytes() throws Exception {
+        String output = "{\"status\":\"Downloading\",\"progressDetail\":{\"current\":10,\"total\":10},\"id\":\"aaa\"}\r\n"
+                + "{\"status\":\"Extracting\",\"progressDetail\":{\"current\":5000,\"total\":9000},\"id\":\"aaa\"}\r\n";
+        RecordingListener listener = new RecordingListener();
+
+        ProgressReader.read(toStream(output), "busybox", listener, 0);
+
+        assertEquals(1, listener.transferred.size());
+        assertEquals(Long.valueOf(10), listener.transferred.get(0));
+    }
+
+    @Test
+    public void testThatProgressIsThrottledButTheLastProgressIsAlwaysReported() throws Exception {
+        String output = "{\"status\":\"Pushing\",\"progressDetail\":{\"current\":1,\"total\":3},\"id\":\"aaa\"}\r\n"
+                + "{\"status\":\"Pushing\",\"progressDetail\":{\"current\":2,\"total\":3},\"id\":\"aaa\"}\r\n"
+                + "{\"status\":\"Pushing\",\"progressDetail\":{\"current\":3,\"total\":3},\"id\":\"aaa\"}\r\n";
+        RecordingListener listener = new RecordingListener();
+
+        ProgressReader.read(toStream(output), "busybox", listener, 60000);
+
+        assertEquals(Long.valueOf(3), listener.transferred.get(listener.transferred.size() - 1));
+        assertTrue(listener.transferred.size() < 3);
+    }
+
+    @Test
+    public void testThatTheFirstErrorStopsTheReadingWithTheStatusLinesBeforeIt() throws Exception {
+        String output = "{\"status\":\"The push refers to a repository [localhost:5000/busybox]\"}\r\n"
+                + "{\"status\":\"Pushing\",\"progressDetail\":{\"current\":1,\"total\":3},\"id\":\"aaa\"}\r\n"
+                + "{\"errorDetail\":{\"message\":\"unauthorized\"},\"error\":\"unauthorized\\n\"}\r\n"
+                + "{\"status\":\"Pushed\",\"progressDetail\":{},\"id\":\"aaa\"}\r\n";
+        RecordingListener listener = new RecordingListener();
+
+        try {
+            ProgressReader.read(toStream(output), "busybox", listener, 0);
+            fail("The error in the progress should have been thrown");
+        } catch (DockerException e) {
+            assertEquals("unauthorized", e.getMessage());
+            assertTrue(e.getApiResponse().get().contains("aaa: Pushing"));
+            assertEquals(Long.valueOf(1), listener.transferred.get(listener.transferred.size() - 1));
+        }
+    }
+
+    private static InputStream toStream(final String output) {
+        return new ByteArrayInputStream(output.getBytes(Charset.forName("UTF-8")));
+    }
+
+    private static class RecordingListener implements ProgressListener {
+        private final List<Long> transferred = new ArrayList<>();
+        private final List<Long> totals = new ArrayList<>();
+
+        @Override
+        public void onProgress(final String image, final long transferredBytes, final long totalBytes,
+                               final long bytesPerSecond) {
+            transferred.add(transferredBytes);
+            totals.add(totalBytes);
+        }
+    }
+}
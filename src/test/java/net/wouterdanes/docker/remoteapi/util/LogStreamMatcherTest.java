@@ -0,0 +1,102 @@
+/*
+    Copyright 2014 Wouter Danes
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+*/
+
+package net.wouterdanes.docker.remoteapi.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class LogStreamMatcherTest {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    @Test
+    public void testThatAPatternSplitOverTwoFramesIsFound() throws Exception {
+        byte[] logs = frames("Server sta", "rtup in 1234 ms\n");
+
+        assertTrue(new LogStreamMatcher(Pattern.compile("startup in \\d+ ms")).find(new ByteArrayInputStream(logs)));
+    }
+
+    @Test
+    public void testThatACharacterSplitOverTwoFramesIsDecoded() throws Exception {
+        byte[] euro = "€".getBytes(UTF8);
+        LogStreamMatcher matcher = new LogStreamMatcher(Pattern.compile("costs €5"));
+
+        assertFalse(matcher.matches(ByteBuffer.wrap(concat("costs ".getBytes(UTF8), euro, 0, 1))));
+        assertTrue(matcher.matches(ByteBuffer.wrap(concat(euro, 1, 2, "5".getBytes(UTF8)))));
+    }
+
+    @Test
+    public void testThatTheStreamEndingBeforeThePatternIsFoundIsNoMatch() throws Exception {
+        byte[] logs = frames("Starting..\n", "Shutting down\n");
+
+        assertFalse(new LogStreamMatcher(Pattern.compile("Started")).find(new ByteArrayInputStream(logs)));
+    }
+
+    @Test
+    public void testThatOnlyTheOverlapIsKeptBetweenFrames() throws Exception {
+        LogStreamMatcher matcher = new LogStreamMatcher(Pattern.compile("first.*second"), 16);
+
+        assertFalse(matcher.matches(ByteBuffer.wrap("first and a long line\n".getBytes(UTF8))));
+        assertFalse(matcher.matches(ByteBuffer.wrap("second".getBytes(UTF8))));
+    }
+
+    @Test
+    public void testThatFinishedLinesAreNotSearchedAgain() throws Exception {
+        LogStreamMatcher matcher = new LogStreamMatcher(Pattern.compile("first.*second", Pattern.DOTALL));
+
+        assertFalse(matcher.matches(ByteBuffer.wrap("first line\n".getBytes(UTF8))));
+        assertFalse(matcher.matches(ByteBuffer.wrap("second line\n".getBytes(UTF8))));
+        assertTrue(matcher.matches(ByteBuffer.wrap("first line\nsecond line\n".getBytes(UTF8))));
+    }
+
+    private static byte[] frames(final String... frames) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream output = new DataOutputStream(bytes);
+        for (String frame : frames) {
+            byte[] content = frame.getBytes(UTF8);
+            output.writeInt(0x01000000);
+            output.writeInt(content.length);
+            output.write(content);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static byte[] concat(final byte[] first, final byte[] second, final int offset, final int length) {
+        byte[] result = new byte[first.length + length];
+        System.arraycopy(first, 0, result, 0, first.length);
+        System.arraycopy(second, offset, result, first.length, length);
+        return result;
+    }
+
+    private static byte[] concat(final byte[] first, final int offset, final int length, final byte[] second) {
+        byte[] result = new byte[length + second.length];
+        System.arraycopy(first, offset, result, 0, length);
+        System.arraycopy(second, 0, result, length, second.length);
+        return result;
+    }
+}